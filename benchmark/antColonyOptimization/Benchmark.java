@@ -0,0 +1,103 @@
+package antColonyOptimization;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+/**
+ *  Measure of an operation of the solver. The operation is repeated during a warm up time, so that it is compiled,
+ *  then during a measure time. The throughput and, when the virtual machine provides it, the memory allocated
+ *  by each operation are reported.
+ */
+abstract class Benchmark
+{
+	/** Name of the benchmark */
+	protected String name;
+
+	/** Value returned by the operations, kept so that the compiler can't remove them */
+	protected long sink = 0;
+
+	/**
+	 * Full constructor
+	 * @param name the name of the benchmark
+	 */
+	public Benchmark(String name)
+	{
+		this.name = name;
+	}
+
+	/**
+	 * Prepare the state used by the operation, called once before the warm up
+	 * @throws Exception if the state can't be prepared
+	 */
+	protected void setUp() throws Exception
+	{
+	}
+
+	/**
+	 * Execute the operation once
+	 * @return any value depending on the operation result
+	 * @throws Exception if the operation fails
+	 */
+	protected abstract long operation() throws Exception;
+
+	/**
+	 * Run the benchmark and print its result
+	 * @param instance description of the instance used by the benchmark
+	 * @param warmupMillis the warm up time in milliseconds
+	 * @param measureMillis the measure time in milliseconds
+	 * @throws Exception if the operation fails
+	 */
+	public void run(String instance, long warmupMillis, long measureMillis) throws Exception
+	{
+		long operations, start, elapsed, allocated;
+
+		setUp();
+		repeat(warmupMillis);
+		allocated = getAllocatedBytes();
+		start = System.nanoTime();
+		operations = repeat(measureMillis);
+		elapsed = System.nanoTime() - start;
+		if (allocated >= 0)
+		{
+			allocated = getAllocatedBytes() - allocated;
+		}
+
+		System.out.println(String.format(Locale.ROOT, "%-40s %-24s %14.2f ops/s %16s B/op", name, instance,
+				operations * 1E9 / elapsed, allocated < 0 ? "n/a" : String.valueOf(allocated / operations)));
+	}
+
+	/**
+	 * Repeat the operation during the given time, at least once
+	 * @param millis the time in milliseconds
+	 * @return the number of operations done
+	 * @throws Exception if the operation fails
+	 */
+	protected long repeat(long millis) throws Exception
+	{
+		long count = 0, end = System.nanoTime() + millis * 1000000L;
+		do
+		{
+			sink += operation();
+			count++;
+		}
+		while (System.nanoTime() < end);
+		return count;
+	}
+
+	/**
+	 * Return the number of bytes allocated by the current thread since its start
+	 * @return the number of bytes, -1 if the virtual machine doesn't provide it
+	 */
+	protected static long getAllocatedBytes()
+	{
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean)
+		{
+			com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+			if (sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled())
+				return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,306 @@
+package antColonyOptimization;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import locationsData.DataMatrix;
+import locationsData.TrafficInformation;
+import application.BusSchedulingException;
+import dataLoader.InstanceGenerator;
+
+/**
+ *  Benchmarks of the hot paths of the solver on synthetic instances, used to follow the performances
+ *  and to validate the optimizations. The instances have about 50, 200 and 600 locations and 1, 5 and 20 bus.
+ *  Arguments : [filter] [warm up milliseconds] [measure milliseconds], only the benchmarks whose name
+ *  contains the filter are run.
+ */
+public class SolverBenchmarks
+{
+	/** Numbers of locations of the instances */
+	protected static final int[] LOCATIONS = { 50, 200, 600 };
+
+	/** Numbers of bus of the instances */
+	protected static final int[] BUS = { 1, 5, 20 };
+
+	/** Number of matrix cells or hours read by a batch operation */
+	protected static final int BATCH = 1024;
+
+	/** Number of iterations of the solver during the solve benchmark */
+	protected static final int SOLVE_ITERATIONS = 2;
+
+	/** Seed of the instances and of the solver */
+	protected static final long SEED = 42;
+
+	/**
+	 * Run the benchmarks
+	 * @param args [filter] [warm up milliseconds] [measure milliseconds]
+	 * @throws Exception if a benchmark fails
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		String filter = args.length > 0 ? args[0] : "";
+		long warmup = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+		long measure = args.length > 2 ? Long.parseLong(args[2]) : 5000;
+		SolverData data;
+
+		for (int locations : LOCATIONS)
+		{
+			for (int bus : BUS)
+			{
+				data = createData(locations, bus, SEED);
+				for (Benchmark benchmark : createBenchmarks(data, bus == BUS[0]))
+				{
+					if (benchmark.name.contains(filter))
+					{
+						benchmark.run(data.getDataMatrix().getDimension() + " locations, " + bus + " bus", warmup,
+								measure);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create the parameters used by the benchmarks: automatic parameters, one thread and a fixed seed
+	 * @param data the data of the instance
+	 * @return the parameters
+	 */
+	protected static SolverParameters createParameters(SolverData data)
+	{
+		SolverParameters parameters = new SolverParameters(data.getDataMatrix());
+		parameters.setThreadsNumber(1);
+		parameters.setSeed(SEED);
+		return parameters;
+	}
+
+	/**
+	 * Create the benchmarks of an instance
+	 * @param data the data of the instance
+	 * @param matrix true to add the benchmarks only depending on the locations number
+	 * @return the benchmarks
+	 */
+	protected static List<Benchmark> createBenchmarks(final SolverData data, boolean matrix)
+	{
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		final SolverParameters parameters = createParameters(data);
+		final int dimension = data.getDataMatrix().getDimension();
+		final Random random = new Random(SEED);
+		final int[] cells = new int[BATCH * 2];
+
+		for (int i = 0 ; i < cells.length ; i++)
+		{
+			cells[i] = random.nextInt(dimension);
+		}
+
+		benchmarks.add(new Benchmark("Ant.searchDestinationLocation")
+		{
+			private Ant ant;
+
+			@Override
+			protected void setUp()
+			{
+				ConstructionWorker worker = createWorker(data, parameters);
+				ant = worker.ants[0];
+				ant.startRoute();
+			}
+
+			@Override
+			protected long operation()
+			{
+				return ant.searchDestinationLocation().getId();
+			}
+		});
+		benchmarks.add(new Benchmark("Ant.buildSolution (construction)")
+		{
+			private ConstructionWorker worker;
+
+			@Override
+			protected void setUp()
+			{
+				worker = createWorker(data, parameters);
+			}
+
+			@Override
+			protected long operation()
+			{
+				worker.resetBest();
+				worker.buildConstruction();
+				return worker.bestDelay;
+			}
+		});
+		benchmarks.add(new Benchmark("MinMaxAntSystem.updatePheromones")
+		{
+			private MinMaxAntSystem system;
+
+			@Override
+			protected void setUp()
+			{
+				system = createSystem(data, parameters);
+			}
+
+			@Override
+			protected long operation()
+			{
+				system.updatePheromones();
+				return 0;
+			}
+		});
+		benchmarks.add(new Benchmark("MinMaxAntSystem.evaporatePheromones")
+		{
+			private MinMaxAntSystem system;
+
+			@Override
+			protected void setUp()
+			{
+				system = createSystem(data, parameters);
+			}
+
+			@Override
+			protected long operation()
+			{
+				system.evaporatePheromones();
+				return 0;
+			}
+		});
+		benchmarks.add(new Benchmark("MinMaxAntSystem.solve")
+		{
+			@Override
+			protected long operation() throws InterruptedException
+			{
+				SolverParameters solveParameters = new SolverParameters(parameters);
+				MinMaxAntSystem system;
+
+				solveParameters.setIterationNumber(SOLVE_ITERATIONS);
+				system = new MinMaxAntSystem(data, solveParameters);
+				system.solve();
+				return system.getBestSnapshot().getTotalDelay();
+			}
+		});
+
+		if (!matrix)
+			return benchmarks;
+
+		benchmarks.add(new Benchmark("DataMatrix.getPheromones x" + BATCH)
+		{
+			@Override
+			protected long operation()
+			{
+				DataMatrix matrix = data.getDataMatrix();
+				double sum = 0;
+				for (int i = 0 ; i < cells.length ; i += 2)
+				{
+					sum += matrix.getPheromones(cells[i], cells[i + 1]);
+				}
+				return (long) sum;
+			}
+		});
+		benchmarks.add(new Benchmark("DataMatrix.addPheromones x" + BATCH)
+		{
+			@Override
+			protected long operation()
+			{
+				DataMatrix matrix = data.getDataMatrix();
+				for (int i = 0 ; i < cells.length ; i += 2)
+				{
+					matrix.addPheromones(cells[i], cells[i + 1], 1E-9);
+				}
+				return 0;
+			}
+		});
+		benchmarks.add(new Benchmark("DataMatrix.getDuration x" + BATCH)
+		{
+			@Override
+			protected long operation()
+			{
+				DataMatrix matrix = data.getDataMatrix();
+				long sum = 0;
+				for (int i = 0 ; i < cells.length ; i += 2)
+				{
+					sum += matrix.getDuration(cells[i], cells[i + 1]);
+				}
+				return sum;
+			}
+		});
+		benchmarks.add(new Benchmark("TrafficInformation.getCoefficient x" + BATCH)
+		{
+			private int[] hours = new int[BATCH];
+
+			@Override
+			protected void setUp()
+			{
+				for (int i = 0 ; i < hours.length ; i++)
+				{
+					hours[i] = random.nextInt(TrafficInformation.DAY);
+				}
+			}
+
+			@Override
+			protected long operation()
+			{
+				double sum = 0;
+				for (int i = 0 ; i < hours.length ; i++)
+				{
+					sum += data.traffic.getCoefficient(hours[i]);
+				}
+				return (long) sum;
+			}
+		});
+		return benchmarks;
+	}
+
+	/**
+	 * Create a construction worker using the choice information and the candidate list of the parameters
+	 * @param data the data of the instance
+	 * @param parameters the parameters
+	 * @return the worker
+	 */
+	protected static ConstructionWorker createWorker(SolverData data, SolverParameters parameters)
+	{
+		CandidateList candidates = null;
+
+		data.getDataMatrix().setPheromonesBounds(parameters.getMinPheromones(), parameters.getMaxPheromones());
+		data.getDataMatrix().fillPheromones(parameters.getPheromoneAtStart());
+		if (parameters.getCandidatesNumber() > 0)
+		{
+			candidates = new CandidateList(data.getDataMatrix(), parameters.getCandidatesNumber());
+		}
+		return new ConstructionWorker(data, parameters, SEED, new ChoiceInformation(data.getDataMatrix(),
+				parameters), candidates);
+	}
+
+	/**
+	 * Create a solver whose best partition is the best one of a few constructions
+	 * @param data the data of the instance
+	 * @param parameters the parameters
+	 * @return the solver
+	 */
+	protected static MinMaxAntSystem createSystem(SolverData data, SolverParameters parameters)
+	{
+		MinMaxAntSystem system = new MinMaxAntSystem(data, parameters);
+		system.workers[0].resetBest();
+		for (int i = 0 ; i < 10 ; i++)
+		{
+			system.workers[0].buildConstruction();
+		}
+		system.bestPartition = system.workers[0].getBestSnapshot();
+		return system;
+	}
+
+	/**
+	 * Create a synthetic instance. About one location in 20 is a point of interest shared by the paths,
+	 * the other ones are the homes of the persons and the depots.
+	 * @param locations the approximate number of locations, the number of paths is deduced from it
+	 * @param bus the number of bus
+	 * @param seed the seed of the generator
+	 * @return the data of the instance
+	 * @throws BusSchedulingException if the instance can't be created
+	 */
+	protected static SolverData createData(int locations, int bus, long seed) throws BusSchedulingException
+	{
+		InstanceGenerator generator = new InstanceGenerator(seed);
+		generator.setPathsNumber(locations * 20 / 21);
+		generator.setBusNumber(bus);
+		return generator.generate();
+	}
+}
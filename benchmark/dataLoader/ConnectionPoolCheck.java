@@ -0,0 +1,203 @@
+package dataLoader;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ *  Checks of the connection pool and of the statements cache on the stub driver, without database:
+ *  checkout and reuse of the connections, timeout of a checkout when all the connections are used,
+ *  validation of a connection without holding the pool, and reuse of the prepared statements.
+ *  Prints one line by check and ends with the exit code 1 if a check fails.
+ */
+public class ConnectionPoolCheck
+{
+	/** Request prepared by the statements cache check */
+	protected static final String REQUEST = "SELECT id FROM location WHERE latitude = ? AND longitude = ?";
+
+	/** Number of checks failed */
+	protected static int failures = 0;
+
+	/**
+	 * Run the checks
+	 * @param args unused
+	 * @throws Exception if a check can't be run
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		StubDriver driver = StubDriver.register();
+
+		checkCheckout(driver);
+		checkTimeout();
+		checkValidation(driver);
+		checkStatementsCache(driver);
+		System.out.println(failures == 0 ? "All the checks succeeded." : failures + " checks failed.");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Print the result of a check
+	 * @param name the name of the check
+	 * @param succeeded true if the check succeeded
+	 */
+	protected static void check(String name, boolean succeeded)
+	{
+		System.out.println((succeeded ? "ok     " : "FAILED ") + name);
+		if (!succeeded)
+		{
+			++failures;
+		}
+	}
+
+	/**
+	 * Create a pool on the stub driver
+	 * @param maximumSize the maximum number of connections
+	 * @return the pool
+	 */
+	protected static ConnectionPool createPool(int maximumSize)
+	{
+		ConnectionPool pool = new ConnectionPool(StubDriver.URL + "bus", "user", "password");
+		pool.setMaximumSize(maximumSize);
+		return pool;
+	}
+
+	/**
+	 * Check that the connections are opened when needed and reused after their release
+	 * @param driver the stub driver
+	 * @throws SQLException if a connection can't be opened
+	 */
+	protected static void checkCheckout(StubDriver driver) throws SQLException
+	{
+		ConnectionPool pool = createPool(2);
+		int opened = driver.connections.get();
+		PooledConnection first = pool.getConnection(), second = pool.getConnection();
+
+		check("checkout opens one connection by thread", first != second && pool.getOpenedConnections() == 2
+				&& driver.connections.get() - opened == 2);
+		pool.release(second);
+		check("checkout reuses the last released connection", pool.getConnection() == second
+				&& driver.connections.get() - opened == 2);
+		pool.release(first);
+		pool.release(second);
+		pool.close();
+		check("close closes the idle connections", pool.getOpenedConnections() == 0 && first.isClosed()
+				&& second.isClosed());
+	}
+
+	/**
+	 * Check that a checkout fails after the checkout timeout when all the connections are used,
+	 * and that a release during the wait gives the connection to the waiting thread
+	 * @throws Exception if a connection can't be opened
+	 */
+	protected static void checkTimeout() throws Exception
+	{
+		final ConnectionPool pool = createPool(1);
+		final PooledConnection used = pool.getConnection();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<PooledConnection> waiting;
+		long start;
+		boolean timedOut = false;
+
+		pool.setCheckoutTimeout(300);
+		start = System.currentTimeMillis();
+		try
+		{
+			pool.getConnection();
+		}
+		catch (SQLException e)
+		{
+			timedOut = true;
+		}
+		check("checkout fails after the timeout when the pool is full", timedOut
+				&& System.currentTimeMillis() - start >= 300);
+
+		pool.setCheckoutTimeout(5000);
+		waiting = executor.submit(new Callable<PooledConnection>()
+		{
+			@Override
+			public PooledConnection call() throws SQLException
+			{
+				return pool.getConnection();
+			}
+		});
+		Thread.sleep(200);
+		pool.release(used);
+		check("checkout waits for a release", waiting.get() == used && pool.getOpenedConnections() == 1);
+		executor.shutdown();
+		pool.release(used);
+		pool.close();
+	}
+
+	/**
+	 * Check that an idle connection is validated before being reused, without blocking the other threads
+	 * during the validation, and that an invalid connection is replaced
+	 * @param driver the stub driver
+	 * @throws Exception if a connection can't be opened
+	 */
+	protected static void checkValidation(StubDriver driver) throws Exception
+	{
+		final ConnectionPool pool = createPool(2);
+		PooledConnection connection = pool.getConnection(), validated;
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<PooledConnection> checkout;
+		int validations = driver.validations.get();
+		long start, blocked;
+
+		pool.release(connection);
+		pool.setValidationInterval(0);
+		driver.validationDelay = 1000;
+		checkout = executor.submit(new Callable<PooledConnection>()
+		{
+			@Override
+			public PooledConnection call() throws SQLException
+			{
+				return pool.getConnection();
+			}
+		});
+		Thread.sleep(200);
+		// The pool is used by this thread while the other one validates its connection
+		start = System.currentTimeMillis();
+		pool.release(pool.getConnection());
+		blocked = System.currentTimeMillis() - start;
+		validated = checkout.get();
+		check("validation doesn't hold the pool (other checkout took " + blocked + " ms)", blocked < 500);
+		check("validation reuses a valid idle connection", validated == connection
+				&& driver.validations.get() - validations >= 1);
+		pool.release(validated);
+
+		driver.validationDelay = 0;
+		driver.valid = false;
+		validated = pool.getConnection();
+		check("validation replaces an invalid idle connection", validated != connection && connection.isClosed()
+				&& pool.getOpenedConnections() == 1);
+		driver.valid = true;
+		pool.release(validated);
+		executor.shutdown();
+		pool.close();
+	}
+
+	/**
+	 * Check that a request is prepared once by connection and that its parameters are cleared when it is reused
+	 * @param driver the stub driver
+	 * @throws SQLException if a connection can't be opened
+	 */
+	protected static void checkStatementsCache(StubDriver driver) throws SQLException
+	{
+		ConnectionPool pool = createPool(1);
+		PooledConnection connection = pool.getConnection();
+		int statements = driver.statements.get(), cleared = driver.clearedParameters.get();
+		PreparedStatement first = connection.prepareStatement(REQUEST);
+
+		pool.release(connection);
+		connection = pool.getConnection();
+		check("statements cache hit after a release", connection.prepareStatement(REQUEST) == first
+				&& driver.statements.get() - statements == 1 && driver.clearedParameters.get() - cleared == 1);
+		check("statements cache miss for an other request", connection.prepareStatement(REQUEST + " LIMIT 1") != first
+				&& driver.statements.get() - statements == 2);
+		pool.release(connection);
+		pool.close();
+	}
+}
@@ -0,0 +1,387 @@
+package dataLoader;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import locationsData.DataMatrix;
+import locationsData.Location;
+import application.Metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import dataLoader.GoogleDistances.DistanceRequest;
+
+/**
+ *  Checks of the distance fetcher against a local stand-in of the Distance Matrix API: the number of requests
+ *  in flight is bounded, a request over the query limit is sent again after 2 then 4 seconds, and an error
+ *  stops the pipeline without sending the remaining requests.
+ *  Prints one line by check and ends with the exit code 1 if a check fails.
+ */
+public class DistanceFetcherCheck
+{
+	/** Number of checks failed */
+	protected static int failures = 0;
+
+	/** Number of destinations of each request */
+	protected static final int DESTINATIONS = 5;
+
+	/**
+	 * Run the checks
+	 * @param args unused
+	 * @throws Exception if a check can't be run
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		StandIn standIn = new StandIn();
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		Location[] locations = new Location[40];
+		DataMatrix matrix;
+		GoogleDistances service;
+
+		for (int i = 0 ; i < locations.length ; i++)
+		{
+			locations[i] = new Location("Lugar " + i, "Rua " + i, "Centro", "", "", -26.3f - i * 0.001f,
+					-48.8f - i * 0.001f);
+		}
+		matrix = new DataMatrix(locations);
+		service = new GoogleDistances(matrix, null, false);
+
+		server.createContext("/distancematrix", standIn);
+		// The stand-in answers all the requests at the same time, so the fetcher alone bounds them
+		server.setExecutor(Executors.newCachedThreadPool(new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable r)
+			{
+				Thread thread = new Thread(r, "stand-in");
+				thread.setDaemon(true);
+				return thread;
+			}
+		}));
+		server.start();
+		GoogleDistances.setServiceURL("http://127.0.0.1:" + server.getAddress().getPort() + "/distancematrix");
+		try
+		{
+			checkRequestsInFlight(standIn, service, locations);
+			checkRetry(standIn, service, locations);
+			checkError(standIn, service, locations);
+		}
+		finally
+		{
+			server.stop(0);
+		}
+		System.out.println(failures == 0 ? "All the checks succeeded." : failures + " checks failed.");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Print the result of a check
+	 * @param name the name of the check
+	 * @param succeeded true if the check succeeded
+	 */
+	protected static void check(String name, boolean succeeded)
+	{
+		System.out.println((succeeded ? "ok     " : "FAILED ") + name);
+		if (!succeeded)
+		{
+			++failures;
+		}
+	}
+
+	/**
+	 * Create requests of one origin and the next destinations
+	 * @param service the service creating the requests
+	 * @param locations the locations
+	 * @param count the number of requests
+	 * @return the requests
+	 */
+	protected static List<DistanceRequest> createRequests(GoogleDistances service, Location[] locations, int count)
+	{
+		List<DistanceRequest> requests = new ArrayList<DistanceRequest>(count);
+		for (int i = 0 ; i < count ; i++)
+		{
+			Location[] destinations = new Location[DESTINATIONS];
+			for (int j = 0 ; j < DESTINATIONS ; j++)
+			{
+				destinations[j] = locations[(i + j + 1) % locations.length];
+			}
+			requests.add(service.new DistanceRequest(new Location[] { locations[i % locations.length] }, destinations));
+		}
+		return requests;
+	}
+
+	/**
+	 * Create a fetcher without rate limit
+	 * @param service the service parsing the responses
+	 * @param requestsInFlight the number of requests in flight
+	 * @return the fetcher
+	 */
+	protected static DistanceFetcher createFetcher(GoogleDistances service, int requestsInFlight)
+	{
+		return new DistanceFetcher(service, new TokenBucket(1000000, 1000000, 1), requestsInFlight, new Metrics());
+	}
+
+	/**
+	 * Check that no more requests than asked are in flight at the same time, and that they are really sent
+	 * at the same time
+	 * @param standIn the stand-in of the service
+	 * @param service the service
+	 * @param locations the locations
+	 * @throws Exception if the pipeline fails
+	 */
+	protected static void checkRequestsInFlight(StandIn standIn, GoogleDistances service, Location[] locations)
+			throws Exception
+	{
+		final AtomicInteger written = new AtomicInteger();
+		final boolean[] complete = { true };
+		long start;
+
+		standIn.reset(150);
+		start = System.currentTimeMillis();
+		createFetcher(service, 3).run(createRequests(service, locations, 12), new DistanceFetcher.Writer()
+		{
+			@Override
+			public void write(DistanceRequest request, int[][] elements)
+			{
+				written.incrementAndGet();
+				complete[0] &= elements[0].length == DESTINATIONS && elements[1].length == DESTINATIONS;
+			}
+		});
+		check("every response written (" + written.get() + " of 12, " + (System.currentTimeMillis() - start)
+				+ " ms)", written.get() == 12 && complete[0]);
+		check("at most 3 requests in flight (" + standIn.maximumInFlight.get() + " at the most)",
+				standIn.maximumInFlight.get() <= 3);
+		check("requests sent at the same time", standIn.maximumInFlight.get() > 1);
+	}
+
+	/**
+	 * Check that a request over the query limit is sent again after 2 seconds, then after 4 seconds
+	 * @param standIn the stand-in of the service
+	 * @param service the service
+	 * @param locations the locations
+	 * @throws Exception if the pipeline fails
+	 */
+	protected static void checkRetry(StandIn standIn, GoogleDistances service, Location[] locations)
+			throws Exception
+	{
+		final AtomicInteger written = new AtomicInteger();
+		List<Long> times;
+		long first, second;
+
+		standIn.reset(0);
+		standIn.overQueryLimits = 2;
+		createFetcher(service, 2).run(createRequests(service, locations, 1), new DistanceFetcher.Writer()
+		{
+			@Override
+			public void write(DistanceRequest request, int[][] elements)
+			{
+				written.incrementAndGet();
+			}
+		});
+		times = standIn.times.values().iterator().next();
+		check("request sent 3 times after 2 answers over the query limit", times.size() == 3 && written.get() == 1);
+		if (times.size() == 3)
+		{
+			first = times.get(1) - times.get(0);
+			second = times.get(2) - times.get(1);
+			check("second attempt after 2 s (" + first + " ms)", first >= 2000 && first < 2900);
+			check("third attempt after 4 s (" + second + " ms)", second >= 4000 && second < 4900);
+		}
+	}
+
+	/**
+	 * Check that an error stops the pipeline: the error is thrown by the fetcher
+	 * and the requests not sent yet are dropped
+	 * @param standIn the stand-in of the service
+	 * @param service the service
+	 * @param locations the locations
+	 * @throws Exception if the check can't be run
+	 */
+	protected static void checkError(StandIn standIn, GoogleDistances service, Location[] locations)
+			throws Exception
+	{
+		List<DistanceRequest> requests = createRequests(service, locations, 20);
+		Exception error = null;
+		int sent;
+
+		standIn.reset(100);
+		standIn.deniedOrigin = requests.get(2).getOrigins()[0];
+		try
+		{
+			createFetcher(service, 2).run(requests, new DistanceFetcher.Writer()
+			{
+				@Override
+				public void write(DistanceRequest request, int[][] elements) {}
+			});
+		}
+		catch (Exception e)
+		{
+			error = e;
+		}
+		check("error thrown by the pipeline (" + error + ")", error != null);
+		// The requests in flight when the pipeline stops still reach the stand-in
+		Thread.sleep(500);
+		sent = standIn.sent.get();
+		check("remaining requests dropped (" + sent + " of 20 sent)", sent < 10);
+	}
+
+	/**
+	 *  Stand-in of the Distance Matrix API. The distance between two locations is the sum of their
+	 *  coordinates hash codes, the answers can be delayed, over the query limit or denied.
+	 */
+	protected static class StandIn implements HttpHandler
+	{
+		/** Time taken by each answer, in milliseconds */
+		protected volatile long delay;
+
+		/** Number of answers over the query limit given to each request before the right answer */
+		protected volatile int overQueryLimits;
+
+		/** Origin whose requests are denied, null to accept all of them */
+		protected volatile Location deniedOrigin;
+
+		/** Number of requests received */
+		protected AtomicInteger sent = new AtomicInteger();
+
+		/** Number of requests in flight */
+		protected AtomicInteger inFlight = new AtomicInteger();
+
+		/** Maximum number of requests in flight at the same time */
+		protected AtomicInteger maximumInFlight = new AtomicInteger();
+
+		/** Times of the attempts of each request, in milliseconds, by query */
+		protected Map<String, List<Long>> times = Collections.synchronizedMap(new HashMap<String, List<Long>>());
+
+		/**
+		 * Forget the requests received and accept all the next ones
+		 * @param delay the time taken by each answer, in milliseconds
+		 */
+		public void reset(long delay)
+		{
+			this.delay = delay;
+			overQueryLimits = 0;
+			deniedOrigin = null;
+			sent.set(0);
+			inFlight.set(0);
+			maximumInFlight.set(0);
+			times.clear();
+		}
+
+		/**
+		 * Answer a request
+		 * @see com.sun.net.httpserver.HttpHandler#handle(com.sun.net.httpserver.HttpExchange)
+		 */
+		@Override
+		public void handle(HttpExchange exchange) throws IOException
+		{
+			String query = exchange.getRequestURI().getRawQuery();
+			String[] origins = getParameter(query, "origins").split("%7C");
+			String[] destinations = getParameter(query, "destinations").split("%7C");
+			List<Long> attempts;
+			byte[] body;
+			int current;
+
+			sent.incrementAndGet();
+			current = inFlight.incrementAndGet();
+			for (int max = maximumInFlight.get() ; current > max && !maximumInFlight.compareAndSet(max, current) ; )
+			{
+				max = maximumInFlight.get();
+			}
+			synchronized (times)
+			{
+				attempts = times.get(query);
+				if (attempts == null)
+				{
+					attempts = new ArrayList<Long>();
+					times.put(query, attempts);
+				}
+				attempts.add(System.currentTimeMillis());
+			}
+			try
+			{
+				Thread.sleep(delay);
+			}
+			catch (InterruptedException e) {}
+
+			if (attempts.size() <= overQueryLimits)
+			{
+				body = "{\"status\":\"OVER_QUERY_LIMIT\"}".getBytes("UTF-8");
+			}
+			else if (deniedOrigin != null
+					&& origins[0].equals(deniedOrigin.getLatitude() + "+" + deniedOrigin.getLongitude()))
+			{
+				body = "{\"status\":\"REQUEST_DENIED\"}".getBytes("UTF-8");
+			}
+			else
+			{
+				body = answer(origins, destinations).getBytes("UTF-8");
+			}
+			inFlight.decrementAndGet();
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}
+
+		/**
+		 * Return the value of a parameter of a query
+		 * @param query the query
+		 * @param name the name of the parameter
+		 * @return the raw value of the parameter, empty if the parameter is missing
+		 */
+		protected static String getParameter(String query, String name)
+		{
+			for (String parameter : query.split("&"))
+			{
+				if (parameter.startsWith(name + "="))
+					return parameter.substring(name.length() + 1);
+			}
+			return "";
+		}
+
+		/**
+		 * Build the right answer of a request
+		 * @param origins the origins coordinates
+		 * @param destinations the destinations coordinates
+		 * @return the JSON answer
+		 */
+		protected static String answer(String[] origins, String[] destinations)
+		{
+			StringBuilder sb = new StringBuilder("{\"status\":\"OK\",\"origin_addresses\":[");
+			for (int i = 0 ; i < origins.length ; i++)
+			{
+				sb.append(i > 0 ? "," : "").append("\"").append(origins[i]).append("\"");
+			}
+			sb.append("],\"destination_addresses\":[");
+			for (int i = 0 ; i < destinations.length ; i++)
+			{
+				sb.append(i > 0 ? "," : "").append("\"").append(destinations[i]).append("\"");
+			}
+			sb.append("],\"rows\":[");
+			for (int i = 0 ; i < origins.length ; i++)
+			{
+				sb.append(i > 0 ? "," : "").append("{\"elements\":[");
+				for (int j = 0 ; j < destinations.length ; j++)
+				{
+					int distance = Math.abs(origins[i].hashCode() + destinations[j].hashCode()) % 20000;
+					sb.append(j > 0 ? "," : "").append("{\"status\":\"OK\",\"distance\":{\"value\":").append(distance)
+							.append("},\"duration\":{\"value\":").append(distance / 10).append("}}");
+				}
+				sb.append("]}");
+			}
+			return sb.append("]}").toString();
+		}
+	}
+}
@@ -0,0 +1,188 @@
+package dataLoader;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import locationsData.Location;
+import application.BusSchedulingException;
+import dataLoader.DistanceRequestPlanner.Tile;
+
+/**
+ *  Checks of the tiles planned for the missing couples of locations, with the limits of the Distance Matrix API
+ *  with and without subscription: each tile respects the limits, the tiles ask every missing couple exactly once
+ *  and no other one, and their number is close to the minimum.
+ *  Prints one line by check and ends with the exit code 1 if a check fails.
+ */
+public class DistanceRequestPlannerCheck
+{
+	/** Number of checks failed */
+	protected static int failures = 0;
+
+	/**
+	 * Run the checks
+	 * @param args unused
+	 * @throws Exception if a check can't be run
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		Location[] locations = createLocations(500);
+		List<Location[]> missing;
+		boolean rejected = false;
+
+		check("no tile without missing couple", DistanceRequestPlanner.plan(new ArrayList<Location[]>(), 25, 100)
+				.isEmpty());
+		missing = new ArrayList<Location[]>();
+		missing.add(new Location[] { locations[0], locations[1] });
+		checkPlan("one missing couple", missing, 25, 100, 1);
+		checkPlan("one origin, 250 destinations", square(locations, 1, 250, 1), 25, 100, 10);
+		checkPlan("10 origins, 10 destinations", square(locations, 10, 10, 0), 25, 100, 1);
+		checkPlan("30 origins, 30 destinations", square(locations, 30, 30, 0), 25, 100, 9);
+		checkPlan("30 origins, 30 destinations, subscription", square(locations, 30, 30, 0), 25, 625, 4);
+		// A day with 100 new locations among 500: the couples with a new origin or a new destination are missing,
+		// the couple of a new location with itself being kept by GoogleDatabaseDistances to group the new origins
+		checkPlan("100 new locations of 500", newLocations(locations, 100), 25, 100, 900);
+		checkPlan("100 new locations of 500, subscription", newLocations(locations, 100), 25, 625, 144);
+		try
+		{
+			DistanceRequestPlanner.plan(missing, 0, 100);
+		}
+		catch (IllegalArgumentException e)
+		{
+			rejected = true;
+		}
+		check("invalid limits rejected", rejected);
+		System.out.println(failures == 0 ? "All the checks succeeded." : failures + " checks failed.");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Print the result of a check
+	 * @param name the name of the check
+	 * @param succeeded true if the check succeeded
+	 */
+	protected static void check(String name, boolean succeeded)
+	{
+		System.out.println((succeeded ? "ok     " : "FAILED ") + name);
+		if (!succeeded)
+		{
+			++failures;
+		}
+	}
+
+	/**
+	 * Plan the tiles of missing couples and check their limits, their couples and their number
+	 * @param name the name of the check
+	 * @param missing the missing couples
+	 * @param maxLocations maximum number of origins, and of destinations, by request
+	 * @param maxElements maximum number of couples by request
+	 * @param expectedTiles the number of tiles expected
+	 */
+	protected static void checkPlan(String name, List<Location[]> missing, int maxLocations, int maxElements,
+			int expectedTiles)
+	{
+		List<Tile> tiles = DistanceRequestPlanner.plan(missing, maxLocations, maxElements);
+		Set<List<Location>> expected = new HashSet<List<Location>>(), asked = new HashSet<List<Location>>();
+		boolean limits = true, once = true;
+		int elements = 0;
+
+		for (Location[] couple : missing)
+		{
+			expected.add(couple(couple[0], couple[1]));
+		}
+		for (Tile tile : tiles)
+		{
+			limits &= tile.getOrigins().length <= maxLocations && tile.getDestinations().length <= maxLocations
+					&& tile.getElements() <= maxElements && tile.getElements() > 0;
+			elements += tile.getElements();
+			for (Location origin : tile.getOrigins())
+			{
+				for (Location destination : tile.getDestinations())
+				{
+					once &= asked.add(couple(origin, destination));
+				}
+			}
+		}
+		check(name + " : " + tiles.size() + " tiles of at most " + maxLocations + " locations by side and "
+				+ maxElements + " elements", limits);
+		check(name + " : " + elements + " elements, each missing couple asked once", once && asked.equals(expected));
+		check(name + " : " + tiles.size() + " tiles expected " + expectedTiles + ", at least "
+				+ (missing.size() + maxElements - 1) / maxElements, tiles.size() == expectedTiles);
+	}
+
+	/**
+	 * Create a couple of locations which can be compared
+	 * @param origin the origin
+	 * @param destination the destination
+	 * @return the couple
+	 */
+	protected static List<Location> couple(Location origin, Location destination)
+	{
+		List<Location> couple = new ArrayList<Location>(2);
+		couple.add(origin);
+		couple.add(destination);
+		return couple;
+	}
+
+	/**
+	 * Create locations with distinct coordinates
+	 * @param count the number of locations
+	 * @return the locations
+	 * @throws BusSchedulingException if a location can't be created
+	 */
+	protected static Location[] createLocations(int count) throws BusSchedulingException
+	{
+		Location[] locations = new Location[count];
+		for (int i = 0 ; i < count ; i++)
+		{
+			locations[i] = new Location("Lugar " + i, "Rua " + i, "Centro", "", "", -26.3f - i * 0.0001f,
+					-48.8f - i * 0.0001f);
+		}
+		return locations;
+	}
+
+	/**
+	 * Return every couple between the first origins and the next destinations
+	 * @param locations the locations
+	 * @param origins the number of origins, taken from the first location
+	 * @param destinations the number of destinations
+	 * @param offset index of the first destination
+	 * @return the couples
+	 */
+	protected static List<Location[]> square(Location[] locations, int origins, int destinations, int offset)
+	{
+		List<Location[]> missing = new ArrayList<Location[]>();
+		for (int o = 0 ; o < origins ; o++)
+		{
+			for (int d = offset ; d < offset + destinations ; d++)
+			{
+				missing.add(new Location[] { locations[o], locations[d] });
+			}
+		}
+		return missing;
+	}
+
+	/**
+	 * Return the couples of locations, one of them at least being new
+	 * @param locations the locations
+	 * @param newLocations the number of new locations, the last ones
+	 * @return the couples
+	 */
+	protected static List<Location[]> newLocations(Location[] locations, int newLocations)
+	{
+		List<Location[]> missing = new ArrayList<Location[]>();
+		int known = locations.length - newLocations;
+		for (int o = 0 ; o < locations.length ; o++)
+		{
+			for (int d = 0 ; d < locations.length ; d++)
+			{
+				if (o >= known || d >= known)
+				{
+					missing.add(new Location[] { locations[o], locations[d] });
+				}
+			}
+		}
+		return missing;
+	}
+}
@@ -0,0 +1,163 @@
+package dataLoader;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  JDBC driver without database, answering the urls starting with "jdbc:stub:". Its connections and statements
+ *  only count the calls, so the connection pool can be checked without a MySQL server.
+ */
+class StubDriver implements InvocationHandler
+{
+	/** Prefix of the urls accepted by the driver */
+	public static final String URL = "jdbc:stub:";
+
+	/** Number of connections opened */
+	protected AtomicInteger connections = new AtomicInteger();
+
+	/** Number of statements prepared */
+	protected AtomicInteger statements = new AtomicInteger();
+
+	/** Number of times the parameters of a statement were cleared */
+	protected AtomicInteger clearedParameters = new AtomicInteger();
+
+	/** Number of validations of a connection */
+	protected AtomicInteger validations = new AtomicInteger();
+
+	/** Time taken by a validation, in milliseconds */
+	protected volatile long validationDelay = 0;
+
+	/** Result of the validations */
+	protected volatile boolean valid = true;
+
+	/**
+	 * Create a driver and register it in the driver manager
+	 * @return the driver
+	 * @throws SQLException if the driver can't be registered
+	 */
+	public static StubDriver register() throws SQLException
+	{
+		StubDriver driver = new StubDriver();
+		DriverManager.registerDriver((Driver) proxy(Driver.class, driver));
+		return driver;
+	}
+
+	/**
+	 * Create an object implementing an interface by a handler
+	 * @param type the interface
+	 * @param handler the handler of the calls
+	 * @return the object
+	 */
+	protected static Object proxy(Class<?> type, InvocationHandler handler)
+	{
+		return Proxy.newProxyInstance(StubDriver.class.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+
+	/**
+	 * Answer a call to the driver
+	 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+	 */
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+	{
+		String name = method.getName();
+
+		if (name.equals("acceptsURL"))
+			return ((String) args[0]).startsWith(URL);
+		if (name.equals("connect"))
+		{
+			if (!((String) args[0]).startsWith(URL))
+				return null;
+			connections.incrementAndGet();
+			return proxy(Connection.class, new StubConnection());
+		}
+		if (name.equals("getPropertyInfo"))
+			return new DriverPropertyInfo[0];
+		return defaultValue(proxy, method, args);
+	}
+
+	/**
+	 * Return the value of a call without effect: the identity methods of the object,
+	 * else null, false or 0 depending on the return type
+	 * @param proxy the object called
+	 * @param method the method called
+	 * @param args the arguments of the call
+	 * @return the value of the call
+	 */
+	protected static Object defaultValue(Object proxy, Method method, Object[] args)
+	{
+		Class<?> type = method.getReturnType();
+
+		if (method.getName().equals("equals"))
+			return proxy == args[0];
+		if (method.getName().equals("hashCode"))
+			return System.identityHashCode(proxy);
+		if (method.getName().equals("toString"))
+			return "stub " + method.getDeclaringClass().getSimpleName();
+		if (type == boolean.class)
+			return false;
+		if (type == int.class)
+			return 0;
+		if (type == long.class)
+			return 0L;
+		return null;
+	}
+
+	/**
+	 *  Connection of the stub driver
+	 */
+	protected class StubConnection implements InvocationHandler
+	{
+		/** true once the connection is closed */
+		private volatile boolean closed = false;
+
+		/**
+		 * Answer a call to the connection
+		 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+		 */
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+		{
+			String name = method.getName();
+
+			if (name.equals("prepareStatement"))
+			{
+				statements.incrementAndGet();
+				return proxy(PreparedStatement.class, new InvocationHandler()
+				{
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args)
+					{
+						if (method.getName().equals("clearParameters"))
+						{
+							clearedParameters.incrementAndGet();
+						}
+						return defaultValue(proxy, method, args);
+					}
+				});
+			}
+			if (name.equals("isValid"))
+			{
+				validations.incrementAndGet();
+				Thread.sleep(validationDelay);
+				return valid && !closed;
+			}
+			if (name.equals("isClosed"))
+				return closed;
+			if (name.equals("close"))
+			{
+				closed = true;
+				return null;
+			}
+			return defaultValue(proxy, method, args);
+		}
+	}
+}
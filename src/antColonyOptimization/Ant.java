@@ -1,13 +1,13 @@
 package antColonyOptimization;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import antColonyOptimization.MinMaxAntSystem.SwapConductorPath;
 
-import locationsData.Location;
-
 /** 
  *  Class simulating a work of an ant used by the min max ant system.
  */
@@ -19,19 +19,44 @@ class Ant
 	protected List<DynamicPath> globalPaths;
 	/**  The coefficient used by the ants to calculate probabilities */
 	protected int visibilityCoef;
-	/** The coefficient used by the ants to calculate probabilities */
-	protected int pheromoneCoef;
 
 	/** A dynamic bus use to help the ant work with constraints capacity */
 	protected DynamicBus bus;
 	/** The paths done by this ant. */
 	protected Set<DynamicPath> chosenPaths;
+	/** The paths started but not finished by this ant: persons in the bus and driver swap */
+	protected List<DynamicPath> pendingPaths;
 	/** The special path used to perform the conductor swap */
 	protected SwapConductorPath swap;
-	/** Data of the path found by the ant */
-	protected Route route;
+	/** Data of the path found by the ant, reused by each construction */
+	protected RouteBuilder route = new RouteBuilder(30);
 	/** The provisional hour the ant start or continue his work;*/
 	protected int hour;
+	/** Index in the data matrix of the last location visited by the ant */
+	protected int position;
+	/** Index in the data matrix of the bus origin location */
+	protected int originIndex;
+	/** Pheromones and visibility products, used to calculate the probabilities */
+	protected ChoiceInformation choiceInformation;
+	/** Random generator used to choose the next path */
+	protected Random random = new Random();
+	/** Nearest locations of each location, or null if every path is evaluated at each step */
+	protected CandidateList candidates;
+	/** The paths of the solver grouped by location, used with the candidate list */
+	protected DynamicPath[][] pathsByLocation;
+	/** Paths the ant can choose at the current step, the array is reused at each step */
+	protected DynamicPath[] candidatePaths = new DynamicPath[0];
+	/** Cumulated weights of the candidate paths, the array is reused at each step */
+	protected double[] cumulatedWeights = new double[0];
+	/** Delay allowed to the persons in the bus before a location making it certain is discarded,
+	 * negative if no location is discarded */
+	protected int slack;
+	/** true if the candidate paths making certain the delay of a started path are discarded at the current step */
+	protected boolean pruning = false;
+	/** Paths started by the ant which can still be finished in time, the array is reused at each step */
+	protected DynamicPath[] deadlinePaths = new DynamicPath[0];
+	/** Number of paths in the deadline paths */
+	protected int deadlinesCount = 0;
 
 	/** 
 	 * Full constructor 
@@ -39,15 +64,20 @@ class Ant
 	 * @param bus the bus linked to the ant
 	 * @param parameters the solver parameters to determine coefficient
 	 * @param globalPaths a reference to the list of global paths
+	 * @param choiceInformation the pheromones and visibility products used to calculate the probabilities
 	 */
-	public Ant(SolverData data, DynamicBus bus, SolverParameters parameters, List<DynamicPath> globalPaths)
+	public Ant(SolverData data, DynamicBus bus, SolverParameters parameters, List<DynamicPath> globalPaths,
+			ChoiceInformation choiceInformation)
 	{
 		this.data = data;
+		this.choiceInformation = choiceInformation;
 		this.bus = bus;
-		this.pheromoneCoef = parameters.getPheromoneCoef();
 		this.visibilityCoef = parameters.getVisibilityCoef();
+		this.slack = parameters.getFeasibilitySlack();
 		this.globalPaths = globalPaths;
 		this.chosenPaths = new HashSet<DynamicPath>();
+		this.pendingPaths = new ArrayList<DynamicPath>();
+		this.originIndex = data.getIndex(bus.getOrigin());
 	}
 
 	/**
@@ -60,7 +90,8 @@ class Ant
 		hour = bus.getMinBusStartTime();
 		// We add the origin point
 		swap.setSwapTime(hour + SolverData.getDriverWorkTime());
-		route.addLocation(bus.getOrigin(), hour);
+		route.addLocation(originIndex, hour);
+		position = originIndex;
 	}
 
 	/**
@@ -69,9 +100,9 @@ class Ant
 	protected void finishRoute()
 	{
 		// we finalize the route by adding the final destination
-		Location chosenLoc = bus.getOrigin();
-		hour += data.getDuration(route.getLastVisitedLocation(), chosenLoc);
-		route.addLocation(chosenLoc, hour);
+		hour += data.getDuration(position, originIndex);
+		route.addLocation(originIndex, hour);
+		position = originIndex;
 	}
 
 	/**
@@ -79,9 +110,16 @@ class Ant
 	 */
 	protected void init()
 	{
-		route = new Route();
+		route.reset();
+		if (candidatePaths.length < globalPaths.size())
+		{
+			candidatePaths = new DynamicPath[globalPaths.size()];
+			cumulatedWeights = new double[globalPaths.size()];
+		}
 		chosenPaths.clear();
 		chosenPaths.add(swap);
+		pendingPaths.clear();
+		pendingPaths.add(swap);
 	}
 
 	/**
@@ -97,21 +135,18 @@ class Ant
 	 * Return the value of the attribute travel
 	 * @return The travel value
 	 */
-	public Route getRoute()
+	public RouteBuilder getRoute()
 	{
 		return route;
 	}
 
-	/** 
-	 * Calculate the probability to take a specified path in function of path weight 
-	 * and pheromones
-	 * @param pheromones 
-	 * @param visibility 
-	 * @return The probability calculated
+	/**
+	 * Give the ant the route it will fill during the next construction
+	 * @param route the route, reset at the start of the next construction
 	 */
-	protected double calculateProbability(double pheromones, int visibility)
+	protected void setRoute(RouteBuilder route)
 	{
-		return Math.pow(pheromones, pheromoneCoef) * Math.pow(1.0 / visibility, visibilityCoef);
+		this.route = route;
 	}
 
 	/** Return the chosenPaths value
@@ -129,24 +164,18 @@ class Ant
 	public void buildSolution(int locationsToConstruct)
 	{
 		DynamicPath chosenPath; // represent the chosen path at each step
-		Location chosenLoc; // represent the chosen location at each step
+		int chosenLoc; // represent the index of the chosen location at each step
 		boolean isGoingOrigin = false;
-		float coeff;
 		int duration;
 
 		// While we find a path to do
 		while ((chosenPath = searchDestinationLocation()) != null && locationsToConstruct > 0)
 		{
 			// We choose with probability a destination
-			chosenLoc = chosenPath.getNext();
+			chosenLoc = chosenPath.getNextIndex();
 			isGoingOrigin = chosenPath.isGoingOrigin();
-			// Then we calculate the duration modify by the traffic coefficient
-			// We use an average between start time coefficient and arrival time coefficient
-			duration = data.getDuration(route.getLastVisitedLocation(), chosenLoc);
-			coeff = data.getTrafficCoefficient(hour);
-			coeff += data.getTrafficCoefficient(hour + duration);
-			coeff /= 2;
-			duration *= coeff;
+			// Then we calculate the duration modify by the traffic coefficients met during the travel
+			duration = data.getTravelTime(position, chosenLoc, hour);
 			// And we add the duration to the hour
 			hour += duration;
 
@@ -171,12 +200,30 @@ class Ant
 				bus.removePerson(chosenPath.getPerson());
 			}
 			hour += chosenPath.getStopDuration();
+			position = chosenLoc;
 
 			chosenPaths.add(chosenPath);
+			if (chosenPath.isFinished())
+			{
+				pendingPaths.remove(chosenPath);
+			}
+			else
+			{
+				pendingPaths.add(chosenPath);
+			}
 			locationsToConstruct--;
 		}
 	}
 
+	/**
+	 * Set the random generator used to choose the next path
+	 * @param random the random generator
+	 */
+	protected void setRandom(Random random)
+	{
+		this.random = random;
+	}
+
 	/**
 	 * Set the swap conductor path
 	 * @param scp the swap conductor path
@@ -186,77 +233,262 @@ class Ant
 		this.swap = scp;
 	}
 
+	/**
+	 * Set the candidate list used to choose the next path, and the paths of the solver grouped by location
+	 * @param candidates the candidate list, or null to always evaluate every path
+	 * @param pathsByLocation pathsByLocation[location] contains the paths having this location as origin or destination
+	 */
+	protected void setCandidateList(CandidateList candidates, DynamicPath[][] pathsByLocation)
+	{
+		this.candidates = candidates;
+		this.pathsByLocation = pathsByLocation;
+	}
+
 	/** 
-	 * Return the path having the next destination location
+	 * Return the path having the next destination location.
+	 * If a candidate list is set, only the paths going to the nearest locations are evaluated,
+	 * unless no person can be taken at them.
+	 * The paths making certain the delay of a person in the bus are discarded, unless all of them do.
 	 * @return the path having the next destination location
 	 */
 	protected DynamicPath searchDestinationLocation()
 	{
-		Location start = route.getLastVisitedLocation(), dest;
-		double sumProba = 0, rand, sumRand = 0;
-		int size = globalPaths.size(), i = 0, visibility, count = 0;
-		double pheromones;
-		double probas[] = new double[size];
+		int count;
+
+		pruning = prepareDeadlines();
+		count = addLocations();
+		if (count == 0 && pruning)
+		{
+			pruning = false;
+			count = addLocations();
+		}
+		return choosePath(count);
+	}
+
+	/**
+	 * Add to the candidate paths the paths going to the nearest locations,
+	 * or every path the ant can do if there is no candidate list or if no person can be taken at the nearest locations
+	 * @return the number of candidate paths
+	 */
+	protected int addLocations()
+	{
+		int count = 0;
+		if (candidates != null)
+		{
+			count = addCandidateLocations();
+		}
+		if (count == 0)
+		{
+			count = addAllLocations();
+		}
+		return count;
+	}
+
+	/**
+	 * Save the paths started by the ant which can still be finished in time, 
+	 * using the durations without traffic as lower bounds
+	 * @return true if at least one path can still be finished in time, false if there is nothing to check
+	 */
+	protected boolean prepareDeadlines()
+	{
+		DynamicPath path;
+
+		deadlinesCount = 0;
+		if (slack < 0)
+			return false;
+		if (deadlinePaths.length < pendingPaths.size())
+		{
+			deadlinePaths = new DynamicPath[pendingPaths.size() * 2];
+		}
+		for (int i = 0, size = pendingPaths.size() ; i < size ; i++)
+		{
+			path = pendingPaths.get(i);
+			if (hour + data.getDuration(position, path.getNextIndex()) <= path.getWishedDepositTime() + slack)
+			{
+				deadlinePaths[deadlinesCount++] = path;
+			}
+		}
+		return deadlinesCount > 0;
+	}
+
+	/**
+	 * Says if going to the next location of a path makes certain the delay, beyond the slack, 
+	 * of one of the paths which can still be finished in time.
+	 * The durations without traffic are used as lower bounds, so a path which is not late is never discarded.
+	 * @param path the path
+	 * @return true if a started path will be late whatever the next locations are, false otherwise
+	 */
+	protected boolean isLate(DynamicPath path)
+	{
+		int location = path.getNextIndex(), departure;
+		DynamicPath started;
+
+		// Earliest departure from the location of the path
+		departure = hour + data.getDuration(position, location);
+		if (path.isGoingOrigin() && departure < path.getStartTakenTime())
+		{
+			departure = path.getStartTakenTime();
+		}
+		departure += path.getStopDuration();
+
+		for (int i = 0 ; i < deadlinesCount ; i++)
+		{
+			started = deadlinePaths[i];
+			if (started != path
+					&& departure + data.getDuration(location, started.getNextIndex()) > started.getWishedDepositTime()
+							+ slack)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Add to the candidate paths the paths started by the ant
+	 * and the paths going to one of the nearest locations of the current position.
+	 * The started paths alone don't count: if no person can be taken at the nearest locations,
+	 * nothing is kept so every path the ant can do, started ones included, is considered.
+	 * @return the number of candidate paths, 0 if no person can be taken at the nearest locations
+	 */
+	protected int addCandidateLocations()
+	{
+		int count = 0, started;
+		DynamicPath path;
+		DynamicPath[] paths;
 
-		for (DynamicPath path : globalPaths)
+		// The persons in the bus must always be able to be deposited, wherever they go
+		for (int i = 0, size = pendingPaths.size() ; i < size ; i++)
+		{
+			count = addCandidate(pendingPaths.get(i), count);
+		}
+		started = count;
+		for (int location : candidates.getNeighbours(position))
 		{
-			if (path.isNotSarted() || !path.isFinished() && chosenPaths.contains(path))
+			paths = pathsByLocation[location];
+			for (int i = 0 ; i < paths.length ; i++)
 			{
-				// If we go to deposit or if we still have place to take the
-				// person
-				if (path.isGoingDestination() || bus.canBeAdded(path.getPerson()))
+				path = paths[i];
+				if (path.isNotSarted() && path.getNextIndex() == location && isFeasible(path))
 				{
-					dest = path.getNext();
-					pheromones = data.getPheromones(start, dest);
-					visibility = data.getDuration(start, dest);
-
-					// we consider the traffic consequences
-					visibility *= data.getTrafficCoefficient(hour);
-
-					// If we arrive too early we increase artificially the
-					// duration
-					if (visibility + hour < path.getStartTakenTime())
-					{
-						visibility += path.getStartTakenTime() - (visibility + hour);
-					}
-
-					probas[i] = calculateProbability(pheromones, visibility);
-
-					if(probas[i] <= 0){
-						probas[i] = 1E-320;
-					}
-					count++;
-					sumProba += probas[i];
+					count = addCandidate(path, count);
 				}
 			}
-			i++;
 		}
+		// Otherwise the ant could only swap or deposit until a neighbour has a person to take
+		return count > started ? count : 0;
+	}
+
+	/**
+	 * Add to the candidate paths every path the ant can do
+	 * @return the number of candidate paths
+	 */
+	protected int addAllLocations()
+	{
+		int count = 0;
+		DynamicPath path;
+
+		for (int i = 0, size = globalPaths.size() ; i < size ; i++)
+		{
+			path = globalPaths.get(i);
+			if (isFeasible(path))
+			{
+				count = addCandidate(path, count);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Add a path at the end of the candidate paths and save the cumulated weight,
+	 * unless the path is discarded because it makes certain the delay of a started path
+	 * @param path the path to add
+	 * @param count the number of candidate paths before this one
+	 * @return the number of candidate paths with this one
+	 */
+	protected int addCandidate(DynamicPath path, int count)
+	{
+		if (pruning && isLate(path))
+			return count;
+		candidatePaths[count] = path;
+		cumulatedWeights[count] = getWeight(path);
+		if (count > 0)
+		{
+			cumulatedWeights[count] += cumulatedWeights[count - 1];
+		}
+		return count + 1;
+	}
+
+	/**
+	 * Choose with probability one of the candidate paths (roulette wheel selection)
+	 * @param count the number of candidate paths
+	 * @return the path chosen, or null if there is no candidate paths
+	 */
+	protected DynamicPath choosePath(int count)
+	{
+		int start = 0, end = count - 1, middle;
+		double rand;
 
 		if (count == 0)
 		{
 			return null;
 		}
-		rand = Math.random();
-		i = 0;
-		sumRand = probas[i] / sumProba;
-		try
+		// We search the first path whose cumulated weight is greater than the random value
+		rand = random.nextDouble() * cumulatedWeights[end];
+		while (start < end)
 		{
-			while (sumRand <= rand)
+			middle = (start + end) / 2;
+			if (cumulatedWeights[middle] > rand)
 			{
-				++i;
-				sumRand += probas[i] / sumProba;
+				end = middle;
 			}
-			return globalPaths.get(i);
-		}
-		catch (Exception e)
-		{
-			for (DynamicPath p : globalPaths)
+			else
 			{
-				if (!p.isFinished())
-					return p;
+				start = middle + 1;
 			}
-			return null;
 		}
+		return candidatePaths[start];
+	}
+
+	/**
+	 * Says if the ant can go to the next location of a path
+	 * @param path the path
+	 * @return true if the path is not started or is started by this ant, 
+	 * and if the person can be taken by the bus, false otherwise
+	 */
+	protected boolean isFeasible(DynamicPath path)
+	{
+		// If we go to deposit or if we still have place to take the person
+		return (path.isNotSarted() || !path.isFinished() && chosenPaths.contains(path))
+				&& (path.isGoingDestination() || bus.canBeAdded(path.getPerson()));
+	}
+
+	/**
+	 * Calculate the weight of the next location of a path, depending on pheromones and duration
+	 * @param path the path
+	 * @return the weight of the path, strictly positive
+	 */
+	protected double getWeight(DynamicPath path)
+	{
+		int dest = path.getNextIndex(), visibility;
+		double weight;
+
+		// we consider the traffic consequences
+		visibility = data.getTravelTime(position, dest, hour);
+
+		// If we arrive too early we increase artificially the
+		// duration
+		if (visibility + hour < path.getStartTakenTime())
+		{
+			visibility += path.getStartTakenTime() - (visibility + hour);
+		}
+
+		// The choice information is calculated with the duration, it is corrected
+		// when the traffic or the waiting time modify the visibility
+		weight = choiceInformation.getChoice(position, dest, visibility);
+		if (weight <= 0)
+		{
+			weight = 1E-320;
+		}
+		return weight;
 	}
 
 }
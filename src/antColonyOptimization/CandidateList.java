@@ -0,0 +1,58 @@
+package antColonyOptimization;
+
+import java.util.Arrays;
+
+import locationsData.DataMatrix;
+
+/**
+ *  Contains, for each location of the data matrix, the indexes of its nearest locations ordered by duration.
+ *  The ants only look at the paths going to these locations, which avoid to evaluate every path at each step.
+ */
+class CandidateList
+{
+	/** Nearest locations of each location: neighbours[location] contains the indexes of its nearest locations */
+	protected int[][] neighbours;
+
+	/**
+	 * Full constructor
+	 * @param matrix the matrix containing the durations between the locations
+	 * @param size the number of nearest locations kept for each location
+	 */
+	public CandidateList(DataMatrix matrix, int size)
+	{
+		int dimension = matrix.getDimension(), duration;
+		long[] keys = new long[dimension];
+
+		size = Math.min(size, dimension);
+		neighbours = new int[dimension][size];
+		for (int origin = 0 ; origin < dimension ; origin++)
+		{
+			// The duration is put in the high bits and the index in the low bits,
+			// so sorting the keys sort the locations by duration
+			for (int destination = 0 ; destination < dimension ; destination++)
+			{
+				duration = matrix.getDuration(origin, destination);
+				if (duration < 0)
+				{
+					duration = DataMatrix.NO_WAY;
+				}
+				keys[destination] = ((long) duration << 32) | destination;
+			}
+			Arrays.sort(keys);
+			for (int i = 0 ; i < size ; i++)
+			{
+				neighbours[origin][i] = (int) keys[i];
+			}
+		}
+	}
+
+	/**
+	 * Return the indexes of the nearest locations of the given location, the nearest first
+	 * @param location the index of the location
+	 * @return the indexes of the nearest locations
+	 */
+	public int[] getNeighbours(int location)
+	{
+		return neighbours[location];
+	}
+}
@@ -0,0 +1,184 @@
+package antColonyOptimization;
+
+import locationsData.DataMatrix;
+
+/**
+ *  Give, for each pair of locations of the data matrix, the product of the pheromones and of the visibility
+ *  powered by their coefficients, so the ants don't calculate powers at each step.
+ *  The products are stored with the pheromones of the matrix, which evaporates them lazily through a scale
+ *  applied to all the cells. The powered scale is applied when a product is read, so only the cells which
+ *  received pheromones are refreshed after each update of the pheromones.
+ */
+class ChoiceInformation
+{
+	/** Value of the powered scale under which all the products are refreshed, in order to avoid underflows */
+	protected static final double MIN_SCALE_POWER = 1E-100;
+
+	/** The matrix containing the pheromones */
+	protected DataMatrix matrix;
+
+	/** Number of lines and columns of the matrix */
+	protected int dimension;
+
+	/** Coefficient used to power the pheromones value */
+	protected int pheromoneCoef;
+
+	/** Coefficient used to power the visibility value */
+	protected int visibilityCoef;
+
+	/** Visibility powered by its coefficient, stored line after line */
+	protected double[] visibilities;
+
+	/** Products of the pheromones and of the visibility powered by their coefficients, divided by the powered
+	 * scale, stored line after line */
+	protected double[] products;
+
+	/** Pheromones scale of the matrix when all the products were refreshed */
+	protected double productsScale;
+
+	/** Evaporation since all the products were refreshed, powered by the pheromones coefficient */
+	protected double scalePower;
+
+	/** Minimum pheromones powered by their coefficient */
+	protected double minPower;
+
+	/**
+	 * Full constructor
+	 * @param matrix the matrix containing the durations and the pheromones
+	 * @param parameters the solver parameters giving the coefficients
+	 */
+	public ChoiceInformation(DataMatrix matrix, SolverParameters parameters)
+	{
+		this.matrix = matrix;
+		this.dimension = matrix.getDimension();
+		this.pheromoneCoef = parameters.getPheromoneCoef();
+		this.visibilityCoef = parameters.getVisibilityCoef();
+		this.visibilities = new double[dimension * dimension];
+		this.products = new double[dimension * dimension];
+
+		for (int origin = 0 ; origin < dimension ; origin++)
+		{
+			for (int destination = 0 ; destination < dimension ; destination++)
+			{
+				visibilities[origin * dimension + destination] = power(
+						1.0 / getVisibility(matrix.getDuration(origin, destination)), visibilityCoef);
+			}
+		}
+		refreshAll();
+	}
+
+	/**
+	 * Refresh the products of the cells whose pheromones were modified before the last evaporation of the matrix.
+	 * Must be called after each evaporation, while no ant is reading the choice information.
+	 */
+	public void update()
+	{
+		int count = matrix.getUpdatedCount();
+		double power = power(matrix.getPheromonesScale() / productsScale, pheromoneCoef);
+
+		if (count < 0 || power < MIN_SCALE_POWER)
+		{
+			refreshAll();
+			return;
+		}
+		for (int i = 0 ; i < count ; i++)
+		{
+			refresh(matrix.getUpdatedCell(i));
+		}
+		scalePower = power;
+		minPower = power(Math.max(matrix.getMinPheromones(), 0), pheromoneCoef);
+	}
+
+	/**
+	 * Refresh the products of all the cells, with the current pheromones scale of the matrix
+	 */
+	protected void refreshAll()
+	{
+		productsScale = matrix.getPheromonesScale();
+		for (int cell = 0 ; cell < products.length ; cell++)
+		{
+			refresh(cell);
+		}
+		scalePower = 1;
+		minPower = power(Math.max(matrix.getMinPheromones(), 0), pheromoneCoef);
+	}
+
+	/**
+	 * Refresh the product of a cell
+	 * @param cell the position of the cell, origin index * dimension + destination index
+	 */
+	protected void refresh(int cell)
+	{
+		products[cell] = power(matrix.getStoredPheromones(cell) * productsScale, pheromoneCoef) * visibilities[cell];
+	}
+
+	/**
+	 * Return the choice information between two locations of the matrix
+	 * @param origin index of the origin point
+	 * @param destination index of the destination point
+	 * @return the pheromones powered by their coefficient multiplied by the visibility powered by its coefficient
+	 */
+	public double getChoice(int origin, int destination)
+	{
+		int cell = origin * dimension + destination;
+		// The minimum pheromones are applied when the pheromones are read, as in the matrix
+		return Math.max(products[cell] * scalePower, minPower * visibilities[cell]);
+	}
+
+	/**
+	 * Return the choice information between two locations of the matrix when the travel time differs
+	 * from the duration, because of the traffic or of the waiting time
+	 * @param origin index of the origin point
+	 * @param destination index of the destination point
+	 * @param travelTime the travel time between the two points
+	 * @return the pheromones powered by their coefficient multiplied by the visibility of the travel time
+	 *  powered by its coefficient
+	 */
+	public double getChoice(int origin, int destination, int travelTime)
+	{
+		int duration = matrix.getDuration(origin, destination);
+		double choice = getChoice(origin, destination);
+
+		// The visibility of the duration is replaced by the one of the travel time
+		if (travelTime != duration)
+		{
+			choice *= power((double) getVisibility(duration) / getVisibility(travelTime), visibilityCoef);
+		}
+		return choice;
+	}
+
+	/**
+	 * Return the visibility corresponding to a duration. A null duration is considered
+	 * as a one second duration in order to keep the visibility finite.
+	 * @param duration the duration
+	 * @return the visibility, at least one
+	 */
+	public static int getVisibility(int duration)
+	{
+		return Math.max(duration, 1);
+	}
+
+	/**
+	 * Return the value of a number raised to the power of an integer.
+	 * The small exponents, which are the usual ones, are calculated without {@link Math#pow(double, double)}.
+	 * @param base the base
+	 * @param exponent the exponent
+	 * @return the base raised to the power of the exponent
+	 */
+	public static double power(double base, int exponent)
+	{
+		switch (exponent)
+		{
+			case 0:
+				return 1;
+			case 1:
+				return base;
+			case 2:
+				return base * base;
+			case 3:
+				return base * base * base;
+			default:
+				return Math.pow(base, exponent);
+		}
+	}
+}
@@ -0,0 +1,230 @@
+package antColonyOptimization;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import antColonyOptimization.MinMaxAntSystem.SwapConductorPath;
+
+import locationsData.Path;
+
+/**
+ *  Group of ants working on their own copy of the dynamic paths.
+ *  A worker builds complete partitions without sharing any state with the other workers,
+ *  so several workers can build the constructions of the same iteration at the same time.
+ *  The pheromones are only read during a construction.
+ *  The routes are built in reusable arrays, only the best partition of the worker is copied in a snapshot.
+ */
+class ConstructionWorker
+{
+	/** Data used by the ants */
+	protected SolverData data;
+
+	/** Set of all the paths the ants of this worker need to do */
+	protected List<DynamicPath> paths;
+
+	/** Array of the ants of this worker, one for each bus */
+	protected Ant[] ants;
+
+	/** Random generator used to determine how much locations an ant must done at each step */
+	protected Random random;
+
+	/** The position of the ant that is currently building a route */
+	protected int chosenAnt = 0;
+
+	/** Routes of the best construction built since the last reset, exchanged with the ants routes when improved */
+	protected RouteBuilder[] bestRoutes;
+
+	/** Total delay of the best construction */
+	protected int bestDelay;
+
+	/** Total user time and advance of the best construction */
+	protected int bestCost;
+
+	/** true if a construction was built since the last reset */
+	protected boolean hasBest = false;
+
+	/**
+	 * Full constructor
+	 * @param data data of the problem
+	 * @param parameters parameters used by the solver
+	 * @param seed seed of the random generator of this worker
+	 * @param choiceInformation the pheromones and visibility products used by the ants
+	 * @param candidates the candidate list used by the ants, or null to always evaluate every path
+	 */
+	public ConstructionWorker(SolverData data, SolverParameters parameters, long seed,
+			ChoiceInformation choiceInformation, CandidateList candidates)
+	{
+		this.data = data;
+		this.random = new Random(seed);
+
+		// Creation of the dynamic paths using the basic path in the solver data
+		// We set a time frame when this is needed
+		DynamicPath dynPath;
+		paths = new ArrayList<DynamicPath>(data.getPaths().size() + data.getAllBus().size());
+		for (Path p : data.getPaths())
+		{
+			dynPath = new DynamicPath(p);
+			if (!dynPath.hasOriginTimeConstraint())
+			{
+				// The time frame can't start before the beginning of the day
+				dynPath.setMinPickupTime(Math.max(1, dynPath.getWishedDepositTime()
+						- (data.getDuration(dynPath.getOrigin(), dynPath.getDestination()) * SolverData.TIME_FRAME_COEFFICIENT)));
+			}
+			dynPath.setIndexes(data.getDataMatrix());
+			dynPath.setId(paths.size());
+			paths.add(dynPath);
+		}
+
+		// Creation of the ants giving them a dynamic bus and a reference to the
+		// paths set
+		SwapConductorPath scp;
+		ants = new Ant[data.getAllBus().size()];
+		bestRoutes = new RouteBuilder[ants.length];
+		for (int i = 0 ; i < data.getAllBus().size() ; i++)
+		{
+			ants[i] = new Ant(data, new DynamicBus(data.getBus(i)), parameters, paths, choiceInformation);
+			ants[i].setRandom(new Random(random.nextLong()));
+
+			scp = new SwapConductorPath(data.getBus(i).getDriverSwap(), 14 * 3600);
+			scp.setIndexes(data.getDataMatrix());
+			scp.setId(paths.size());
+			ants[i].setSwapConductorPath(scp);
+			paths.add(scp);
+			bestRoutes[i] = new RouteBuilder(30);
+		}
+
+		if (candidates != null)
+		{
+			DynamicPath[][] pathsByLocation = groupPathsByLocation();
+			for (Ant a : ants)
+			{
+				a.setCandidateList(candidates, pathsByLocation);
+			}
+		}
+	}
+
+	/**
+	 * Group the paths of this worker by location
+	 * @return an array where the line of a location index contains the paths having this location as origin or destination
+	 */
+	protected DynamicPath[][] groupPathsByLocation()
+	{
+		int dimension = data.getDataMatrix().getDimension();
+		int[] counts = new int[dimension];
+		DynamicPath[][] pathsByLocation = new DynamicPath[dimension][];
+
+		for (DynamicPath p : paths)
+		{
+			counts[p.originIndex]++;
+			if (p.destinationIndex != p.originIndex)
+			{
+				counts[p.destinationIndex]++;
+			}
+		}
+		for (int i = 0 ; i < dimension ; i++)
+		{
+			pathsByLocation[i] = new DynamicPath[counts[i]];
+			counts[i] = 0;
+		}
+		for (DynamicPath p : paths)
+		{
+			pathsByLocation[p.originIndex][counts[p.originIndex]++] = p;
+			if (p.destinationIndex != p.originIndex)
+			{
+				pathsByLocation[p.destinationIndex][counts[p.destinationIndex]++] = p;
+			}
+		}
+		return pathsByLocation;
+	}
+
+	/**
+	 * Forget the best construction, so that the next constructions are compared between them only
+	 */
+	public void resetBest()
+	{
+		hasBest = false;
+	}
+
+	/**
+	 * Build a complete construction: every path is done by one of the ants.
+	 * If the construction is better than the best one, its routes are kept as the best ones.
+	 * The paths are reset once the construction is built, so the worker is ready for the next construction.
+	 */
+	public void buildConstruction()
+	{
+		int delay = 0, cost = 0;
+		RouteBuilder route;
+
+		// Build the first part of the route
+		for (Ant a : ants)
+		{
+			a.startRoute();
+		}
+		// While there are path left, we build the routes by giving a
+		// random number of location to add to each ant.
+		while (!allPathsDone())
+		{
+			ants[chosenAnt].buildSolution(random.nextInt(4) + 1);
+			chosenAnt = (chosenAnt + 1) % ants.length;
+		}
+		// Build the last part of the route
+		for (Ant a : ants)
+		{
+			a.finishRoute();
+			delay += a.getRoute().getTotalDelay();
+			cost += a.getRoute().getTotalCost();
+		}
+		resetPaths();
+
+		// The routes of a better construction are exchanged with the best ones, which will be overwritten
+		if (!hasBest || delay < bestDelay || delay == bestDelay && cost < bestCost)
+		{
+			for (int i = 0 ; i < ants.length ; i++)
+			{
+				route = bestRoutes[i];
+				bestRoutes[i] = ants[i].getRoute();
+				ants[i].setRoute(route);
+			}
+			bestDelay = delay;
+			bestCost = cost;
+			hasBest = true;
+		}
+	}
+
+	/**
+	 * Return the best construction built since the last reset, as a snapshot copied from the routes arrays
+	 * @return the best partition, null if no construction was built since the last reset
+	 */
+	public PartitionSnapshot getBestSnapshot()
+	{
+		if (!hasBest)
+			return null;
+		return new PartitionSnapshot(bestRoutes, paths, data.getDataMatrix());
+	}
+
+	/**
+	 * Says if all paths are done yet or not
+	 * @return true if all paths are done, false otherwise
+	 */
+	protected boolean allPathsDone()
+	{
+		for (DynamicPath p : paths)
+		{
+			if (!p.isFinished())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Reset the dynamic paths and reset all of them on their origin position.
+	 */
+	public void resetPaths()
+	{
+		for (DynamicPath p : paths)
+		{
+			p.reset();
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package antColonyOptimization;
 
+import locationsData.DataMatrix;
 import locationsData.Location;
 import locationsData.Path;
 
@@ -24,6 +25,15 @@ public class DynamicPath extends BusPath
 	/** Path state. This one indicate the next location to visit */
 	protected PathState state = PathState.ORIGIN;
 
+	/** Index of the origin location in the data matrix */
+	protected int originIndex;
+
+	/** Index of the destination location in the data matrix */
+	protected int destinationIndex;
+
+	/** Identifier of the path, its index in the paths of the construction worker */
+	protected int id;
+
 	/**
 	 * Full constructor
 	 * @param path the path 
@@ -66,6 +76,48 @@ public class DynamicPath extends BusPath
 			return null;
 	}
 
+	/**
+	 * Return the index in the data matrix of the next location to visit, or -1 if all of them were visited
+	 * @return The index of the next location to visit, or -1 if all of them were visited
+	 */
+	public int getNextIndex()
+	{
+		if (state == PathState.ORIGIN)
+			return originIndex;
+		else if (state == PathState.DESTINATION)
+			return destinationIndex;
+		else
+			return -1;
+	}
+
+	/**
+	 * Save the indexes of the origin and destination locations in the given matrix
+	 * @param matrix the matrix used by the solver
+	 */
+	public void setIndexes(DataMatrix matrix)
+	{
+		originIndex = matrix.getIndex(getOrigin());
+		destinationIndex = matrix.getIndex(getDestination());
+	}
+
+	/**
+	 * Return the identifier of the path
+	 * @return the identifier of the path
+	 */
+	public int getId()
+	{
+		return id;
+	}
+
+	/**
+	 * Update the identifier of the path
+	 * @param id the identifier of the path
+	 */
+	public void setId(int id)
+	{
+		this.id = id;
+	}
+
 	/**
 	 * Change the path state value, simulating a move on this path
 	 * and save the time of taken or deposit the person
@@ -0,0 +1,15 @@
+package antColonyOptimization;
+
+/**
+ *  Improvement stage applied by the solver to the best partition built by the ants at each iteration.
+ *  The improved partition is then compared to the best partition found so far and used to put the pheromones.
+ */
+public interface LocalSearch
+{
+	/**
+	 * Improve a partition. The partition given must not be modified.
+	 * @param partition the partition to improve
+	 * @return the improved partition, or the given one if no improvement was found
+	 */
+	Partition improve(Partition partition);
+}
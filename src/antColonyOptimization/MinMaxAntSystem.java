@@ -3,11 +3,19 @@ package antColonyOptimization;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import presentation.ProgressionEvent.ProgressionType;
 
 import application.BusScheduling;
+import application.Metrics;
 
+import locationsData.DataMatrix;
 import locationsData.Location;
 import locationsData.Path;
 import locationsData.Person;
@@ -19,27 +27,69 @@ import locationsData.Person;
  */
 public class MinMaxAntSystem
 {
+	/**
+	 * Reason why the search stopped
+	 */
+	public enum StopCriterion
+	{
+		/** All the iterations have been done */
+		ITERATIONS,
+		/** The time limit has been reached */
+		TIME_LIMIT,
+		/** The best partition has not been improved during the stall iterations */
+		STALL,
+		/** The delay of the best partition has reached the target delay */
+		TARGET_DELAY,
+		/** The search has been stopped by a call to stop() */
+		STOPPED
+	}
+
 	/** Data used by the ant system */
 	protected SolverData data;
 
 	/** Parameters used by the solver */
 	protected SolverParameters parameters;
 
-	/** Set of all the paths the ants need to do */
-	protected List<DynamicPath> paths;
+	/** Groups of ants building the constructions, each one working on its own paths */
+	protected ConstructionWorker[] workers;
 
-	/** Array of the ants used to solve the problem*/
-	protected Ant[] ants;
+	/** Pheromones and visibility products read by the ants */
+	protected ChoiceInformation choiceInformation;
 
-	/** The best solution found by the ants for the problem. */
-	protected Partition bestPartition;
+	/** Improvement stage applied to the best partition of each iteration, null if there is none */
+	protected LocalSearch localSearch;
+
+	/** Threads used to run the workers when the parallel mode is enabled */
+	protected ExecutorService executor;
+
+	/** The best solution found by the ants for the problem. 
+	 * This one is immutable, so it can be read by other threads during the search. */
+	protected volatile PartitionSnapshot bestPartition;
+
+	/** Listeners notified of each improvement of the best partition */
+	protected List<PartitionListener> partitionListeners = new CopyOnWriteArrayList<PartitionListener>();
+
+	/** Thread notifying the partition listeners, so that the search never waits for them */
+	protected ExecutorService notifier;
+
+	/** true if the search has been asked to stop */
+	protected volatile boolean stopped = false;
+
+	/** Colonies this one belongs to, null if it searches alone */
+	protected MultiColonySystem colonies;
+
+	/** Index of this colony in the colonies */
+	protected int colony;
+
+	/** Reason why the last search stopped, null if there was no search */
+	protected StopCriterion stopCriterion;
 
-	/** The last partition found by the ants */
-	protected Partition lastPartition;
-	
 	/** BusScheduling used to fire events */
 	protected BusScheduling busScheduling;
 
+	/** Metrics counting the iterations, constructions and improvements, null if they are not counted */
+	protected Metrics metrics;
+
 	/**
 	 * Constructor
 	 * @param data data of the problem
@@ -57,36 +107,39 @@ public class MinMaxAntSystem
 	 */
 	protected void configurate()
 	{
-		// Creation of the dynamic paths using the basic path in the solver data
-		// We set a time frame when this is needed
-		DynamicPath dynPath;
-		paths = new ArrayList<DynamicPath>(data.getPaths().size());
-		for (Path p : data.getPaths())
+		// Initialization of the pheromones matrix
+		data.getDataMatrix().setPheromonesBounds(parameters.getMinPheromones(), parameters.getMaxPheromones());
+		data.getDataMatrix().fillPheromones(parameters.getPheromoneAtStart());
+		choiceInformation = new ChoiceInformation(data.getDataMatrix(), parameters);
+
+		// Creation of the workers, each one has its own dynamic paths, ants and random generator.
+		// The seeds are drawn from the solver seed so that a run can be reproduced.
+		// The choice information and the candidate list are only read by the ants, so they are shared by all the workers.
+		Random seeds = new Random(parameters.getSeed());
+		CandidateList candidates = null;
+		if (parameters.getCandidatesNumber() > 0)
 		{
-			dynPath = new DynamicPath(p);
-			if (!dynPath.hasOriginTimeConstraint())
-			{
-				dynPath.setMinPickupTime(dynPath.getWishedDepositTime()
-						- (data.getDuration(dynPath.getOrigin(), dynPath.getDestination()) * SolverData.TIME_FRAME_COEFFICIENT));
-			}
-			paths.add(dynPath);
+			candidates = new CandidateList(data.getDataMatrix(), parameters.getCandidatesNumber());
 		}
-
-		// Creation of the ants giving them a dynamic bus and a reference to the
-		// paths set
-		SwapConductorPath scp;
-		ants = new Ant[data.getAllBus().size()];
-		for (int i = 0 ; i < data.getAllBus().size() ; i++)
+		workers = new ConstructionWorker[parameters.getThreadsNumber()];
+		for (int i = 0 ; i < workers.length ; i++)
 		{
-			ants[i] = new Ant(data, new DynamicBus(data.getBus(i)), parameters, paths);
+			workers[i] = new ConstructionWorker(data, parameters, seeds.nextLong(), choiceInformation, candidates);
+		}
 
-			scp = new SwapConductorPath(data.getBus(i).getDriverSwap(), 14 * 3600);
-			ants[i].setSwapConductorPath(scp);
-			paths.add(scp);
+		if (parameters.getLocalSearchPasses() > 0)
+		{
+			localSearch = new RouteLocalSearch(data, parameters.getLocalSearchPasses());
 		}
+	}
 
-		// Initialization of the pheromones matrix
-		data.getDataMatrix().fillPheromones(parameters.getPheromoneAtStart());
+	/**
+	 * Set the improvement stage applied to the best partition of each iteration
+	 * @param localSearch the local search, or null to keep the partitions built by the ants
+	 */
+	public void setLocalSearch(LocalSearch localSearch)
+	{
+		this.localSearch = localSearch;
 	}
 
 	/** 
@@ -94,167 +147,358 @@ public class MinMaxAntSystem
 	 * @return the best solution found by the ants for the problem
 	 */
 	public Partition getBestPartition()
+	{
+		PartitionSnapshot best = bestPartition;
+		return best == null ? null : best.toPartition();
+	}
+
+	/**
+	 * Add a listener notified of each improvement of the best partition
+	 * @param listener the listener to add
+	 */
+	public void addPartitionListener(PartitionListener listener)
+	{
+		partitionListeners.add(listener);
+	}
+
+	/**
+	 * Remove a partition listener from the listeners list
+	 * @param listener the listener to remove
+	 */
+	public void removePartitionListener(PartitionListener listener)
+	{
+		partitionListeners.remove(listener);
+	}
+
+	/**
+	 * Ask the search to stop. This method can be called from any thread and returns immediately.
+	 * The search stops once the current constructions are built, and the best partition found so far 
+	 * is returned by getBestPartition().
+	 */
+	public void stop()
+	{
+		stopped = true;
+	}
+
+	/**
+	 * Make this solver one of the colonies of a multi-colony system.
+	 * The best partitions will be exchanged with the other colonies during the search.
+	 * @param colonies the colonies
+	 * @param colony the index of this colony
+	 */
+	void setColony(MultiColonySystem colonies, int colony)
+	{
+		this.colonies = colonies;
+		this.colony = colony;
+	}
+
+	/**
+	 * Return the snapshot of the best solution found by the ants for the problem
+	 * @return the snapshot of the best solution, null if there is none
+	 */
+	public PartitionSnapshot getBestSnapshot()
 	{
 		return bestPartition;
 	}
 
 	/**
-	 * Search bus repartition and routes better as possible respecting the given constraints
+	 * Return the reason why the last search stopped
+	 * @return the stop criterion, null if there was no search
 	 */
-	public void solve()
+	public StopCriterion getStopCriterion()
+	{
+		return stopCriterion;
+	}
+
+	/**
+	 * Search bus repartition and routes better as possible respecting the given constraints.
+	 * The search stops after the iterations number, or before if the time limit, the stall iterations
+	 * or the target delay given in the parameters is reached.
+	 * @throws InterruptedException if the thread is interrupted while waiting for the workers
+	 */
+	public void solve() throws InterruptedException
 	{
 		// Progression variables
 		int cpt = 1, percent = 0;
-		// The number of total iterations and the number of constructions for
-		// each iterations
-		int iterations = parameters.getIterationsNumber(), subIterations = parameters
-				.getConstructionsNumber();
-		// The position of the ants that is currently building a route
-		int chosenAnt = 0;
-		// Generate random integer in order to determine how much locations an
-		// ant must done at each step.
-		Random rand = new Random();
-
-		for (int i = 0 ; i < iterations ; ++i)
+		// The best partition built during an iteration
+		PartitionSnapshot iterationBest;
+		// The number of total iterations
+		int iterations = parameters.getIterationsNumber();
+		// Stop criteria
+		int stall = 0;
+		long deadline = parameters.getTimeLimit() > 0 ? System.currentTimeMillis() + parameters.getTimeLimit()
+				* 1000L : Long.MAX_VALUE;
+
+		if (workers.length > 1)
+		{
+			executor = Executors.newFixedThreadPool(workers.length);
+		}
+		stopCriterion = StopCriterion.ITERATIONS;
+		if (!partitionListeners.isEmpty())
+		{
+			notifier = Executors.newSingleThreadExecutor();
+		}
+		try
 		{
-			for (int j = 0 ; j < subIterations ; ++j)
+			for (int i = 0 ; i < iterations ; ++i)
 			{
-				// Reinit of the partition
-				lastPartition = new Partition(ants.length);
-
-				// Build the first part of the route
-				for (Ant a : ants)
+				if (executor == null)
 				{
-					a.startRoute();
+					iterationBest = buildConstructions(0);
 				}
-				// While there are path left, we build the routes by giving a
-				// random number of
-				// location to add to each ant.
-				while (!allPathsDone())
+				else
 				{
-					ants[chosenAnt].buildSolution(rand.nextInt(4) + 1);
-					chosenAnt = (chosenAnt + 1) % ants.length;
+					iterationBest = buildConstructionsInParallel();
 				}
-				// Build the last part of the route
-				for (Ant a : ants)
+				if (stopped && iterationBest == null)
 				{
-					a.finishRoute();
-					lastPartition.addRoute(a.getRoute());
+					stopCriterion = StopCriterion.STOPPED;
+					break;
 				}
-				// Once a construction is built we compare it to the best and
-				// save it if t is better
-				if (bestPartition == null || lastPartition.getTotalDelay() < bestPartition.getTotalDelay())
+				// Improves the best partition of the iteration
+				if (localSearch != null && !stopped)
 				{
-					bestPartition = new Partition(lastPartition);
+					iterationBest = new PartitionSnapshot(localSearch.improve(iterationBest.toPartition()),
+							data.getDataMatrix());
 				}
-				else if (lastPartition.getTotalDelay() == bestPartition.getTotalDelay())
+				if (isBetter(iterationBest, bestPartition))
 				{
-					if (lastPartition.getTotalUserTime() + lastPartition.getTotalAdvance() < bestPartition
-							.getTotalUserTime() + bestPartition.getTotalAdvance())
+					bestPartition = iterationBest;
+					firePartitionImproved(i + 1);
+					stall = 0;
+					if (metrics != null)
 					{
-						bestPartition = new Partition(lastPartition);
+						metrics.increment(Metrics.IMPROVEMENTS);
 					}
 				}
-				resetPaths();
+				else
+				{
+					++stall;
+				}
+				// Exchanges the best partition with the other colonies
+				if (colonies != null && (i + 1) % parameters.getMigrationInterval() == 0)
+				{
+					migrate(i + 1);
+				}
+				// Updates the pheromone trails
+				updatePheromones();
+				// Evaporates the pheromones in the pheromones matrix
+				evaporatePheromones();
+				//Update the progression notification
+				percent = updateProgression(cpt, percent, iterations);
+				++cpt;
+				if (metrics != null)
+				{
+					metrics.increment(Metrics.ITERATIONS);
+					metrics.addValue(Metrics.BEST_DELAY + colony, bestPartition.getTotalDelay());
+				}
+
+				if (stopped)
+				{
+					stopCriterion = StopCriterion.STOPPED;
+					break;
+				}
+				if (parameters.getTargetDelay() >= 0 && bestPartition.getTotalDelay() <= parameters.getTargetDelay())
+				{
+					stopCriterion = StopCriterion.TARGET_DELAY;
+					break;
+				}
+				if (parameters.getStallIterations() > 0 && stall >= parameters.getStallIterations())
+				{
+					stopCriterion = StopCriterion.STALL;
+					break;
+				}
+				if (System.currentTimeMillis() >= deadline)
+				{
+					stopCriterion = StopCriterion.TIME_LIMIT;
+					break;
+				}
 			}
-			// Updates the pheromone trails
-			updatePheromones();
-			// Evaporates the pheromones in the pheromones matrix
-			evaporatePheromones();
-			//Update the progression notification
-			percent = updateProgression(cpt, percent, iterations);
-			++cpt;
 		}
-
-		// Then we calculate and set the distances values to the routes
-		for (Route route : bestPartition.getRoutes())
+		finally
 		{
-			for (int i = 0 ; i < route.getCountStops() - 1 ; ++i)
+			if (executor != null)
 			{
-				route.addPathDistance(data.getDataMatrix().getDistance(route.getLocation(i),
-						route.getLocation(i + 1)));
+				executor.shutdownNow();
+				executor = null;
 			}
+			// The events already published are still delivered
+			if (notifier != null)
+			{
+				notifier.shutdown();
+				notifier = null;
+			}
+			stopped = false;
 		}
 
 	}
 
 	/**
-	 * Set a given repartition as the best repartition
-	 * @param repartition the partition to save
+	 * Build, with the given worker, its share of the constructions of one iteration
+	 * and return the best partition found.
+	 * The constructions are dealt round-robin between the workers, so the worker i 
+	 * builds the constructions i, i + workers number, i + 2 * workers number...
+	 * Only the best construction of the worker is copied in a snapshot.
+	 * @param worker the index of the worker
+	 * @return the best partition built by the worker
 	 */
-	protected void saveRepartition(Partition repartition)
+	protected PartitionSnapshot buildConstructions(int worker)
 	{
-		bestPartition = new Partition(repartition);
+		int built = 0;
+
+		workers[worker].resetBest();
+		for (int j = worker ; j < parameters.getConstructionsNumber() && !stopped ; j += workers.length)
+		{
+			workers[worker].buildConstruction();
+			++built;
+		}
+		if (metrics != null)
+		{
+			metrics.add(Metrics.CONSTRUCTIONS, built);
+		}
+		return workers[worker].getBestSnapshot();
 	}
 
 	/**
-	 * Simulate the evaporation process of the pheromones put on paths
+	 * Build the constructions of one iteration using all the workers at the same time.
+	 * The best partitions of the workers are compared once all of them are done,
+	 * always in the workers order, so that the result only depends on the seed and on the threads number.
+	 * @return the best partition built during the iteration
+	 * @throws InterruptedException if the thread is interrupted while waiting for the workers
 	 */
-	protected void evaporatePheromones()
+	protected PartitionSnapshot buildConstructionsInParallel() throws InterruptedException
 	{
-		float coefMulti = 1 - parameters.getEvaporateRate();
-		double min = parameters.getMinPheromones(), max = parameters.getMaxPheromones(), pheromones;
+		List<Future<PartitionSnapshot>> results = new ArrayList<Future<PartitionSnapshot>>(workers.length);
+		PartitionSnapshot best, iterationBest = null;
 
-		for (Location origin : data.getLocations())
+		for (int w = 0 ; w < workers.length ; w++)
 		{
-			for (Location destination : data.getLocations())
+			final int worker = w;
+			results.add(executor.submit(new Callable<PartitionSnapshot>()
 			{
-				pheromones = coefMulti * data.getPheromones(origin, destination);
-				if (pheromones > max)
+				@Override
+				public PartitionSnapshot call()
 				{
-					pheromones = max;
+					return buildConstructions(worker);
 				}
-				else if (pheromones < min)
-				{
-					pheromones = min;
-				}
-				data.setPheromones(origin, destination, pheromones);
+			}));
+		}
+		// Iteration barrier
+		for (Future<PartitionSnapshot> result : results)
+		{
+			try
+			{
+				best = result.get();
+			}
+			catch (ExecutionException e)
+			{
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				throw new IllegalStateException("A construction worker failed.", e.getCause());
+			}
+			if (isBetter(best, iterationBest))
+			{
+				iterationBest = best;
 			}
 		}
+		return iterationBest;
 	}
 
 	/**
-	 * Add pheromones to the paths taken by ants, depending on the path weight
+	 * Send the best partition to the other colonies and replace it by the received one if this one is better.
+	 * The pheromones are then put on the received partition.
+	 * @param iteration the current iteration
 	 */
-	protected void updatePheromones()
+	protected void migrate(int iteration)
 	{
-		Location start, end;
-		double pheromoneValue = 0;
-
-		for (Route route : bestPartition.getRoutes())
+		PartitionSnapshot received = colonies.exchange(colony, bestPartition);
+		if (isBetter(received, bestPartition))
 		{
-			for (int i = 0 ; i < route.getCountStops() - 1 ; ++i)
+			bestPartition = received;
+			firePartitionImproved(iteration);
+			if (metrics != null)
 			{
-				start = route.getLocation(i);
-				end = route.getLocation(i + 1);
-				pheromoneValue = parameters.getPheromonesByAnt() / route.getTotalDuration();
-				data.addPheromones(start, end, pheromoneValue);
+				metrics.increment(Metrics.MIGRATIONS);
 			}
 		}
 	}
 
 	/**
-	 * Says if all paths are done yet or not
-	 * @return true if all paths are done, false otherwise
+	 * Publish the best partition to the partition listeners. The listeners are called by the notifier thread,
+	 * the events waiting in its queue, so the search continues without waiting for them.
+	 * @param iteration the iteration during which the partition was found
 	 */
-	protected boolean allPathsDone()
+	protected void firePartitionImproved(int iteration)
 	{
-		for (DynamicPath p : paths)
+		if (notifier == null)
+			return;
+		final PartitionEvent event = new PartitionEvent(this, bestPartition, iteration);
+		notifier.execute(new Runnable()
 		{
-			if (!p.isFinished())
-				return false;
-		}
-		return true;
+			@Override
+			public void run()
+			{
+				for (PartitionListener listener : partitionListeners)
+				{
+					listener.partitionImproved(event);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Says if a snapshot is better than an other one
+	 * @param partition the snapshot to compare, may be null
+	 * @param reference the reference snapshot, may be null
+	 * @return true if the snapshot is strictly better than the reference or if there is no reference
+	 */
+	protected static boolean isBetter(PartitionSnapshot partition, PartitionSnapshot reference)
+	{
+		if (partition == null)
+			return false;
+		if (reference == null || partition.getTotalDelay() < reference.getTotalDelay())
+			return true;
+		return partition.getTotalDelay() == reference.getTotalDelay()
+				&& partition.getTotalUserTime() + partition.getTotalAdvance() < reference.getTotalUserTime()
+						+ reference.getTotalAdvance();
+	}
+
+	/**
+	 * Set a given repartition as the best repartition
+	 * @param repartition the partition to save
+	 */
+	protected void saveRepartition(Partition repartition)
+	{
+		bestPartition = new PartitionSnapshot(repartition, data.getDataMatrix());
 	}
 
 	/**
-	 * Reset the dynamic paths and reset all of them on their origin position.
+	 * Simulate the evaporation process of the pheromones put on paths.
+	 * The matrix applies the evaporation to all the trails at once and only bounds 
+	 * the trails modified since the last evaporation, whose choice information is then refreshed.
 	 */
-	public void resetPaths()
+	protected void evaporatePheromones()
 	{
-		for (DynamicPath p : paths)
+		data.getDataMatrix().evaporatePheromones(1 - parameters.getEvaporateRate());
+		choiceInformation.update();
+	}
+
+	/**
+	 * Add pheromones to the paths taken by ants, depending on the path weight
+	 */
+	protected void updatePheromones()
+	{
+		DataMatrix matrix = data.getDataMatrix();
+		PartitionSnapshot best = bestPartition;
+		double pheromoneValue = 0;
+
+		for (int r = 0 ; r < best.getCountRoutes() ; ++r)
 		{
-			p.reset();
+			pheromoneValue = parameters.getPheromonesByAnt() / best.getTotalDuration(r);
+			for (int i = 0 ; i < best.getCountStops(r) - 1 ; ++i)
+			{
+				matrix.addPheromones(best.getLocationIndex(r, i), best.getLocationIndex(r, i + 1), pheromoneValue);
+			}
 		}
 	}
 
@@ -266,6 +510,16 @@ public class MinMaxAntSystem
 	{
 		this.busScheduling = busScheduling;
 	}
+
+	/**
+	 * Set the metrics counting the iterations, constructions and improvements
+	 * and saving the best delay after each iteration
+	 * @param metrics the metrics, null to stop counting
+	 */
+	public void setMetrics(Metrics metrics)
+	{
+		this.metrics = metrics;
+	}
 	
 	/**
 	 * Update the process progression
@@ -277,7 +531,7 @@ public class MinMaxAntSystem
 	private int updateProgression(int cpt, int percent, int n)
 	{
 		int tmpPercent = 49 * cpt / n;
-		if (tmpPercent != percent)
+		if (tmpPercent != percent && busScheduling != null)
 		{
 			busScheduling.fireEvent(this, ProgressionType.INCREMENT, tmpPercent - percent);
 			percent = tmpPercent;
@@ -0,0 +1,272 @@
+package antColonyOptimization;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import locationsData.DataMatrix;
+
+import application.BusScheduling;
+import application.Metrics;
+
+/**
+ *  Island model of the ant colony optimization: several Min Max Ant Systems, called colonies, search at the same
+ *  time on their own thread, each one with its own pheromones and parameters. Every migration interval,
+ *  each colony puts its best partition in its mailbox and takes the best partition of the previous colony,
+ *  the colonies forming a ring. The solution is the best partition found by all the colonies.
+ *  As the colonies don't wait for each other, the solution depends on the threads scheduling. With a single
+ *  colony, the default number of colonies, the solution only depends on the seed.
+ */
+public class MultiColonySystem
+{
+	/** Factors applied to the evaporate rate of the colonies, one after the other */
+	protected static final float[] EVAPORATION_FACTORS = {1, 0.5f, 2};
+
+	/** Offsets added to the visibility coefficient of the colonies, each one used by as many colonies
+	 * as there are evaporation factors */
+	protected static final int[] VISIBILITY_OFFSETS = {0, 1, -1};
+
+	/** The colonies */
+	protected MinMaxAntSystem[] colonies;
+
+	/** Last best partition sent by each colony, the colonies read and write them without lock */
+	protected AtomicReferenceArray<PartitionSnapshot> mailboxes;
+
+	/**
+	 * Constructor by parameters. The colonies number is given by the parameters,
+	 * each colony using a copy of the parameters with its own seed, evaporate rate and visibility coefficient.
+	 * @param data data of the problem
+	 * @param parameters parameters used by the colonies
+	 */
+	public MultiColonySystem(SolverData data, SolverParameters parameters)
+	{
+		this(data, createVariants(parameters));
+	}
+
+	/**
+	 * Full constructor
+	 * @param data data of the problem
+	 * @param parameters parameters used by each colony, one for each colony
+	 */
+	public MultiColonySystem(SolverData data, SolverParameters[] parameters)
+	{
+		if (parameters.length == 0)
+			throw new IllegalArgumentException("A multi-colony system needs at least one colony.");
+		colonies = new MinMaxAntSystem[parameters.length];
+		mailboxes = new AtomicReferenceArray<PartitionSnapshot>(parameters.length);
+		for (int i = 0 ; i < colonies.length ; i++)
+		{
+			// The first colony uses the data pheromones, the other ones a copy
+			if (i > 0)
+			{
+				colonies[i] = new MinMaxAntSystem(new SolverData(data, new DataMatrix(data.getDataMatrix())),
+						parameters[i]);
+			}
+			else
+			{
+				colonies[i] = new MinMaxAntSystem(data, parameters[i]);
+			}
+			colonies[i].setColony(this, i);
+		}
+	}
+
+	/**
+	 * Create the parameters of each colony: a copy of the given parameters with a seed drawn from the given one,
+	 * an evaporate rate and a visibility coefficient taken from the variations, so that the colonies don't search
+	 * the same way. The pheromones bounds and the initial pheromones follow the evaporate rate, as the automatic
+	 * ones. The first colony keeps the given parameters, so that a single colony gives the same solution
+	 * as a Min Max Ant System.
+	 * @param parameters the parameters to copy
+	 * @return the parameters of each colony
+	 */
+	protected static SolverParameters[] createVariants(SolverParameters parameters)
+	{
+		SolverParameters[] variants = new SolverParameters[parameters.getColoniesNumber()];
+		Random seeds = new Random(parameters.getSeed());
+		float rate;
+		double ratio;
+
+		for (int i = 0 ; i < variants.length ; i++)
+		{
+			variants[i] = new SolverParameters(parameters);
+			if (i > 0)
+			{
+				variants[i].setSeed(seeds.nextLong());
+				variants[i].setVisibilityCoef(Math.max(0, parameters.getVisibilityCoef()
+						+ VISIBILITY_OFFSETS[(i / EVAPORATION_FACTORS.length) % VISIBILITY_OFFSETS.length]));
+				rate = Math.min(1, parameters.getEvaporateRate() * EVAPORATION_FACTORS[i % EVAPORATION_FACTORS.length]);
+				if (rate > 0 && rate != parameters.getEvaporateRate())
+				{
+					ratio = parameters.getEvaporateRate() / rate;
+					variants[i].setEvaporateRate(rate);
+					// The bounds are set in the order keeping the minimum lesser than the maximum
+					if (ratio > 1)
+					{
+						variants[i].setMaxPheromones(parameters.getMaxPheromones() * ratio);
+						variants[i].setMinPheromones(parameters.getMinPheromones() * ratio);
+					}
+					else
+					{
+						variants[i].setMinPheromones(parameters.getMinPheromones() * ratio);
+						variants[i].setMaxPheromones(parameters.getMaxPheromones() * ratio);
+					}
+					variants[i].setPheremonesAtStart(parameters.getPheromoneAtStart() * ratio);
+				}
+			}
+		}
+		return variants;
+	}
+
+	/**
+	 * Search bus repartition and routes with all the colonies at the same time
+	 * @throws InterruptedException if the thread is interrupted while waiting for the colonies
+	 */
+	public void solve() throws InterruptedException
+	{
+		List<Future<Void>> results = new ArrayList<Future<Void>>(colonies.length);
+		ExecutorService executor;
+
+		if (colonies.length == 1)
+		{
+			colonies[0].solve();
+			return;
+		}
+
+		executor = Executors.newFixedThreadPool(colonies.length);
+		try
+		{
+			for (final MinMaxAntSystem colony : colonies)
+			{
+				results.add(executor.submit(new Callable<Void>()
+				{
+					@Override
+					public Void call() throws InterruptedException
+					{
+						colony.solve();
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> result : results)
+			{
+				try
+				{
+					result.get();
+				}
+				catch (ExecutionException e)
+				{
+					stop();
+					if (e.getCause() instanceof RuntimeException)
+						throw (RuntimeException) e.getCause();
+					throw new IllegalStateException("A colony failed.", e.getCause());
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			stop();
+			throw e;
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Put the best partition of a colony in its mailbox and return the best partition of the previous colony
+	 * @param colony the index of the colony
+	 * @param partition the best partition of the colony
+	 * @return the last best partition sent by the previous colony, null if it has not sent one yet
+	 */
+	protected PartitionSnapshot exchange(int colony, PartitionSnapshot partition)
+	{
+		mailboxes.set(colony, partition);
+		return mailboxes.get((colony + colonies.length - 1) % colonies.length);
+	}
+
+	/**
+	 * Ask all the colonies to stop. This method can be called from any thread and returns immediately.
+	 */
+	public void stop()
+	{
+		for (MinMaxAntSystem colony : colonies)
+		{
+			colony.stop();
+		}
+	}
+
+	/**
+	 * Return the colony which found the best partition
+	 * @return the best colony
+	 */
+	protected MinMaxAntSystem getBestColony()
+	{
+		MinMaxAntSystem best = colonies[0];
+		for (MinMaxAntSystem colony : colonies)
+		{
+			if (MinMaxAntSystem.isBetter(colony.getBestSnapshot(), best.getBestSnapshot()))
+			{
+				best = colony;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Return the best solution found by all the colonies
+	 * @return the best solution found by all the colonies, null if there is none
+	 */
+	public Partition getBestPartition()
+	{
+		return getBestColony().getBestPartition();
+	}
+
+	/**
+	 * Return the reason why the colony which found the best partition stopped
+	 * @return the stop criterion, null if there was no search
+	 */
+	public MinMaxAntSystem.StopCriterion getStopCriterion()
+	{
+		return getBestColony().getStopCriterion();
+	}
+
+	/**
+	 * Add a listener notified of each improvement of the best partition of any colony
+	 * @param listener the listener to add
+	 */
+	public void addPartitionListener(PartitionListener listener)
+	{
+		for (MinMaxAntSystem colony : colonies)
+		{
+			colony.addPartitionListener(listener);
+		}
+	}
+
+	/**
+	 * Update the busScheduling value. Only the first colony notifies the progression.
+	 * @param busScheduling The busScheduling value
+	 */
+	public void setBusScheduling(BusScheduling busScheduling)
+	{
+		colonies[0].setBusScheduling(busScheduling);
+	}
+
+	/**
+	 * Set the metrics shared by all the colonies, each colony saving its own best delay series
+	 * @param metrics the metrics, null to stop counting
+	 */
+	public void setMetrics(Metrics metrics)
+	{
+		for (MinMaxAntSystem colony : colonies)
+		{
+			colony.setMetrics(metrics);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package antColonyOptimization;
+
+import java.util.EventObject;
+
+/**
+ * Event sent when the solver finds a better partition
+ */
+public class PartitionEvent extends EventObject
+{
+	/** Default version serial ID */
+	private static final long serialVersionUID = 1L;
+
+	/** The new best partition */
+	private PartitionSnapshot partition;
+
+	/** Iteration during which the partition was found, starting from 1 */
+	private int iteration;
+
+	/** Total delay of the partition */
+	private int delay;
+
+	/** Total user time of the partition */
+	private int userTime;
+
+	/** Total advance of the partition */
+	private int advance;
+
+	/**
+	 * Full constructor
+	 * @param source the solver
+	 * @param partition the new best partition
+	 * @param iteration the iteration during which the partition was found
+	 */
+	public PartitionEvent(Object source, PartitionSnapshot partition, int iteration)
+	{
+		super(source);
+		this.partition = partition;
+		this.iteration = iteration;
+		this.delay = partition.getTotalDelay();
+		this.userTime = partition.getTotalUserTime();
+		this.advance = partition.getTotalAdvance();
+	}
+
+	/**
+	 * Return the new best partition, built from its snapshot at each call
+	 * @return the partition
+	 */
+	public Partition getPartition()
+	{
+		return partition.toPartition();
+	}
+
+	/**
+	 * Return the snapshot of the new best partition
+	 * @return the snapshot
+	 */
+	public PartitionSnapshot getSnapshot()
+	{
+		return partition;
+	}
+
+	/**
+	 * Return the iteration during which the partition was found
+	 * @return the iteration, starting from 1
+	 */
+	public int getIteration()
+	{
+		return iteration;
+	}
+
+	/**
+	 * Return the total delay of the partition
+	 * @return the delay in seconds
+	 */
+	public int getDelay()
+	{
+		return delay;
+	}
+
+	/**
+	 * Return the total user time of the partition
+	 * @return the user time in seconds
+	 */
+	public int getUserTime()
+	{
+		return userTime;
+	}
+
+	/**
+	 * Return the total advance of the partition
+	 * @return the advance in seconds
+	 */
+	public int getAdvance()
+	{
+		return advance;
+	}
+}
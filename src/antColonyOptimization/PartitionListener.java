@@ -0,0 +1,15 @@
+package antColonyOptimization;
+
+import java.util.EventListener;
+
+/**
+ * Listener notified each time the solver finds a better partition
+ */
+public interface PartitionListener extends EventListener
+{
+	/**
+	 * Called, outside of the solver threads, when the best partition has been improved
+	 * @param e the event containing the new best partition
+	 */
+	public abstract void partitionImproved(PartitionEvent e);
+}
@@ -0,0 +1,355 @@
+package antColonyOptimization;
+
+import java.util.Arrays;
+import java.util.List;
+
+import locationsData.DataMatrix;
+import locationsData.Location;
+import locationsData.Person;
+import antColonyOptimization.Stop.DriverSwapStop;
+import antColonyOptimization.TransportStop.DepositStop;
+import antColonyOptimization.TransportStop.PickupStop;
+
+/**
+ *  Immutable copy of a partition. The stops of each route are stored in arrays instead of Stop objects,
+ *  and the totals are calculated once. The snapshots of the constructions are copied from the arrays of
+ *  the ants routes, so no Stop object is created during the search. A partition, with its routes and stops,
+ *  is only built when it is asked for, for example to write the results.
+ */
+public class PartitionSnapshot
+{
+	/** Kind of the stops at the bus origin, at the start and at the end of the routes */
+	protected static final int ORIGIN = 0;
+
+	/** Kind of the stops where a person is taken */
+	protected static final int PICKUP = 1;
+
+	/** Kind of the stops where a person is deposited */
+	protected static final int DEPOSIT = 2;
+
+	/** Kind of the driver swap stops */
+	protected static final int SWAP = 3;
+
+	/** Index in the data matrix of the location of each stop of each route */
+	protected int[][] locationIndexes;
+
+	/** Location of each stop of each route */
+	protected Location[][] locations;
+
+	/** Person taken or deposited at each stop of each route, null for the other stops */
+	protected Person[][] persons;
+
+	/** Kind of each stop of each route */
+	protected int[][] kinds;
+
+	/** Arrival time at each stop of each route */
+	protected int[][] arrivals;
+
+	/** Minimum pickup time of the pickup stops, wished time of the deposit stops
+	 * and time difference of the driver swap stops, for each route */
+	protected int[][] times;
+
+	/** Total delay of each route */
+	protected int[] delays;
+
+	/** Total advance of each route */
+	protected int[] advances;
+
+	/** Total excessive advance of each route */
+	protected int[] excessiveAdvances;
+
+	/** Total user time of each route */
+	protected int[] userTimes;
+
+	/** Total distance of each route */
+	protected int[] distances;
+
+	/** Total delay of the partition */
+	protected int totalDelay;
+
+	/** Total user time of the partition */
+	protected int totalUserTime;
+
+	/** Total advance of the partition */
+	protected int totalAdvance;
+
+	/**
+	 * Constructor by routes built by the ants. The distances of the routes are calculated using the matrix.
+	 * @param routes the routes to copy
+	 * @param dynamicPaths the paths of the routes, at the index of their identifier
+	 * @param matrix the matrix containing the locations of the routes
+	 */
+	PartitionSnapshot(RouteBuilder[] routes, List<DynamicPath> dynamicPaths, DataMatrix matrix)
+	{
+		this(routes.length);
+		for (int r = 0 ; r < routes.length ; r++)
+		{
+			copyRoute(r, routes[r], dynamicPaths, matrix);
+			totalDelay += delays[r];
+			totalUserTime += userTimes[r];
+			totalAdvance += advances[r];
+		}
+	}
+
+	/**
+	 * Constructor by partition. The distances of the routes are calculated using the matrix.
+	 * @param partition the partition to copy
+	 * @param matrix the matrix containing the locations of the partition
+	 */
+	public PartitionSnapshot(Partition partition, DataMatrix matrix)
+	{
+		this(partition.getRoutes().size());
+		List<Route> routes = partition.getRoutes();
+
+		for (int r = 0 ; r < routes.size() ; r++)
+		{
+			copyRoute(r, routes.get(r), matrix);
+			totalDelay += delays[r];
+			totalUserTime += userTimes[r];
+			totalAdvance += advances[r];
+		}
+	}
+
+	/**
+	 * Constructor of an empty snapshot, whose routes are then copied
+	 * @param count the number of routes
+	 */
+	private PartitionSnapshot(int count)
+	{
+		locationIndexes = new int[count][];
+		locations = new Location[count][];
+		persons = new Person[count][];
+		kinds = new int[count][];
+		arrivals = new int[count][];
+		times = new int[count][];
+		delays = new int[count];
+		advances = new int[count];
+		excessiveAdvances = new int[count];
+		userTimes = new int[count];
+		distances = new int[count];
+	}
+
+	/**
+	 * Copy the stops and the totals of a route built by an ant
+	 * @param r the index of the route
+	 * @param route the route to copy
+	 * @param dynamicPaths the paths of the route, at the index of their identifier
+	 * @param matrix the matrix containing the locations of the route
+	 */
+	protected void copyRoute(int r, RouteBuilder route, List<DynamicPath> dynamicPaths, DataMatrix matrix)
+	{
+		int size = route.size;
+		DynamicPath path;
+
+		locationIndexes[r] = Arrays.copyOf(route.locations, size);
+		kinds[r] = Arrays.copyOf(route.kinds, size);
+		arrivals[r] = Arrays.copyOf(route.arrivals, size);
+		times[r] = Arrays.copyOf(route.times, size);
+		locations[r] = new Location[size];
+		persons[r] = new Person[size];
+
+		for (int i = 0 ; i < size ; i++)
+		{
+			path = route.paths[i] < 0 ? null : dynamicPaths.get(route.paths[i]);
+			switch (kinds[r][i])
+			{
+				case PICKUP:
+					locations[r][i] = path.getOrigin();
+					persons[r][i] = path.getPerson();
+					break;
+				case DEPOSIT:
+					locations[r][i] = path.getDestination();
+					persons[r][i] = path.getPerson();
+					break;
+				case SWAP:
+					locations[r][i] = path.getDestination();
+					break;
+				default:
+					locations[r][i] = matrix.getLocation(locationIndexes[r][i]);
+					break;
+			}
+			if (i > 0)
+			{
+				distances[r] += matrix.getDistance(locationIndexes[r][i - 1], locationIndexes[r][i]);
+			}
+		}
+		delays[r] = route.totalDelay;
+		advances[r] = route.totalAdvance;
+		excessiveAdvances[r] = route.totalExcessiveAdvance;
+		userTimes[r] = route.totalUserTime;
+	}
+
+	/**
+	 * Copy the stops and the totals of a route
+	 * @param r the index of the route
+	 * @param route the route to copy
+	 * @param matrix the matrix containing the locations of the route
+	 */
+	protected void copyRoute(int r, Route route, DataMatrix matrix)
+	{
+		int size = route.getCountStops();
+		Stop stop;
+
+		locationIndexes[r] = new int[size];
+		locations[r] = new Location[size];
+		persons[r] = new Person[size];
+		kinds[r] = new int[size];
+		arrivals[r] = new int[size];
+		times[r] = new int[size];
+
+		for (int i = 0 ; i < size ; i++)
+		{
+			stop = route.getStop(i);
+			locations[r][i] = stop.getLocation();
+			locationIndexes[r][i] = matrix.getIndex(stop.getLocation());
+			arrivals[r][i] = stop.getArrivalTime();
+			if (stop instanceof PickupStop)
+			{
+				kinds[r][i] = PICKUP;
+				times[r][i] = ((PickupStop) stop).getMinimumTime();
+				persons[r][i] = ((PickupStop) stop).getPerson();
+			}
+			else if (stop instanceof DepositStop)
+			{
+				kinds[r][i] = DEPOSIT;
+				times[r][i] = ((DepositStop) stop).getWishedTime();
+				persons[r][i] = ((DepositStop) stop).getPerson();
+			}
+			else if (stop instanceof DriverSwapStop)
+			{
+				kinds[r][i] = SWAP;
+				times[r][i] = ((DriverSwapStop) stop).getTimeDifference();
+			}
+			else
+			{
+				kinds[r][i] = ORIGIN;
+			}
+			if (i > 0)
+			{
+				distances[r] += matrix.getDistance(locationIndexes[r][i - 1], locationIndexes[r][i]);
+			}
+		}
+		delays[r] = route.getTotalDelay();
+		advances[r] = route.getTotalAdvance();
+		excessiveAdvances[r] = route.getTotalExceedAdvance();
+		userTimes[r] = route.getTotalUserTime();
+	}
+
+	/**
+	 * Return the number of routes
+	 * @return the number of routes
+	 */
+	public int getCountRoutes()
+	{
+		return kinds.length;
+	}
+
+	/**
+	 * Return the number of stops of a route
+	 * @param route the index of the route
+	 * @return the number of stops of the route
+	 */
+	public int getCountStops(int route)
+	{
+		return kinds[route].length;
+	}
+
+	/**
+	 * Return the index in the data matrix of the location of a stop
+	 * @param route the index of the route
+	 * @param index the index of the stop in the route
+	 * @return the index of the location
+	 */
+	public int getLocationIndex(int route, int index)
+	{
+		return locationIndexes[route][index];
+	}
+
+	/**
+	 * Return the total duration of a route
+	 * @param route the index of the route
+	 * @return the duration between the first and the last stops of the route
+	 */
+	public int getTotalDuration(int route)
+	{
+		return arrivals[route][arrivals[route].length - 1] - arrivals[route][0];
+	}
+
+	/**
+	 * Return the total delay which is the sum of the delay of each route
+	 * @return the total delay
+	 */
+	public int getTotalDelay()
+	{
+		return totalDelay;
+	}
+
+	/**
+	 * Return the total user time which is the sum of the user time of each route
+	 * @return the total user time
+	 */
+	public int getTotalUserTime()
+	{
+		return totalUserTime;
+	}
+
+	/**
+	 * Return the total advance which is the sum of the advance of each route
+	 * @return the total advance
+	 */
+	public int getTotalAdvance()
+	{
+		return totalAdvance;
+	}
+
+	/**
+	 * Build the partition corresponding to this snapshot, with its routes and stops.
+	 * A new partition is built at each call, so the caller can modify it.
+	 * @return the partition
+	 */
+	public Partition toPartition()
+	{
+		Partition partition = new Partition(kinds.length);
+
+		for (int r = 0 ; r < kinds.length ; r++)
+		{
+			partition.addRoute(buildRoute(r));
+		}
+		return partition;
+	}
+
+	/**
+	 * Build a route with its stops and its totals
+	 * @param r the index of the route
+	 * @return the route built
+	 */
+	protected Route buildRoute(int r)
+	{
+		Route route = new Route(kinds[r].length);
+
+		for (int i = 0 ; i < kinds[r].length ; i++)
+		{
+			switch (kinds[r][i])
+			{
+				case PICKUP:
+					route.addStop(new PickupStop(locations[r][i], persons[r][i], times[r][i], arrivals[r][i]));
+					break;
+				case DEPOSIT:
+					route.addStop(new DepositStop(locations[r][i], persons[r][i], arrivals[r][i], times[r][i]));
+					break;
+				case SWAP:
+					route.addStop(new DriverSwapStop(locations[r][i], arrivals[r][i], times[r][i]));
+					break;
+				default:
+					route.addStop(new Stop(locations[r][i], arrivals[r][i]));
+					break;
+			}
+		}
+		route.addDelay(delays[r]);
+		route.addAdvance(advances[r]);
+		route.addExcessiveAdvance(excessiveAdvances[r]);
+		route.addTotalUserTime(userTimes[r]);
+		route.addPathDistance(distances[r]);
+		return route;
+	}
+}
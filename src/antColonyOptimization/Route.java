@@ -238,8 +238,7 @@ public class Route
 	 */
 	protected void addOrigin(BusPath path)
 	{
-		orderedStops.add(new PickupStop(path.getOrigin(), path.getPerson(), path.getStartTakenTime(), path
-				.getPickupTime()));
+		addPickupStop(path.getOrigin(), path.getPerson(), path.getStartTakenTime(), path.getPickupTime());
 	}
 
 	/** 
@@ -248,12 +247,8 @@ public class Route
 	 */
 	public void addDestination(BusPath path)
 	{
-		orderedStops.add(new DepositStop(path.getDestination(), path.getPerson(), path.getDepositTime(), path
-				.getWishedDepositTime()));
-		addDelay(path.getDelay());
-		addAdvance(path.getAdvance());
-		addTotalUserTime(path.getDuration());
-		addExcessiveAdvance(path.getExcessiveAdvance());
+		addDepositStop(path.getDestination(), path.getPerson(), path.getDepositTime(), path.getWishedDepositTime(),
+				path.getPickupTime());
 	}
 
 	/**
@@ -262,11 +257,63 @@ public class Route
 	 */
 	protected void addDriverSwap(BusPath path)
 	{
-		orderedStops.add(new DriverSwapStop(path.getDestination(), path.getDepositTime(), path.getDelay()));
-		addDelay(Math.max(path.getDelay(), 0));
-		addAdvance(path.getAdvance());
-		addTotalUserTime(path.getDuration());
-		addExcessiveAdvance(path.getExcessiveAdvance());
+		addDriverSwapStop(path.getDestination(), path.getDepositTime(), path.getWishedDepositTime());
+	}
+
+	/**
+	 * Add a stop at the end of the route without updating the totals of the route
+	 * @param stop the stop to add
+	 */
+	protected void addStop(Stop stop)
+	{
+		orderedStops.add(stop);
+	}
+
+	/**
+	 * Add a stop where a person is taken
+	 * @param location the location where the person is taken
+	 * @param person the person taken
+	 * @param minimumTime the minimum time from where the person can be taken
+	 * @param pickupTime the time when the bus take the person
+	 */
+	protected void addPickupStop(Location location, Person person, int minimumTime, int pickupTime)
+	{
+		orderedStops.add(new PickupStop(location, person, minimumTime, pickupTime));
+	}
+
+	/**
+	 * Add a stop where a person is deposited and update the totals of the route
+	 * @param location the location where the person is deposited
+	 * @param person the person deposited
+	 * @param depositTime the time when the bus deposit the person
+	 * @param wishedTime the time when the person wants to be deposited
+	 * @param pickupTime the time when the bus took the person
+	 */
+	protected void addDepositStop(Location location, Person person, int depositTime, int wishedTime, int pickupTime)
+	{
+		int advance = Math.max(wishedTime - depositTime, 0);
+
+		orderedStops.add(new DepositStop(location, person, depositTime, wishedTime));
+		addDelay(Math.max(depositTime - wishedTime, 0));
+		addAdvance(advance);
+		addTotalUserTime(depositTime - pickupTime);
+		addExcessiveAdvance(Math.max(advance - BusPath.MAX_NORMAL_ADVANCE, 0));
+	}
+
+	/**
+	 * Add a driver swap stop and update the totals of the route
+	 * @param location the location where the drivers swap
+	 * @param swapTime the time when the drivers really swap
+	 * @param wishedTime the time when the drivers should swap
+	 */
+	protected void addDriverSwapStop(Location location, int swapTime, int wishedTime)
+	{
+		int advance = Math.max(wishedTime - swapTime, 0);
+
+		orderedStops.add(new DriverSwapStop(location, swapTime, swapTime - wishedTime));
+		addDelay(Math.max(swapTime - wishedTime, 0));
+		addAdvance(advance);
+		addExcessiveAdvance(Math.max(advance - BusPath.MAX_NORMAL_ADVANCE, 0));
 	}
 
 	/**
@@ -0,0 +1,193 @@
+package antColonyOptimization;
+
+import java.util.Arrays;
+import java.util.List;
+
+import locationsData.DataMatrix;
+import antColonyOptimization.MinMaxAntSystem.SwapConductorPath;
+import antColonyOptimization.Stop.DriverSwapStop;
+import antColonyOptimization.TransportStop.DepositStop;
+import antColonyOptimization.TransportStop.PickupStop;
+
+/**
+ *  Route built by an ant, stored in arrays of primitives instead of Stop objects.
+ *  The arrays only grow and are reused by each construction after a reset, so building a route
+ *  doesn't allocate anything. The best routes are copied in a PartitionSnapshot without creating Stop objects.
+ */
+class RouteBuilder
+{
+	/** Kind of the stops at the bus origin, at the start and at the end of the route */
+	protected static final int ORIGIN = PartitionSnapshot.ORIGIN;
+
+	/** Kind of the stops where a person is taken */
+	protected static final int PICKUP = PartitionSnapshot.PICKUP;
+
+	/** Kind of the stops where a person is deposited */
+	protected static final int DEPOSIT = PartitionSnapshot.DEPOSIT;
+
+	/** Kind of the driver swap stops */
+	protected static final int SWAP = PartitionSnapshot.SWAP;
+
+	/** Number of stops of the route */
+	protected int size = 0;
+
+	/** Kind of each stop */
+	protected int[] kinds;
+
+	/** Index in the data matrix of the location of each stop */
+	protected int[] locations;
+
+	/** Identifier of the path of each stop, -1 for the origin stops */
+	protected int[] paths;
+
+	/** Arrival time at each stop */
+	protected int[] arrivals;
+
+	/** Minimum pickup time of the pickup stops, wished time of the deposit stops
+	 * and time difference of the driver swap stops */
+	protected int[] times;
+
+	/** Total delay of the route */
+	protected int totalDelay = 0;
+
+	/** Total advance of the route */
+	protected int totalAdvance = 0;
+
+	/** Total excessive advance of the route */
+	protected int totalExcessiveAdvance = 0;
+
+	/** Total time spent in the bus by all the users */
+	protected int totalUserTime = 0;
+
+	/**
+	 * Full constructor
+	 * @param capacity the number of stops expected.
+	 *  This size doesn't limit the capacity of this class, but a good value avoids growing the arrays.
+	 */
+	public RouteBuilder(int capacity)
+	{
+		capacity = Math.max(capacity, 2);
+		kinds = new int[capacity];
+		locations = new int[capacity];
+		paths = new int[capacity];
+		arrivals = new int[capacity];
+		times = new int[capacity];
+	}
+
+	/**
+	 * Remove all the stops and the totals, the arrays are kept for the next route
+	 */
+	public void reset()
+	{
+		size = 0;
+		totalDelay = 0;
+		totalAdvance = 0;
+		totalExcessiveAdvance = 0;
+		totalUserTime = 0;
+	}
+
+	/**
+	 * Add a stop at the bus origin
+	 * @param location the index of the location in the data matrix
+	 * @param hour the hour where the bus arrives at the location
+	 */
+	public void addLocation(int location, int hour)
+	{
+		add(ORIGIN, location, -1, hour, 0);
+	}
+
+	/**
+	 * Add the next location of a path, move the path using the given hour and update the totals
+	 * @param path the path used to add a stop
+	 * @param hour the hour where the bus is at the stop
+	 */
+	public void addStop(DynamicPath path, int hour)
+	{
+		int advance;
+
+		path.move(hour);
+		if (path instanceof SwapConductorPath)
+		{
+			advance = Math.max(path.getWishedDepositTime() - hour, 0);
+			add(SWAP, path.destinationIndex, path.getId(), hour, hour - path.getWishedDepositTime());
+			totalDelay += Math.max(hour - path.getWishedDepositTime(), 0);
+			totalAdvance += advance;
+			totalExcessiveAdvance += Math.max(advance - BusPath.MAX_NORMAL_ADVANCE, 0);
+		}
+		else if (path.isGoingDestination())
+		{
+			add(PICKUP, path.originIndex, path.getId(), hour, path.getStartTakenTime());
+		}
+		else if (path.isFinished())
+		{
+			advance = Math.max(path.getWishedDepositTime() - hour, 0);
+			add(DEPOSIT, path.destinationIndex, path.getId(), hour, path.getWishedDepositTime());
+			totalDelay += Math.max(hour - path.getWishedDepositTime(), 0);
+			totalAdvance += advance;
+			totalUserTime += hour - path.getPickupTime();
+			totalExcessiveAdvance += Math.max(advance - BusPath.MAX_NORMAL_ADVANCE, 0);
+		}
+	}
+
+	/**
+	 * Add a stop at the end of the route, growing the arrays if needed
+	 * @param kind the kind of the stop
+	 * @param location the index of the location in the data matrix
+	 * @param path the identifier of the path
+	 * @param arrival the arrival time
+	 * @param time the time depending on the kind of the stop
+	 */
+	protected void add(int kind, int location, int path, int arrival, int time)
+	{
+		if (size == kinds.length)
+		{
+			kinds = Arrays.copyOf(kinds, size * 2);
+			locations = Arrays.copyOf(locations, size * 2);
+			paths = Arrays.copyOf(paths, size * 2);
+			arrivals = Arrays.copyOf(arrivals, size * 2);
+			times = Arrays.copyOf(times, size * 2);
+		}
+		kinds[size] = kind;
+		locations[size] = location;
+		paths[size] = path;
+		arrivals[size] = arrival;
+		times[size] = time;
+		size++;
+	}
+
+	/**
+	 * Set the bus start time
+	 * @param busStartTime the bus start time
+	 */
+	public void setBusStartTime(int busStartTime)
+	{
+		arrivals[0] = busStartTime;
+	}
+
+	/**
+	 * Return the number of stops of the route
+	 * @return the number of stops
+	 */
+	public int getCountStops()
+	{
+		return size;
+	}
+
+	/**
+	 * Return the total delay of the route
+	 * @return the total delay
+	 */
+	public int getTotalDelay()
+	{
+		return totalDelay;
+	}
+
+	/**
+	 * Return the total user time and advance of the route, compared when the delays are equal
+	 * @return the sum of the total user time and of the total advance
+	 */
+	public int getTotalCost()
+	{
+		return totalUserTime + totalAdvance;
+	}
+}
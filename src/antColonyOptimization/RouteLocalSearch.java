@@ -0,0 +1,795 @@
+package antColonyOptimization;
+
+import java.util.List;
+
+import locationsData.Bus;
+import locationsData.Location;
+import locationsData.Person;
+import antColonyOptimization.TransportStop.DepositStop;
+import antColonyOptimization.TransportStop.PickupStop;
+
+/**
+ *  Local search moving the stops of the routes of a partition. The following moves are tried
+ *  until none of them improves the partition or until the passes number is reached:
+ *   - relocate: move a stop to another position of its route
+ *   - 2-opt: reverse a part of a route
+ *   - transfer: move the pickup and the deposit of a person to another route
+ *   - exchange: swap the pickup and the deposit of two persons of two different routes
+ *  A move is kept if it respects the pickup before deposit order and the bus capacity,
+ *  and if it decreases the delay, or the user time and the advance without increasing the delay.
+ *  The routes are scheduled the same way the ants do. Only the routes modified by a move are
+ *  scheduled again, the other ones keep their delay and advance totals.
+ */
+public class RouteLocalSearch implements LocalSearch
+{
+	/** Kind of the stops where a person is taken */
+	protected static final int PICKUP = 0;
+
+	/** Kind of the stops where a person is deposited */
+	protected static final int DEPOSIT = 1;
+
+	/** Kind of the driver swap stops */
+	protected static final int SWAP = 2;
+
+	/** Data of the problem */
+	protected SolverData data;
+
+	/** Maximum number of times all the moves are tried */
+	protected int passes;
+
+	/** Number of stops of the partition being improved, without the bus origins */
+	protected int stopsCount;
+
+	/** Kind of each stop: PICKUP, DEPOSIT or SWAP */
+	protected int[] kinds;
+
+	/** Index in the data matrix of the location of each stop */
+	protected int[] locations;
+
+	/** Location of each stop */
+	protected Location[] stopLocations;
+
+	/** Person taken or deposited at each stop */
+	protected Person[] persons;
+
+	/** Minimum pickup time of the pickup stops, wished deposit time of the deposit stops */
+	protected int[] times;
+
+	/** Deposit stop of each pickup stop and pickup stop of each deposit stop, -1 for the driver swap stops */
+	protected int[] partners;
+
+	/** Time the bus stays at each stop */
+	protected int[] downtimes;
+
+	/** Says for each stop if the person has a wheelchair */
+	protected boolean[] wheelchaireds;
+
+	/** Position of each stop in its route */
+	protected int[] positions;
+
+	/** Time when the person of each pickup stop is taken, filled by the scheduling */
+	protected int[] pickupTimes;
+
+	/** Ordered stops of each route, without the bus origins */
+	protected int[][] sequences;
+
+	/** Number of stops of each route */
+	protected int[] lengths;
+
+	/** Total delay of each route */
+	protected int[] delays;
+
+	/** Total user time and advance of each route */
+	protected int[] costs;
+
+	/** Says for each route if it was modified by a move */
+	protected boolean[] modifiedRoutes;
+
+	/** Index in the data matrix of the origin of each bus */
+	protected int[] origins;
+
+	/** Minimum start time of each bus */
+	protected int[] startTimes;
+
+	/** Seats for persons in wheelchair of each bus */
+	protected int[] wheelchairSeats;
+
+	/** Seats for persons without wheelchair of each bus */
+	protected int[] basicSeats;
+
+	/** Stops of the route being evaluated */
+	protected int[] candidate;
+
+	/** Stops of the second route being evaluated by an exchange */
+	protected int[] otherCandidate;
+
+	/** Arrival time at each position of the last scheduled route */
+	protected int[] arrivals;
+
+	/** Route whose current stops were scheduled last, -1 if there is none.
+	 * The following arrays contain its state before each position, so a route differing from it only after
+	 * a given position can be scheduled from this position. */
+	protected int preparedRoute = -1;
+
+	/** Time when the bus leaves the previous stop, before each position of the prepared route */
+	protected int[] baseHours;
+
+	/** Number of persons without wheelchair in the bus, before each position of the prepared route */
+	protected int[] baseBasics;
+
+	/** Number of persons in wheelchair in the bus, before each position of the prepared route */
+	protected int[] baseWheelchairs;
+
+	/** Delay before each position of the prepared route */
+	protected int[] baseDelays;
+
+	/** User time and advance before each position of the prepared route */
+	protected int[] baseCosts;
+
+	/** Arrival time at each position of the prepared route */
+	protected int[] baseArrivals;
+
+	/** Start time of the prepared route */
+	protected int baseStart;
+
+	/** Driver swap time of the prepared route */
+	protected int baseSwap;
+
+	/** Delay of the last scheduled route */
+	protected int scheduledDelay;
+
+	/** User time and advance of the last scheduled route */
+	protected int scheduledCost;
+
+	/** Position where the scheduling of the last route stopped because of the bounds or of the bus capacity */
+	protected int stoppedPosition;
+
+	/** Start time of the last scheduled route */
+	protected int scheduledStart;
+
+	/** Driver swap time of the last scheduled route */
+	protected int scheduledSwap;
+
+	/** Time when the last scheduled route comes back to the bus origin */
+	protected int scheduledEnd;
+
+	/**
+	 * Full constructor
+	 * @param data data of the problem
+	 * @param passes maximum number of times all the moves are tried on a partition
+	 */
+	public RouteLocalSearch(SolverData data, int passes)
+	{
+		this.data = data;
+		this.passes = passes;
+	}
+
+	/**
+	 * Improve a partition by moving its stops
+	 * @param partition the partition to improve
+	 * @return a new partition if a move improved the given one, the given partition otherwise
+	 * @see antColonyOptimization.LocalSearch#improve(antColonyOptimization.Partition)
+	 */
+	@Override
+	public Partition improve(Partition partition)
+	{
+		List<Route> routes = partition.getRoutes();
+		Partition improved;
+		boolean improvement = true, modified = false;
+
+		load(routes);
+		for (int pass = 0 ; pass < passes && improvement ; pass++)
+		{
+			improvement = relocateStops();
+			improvement |= reverseStops();
+			improvement |= transferPaths();
+			improvement |= exchangePaths();
+			modified |= improvement;
+		}
+		if (!modified)
+			return partition;
+
+		// The routes which were not modified are shared with the given partition
+		improved = new Partition(routes.size());
+		for (int r = 0 ; r < routes.size() ; r++)
+		{
+			improved.addRoute(modifiedRoutes[r] ? buildRoute(r) : routes.get(r));
+		}
+		return improved;
+	}
+
+	/**
+	 * Read the stops of the routes and schedule the routes
+	 * @param routes the routes of the partition to improve, one for each bus
+	 */
+	protected void load(List<Route> routes)
+	{
+		Route route;
+		Stop stop;
+		Bus bus;
+		int v;
+
+		stopsCount = 0;
+		for (Route r : routes)
+		{
+			stopsCount += r.getCountStops() - 2;
+		}
+		allocate(routes.size());
+
+		v = 0;
+		for (int r = 0 ; r < routes.size() ; r++)
+		{
+			route = routes.get(r);
+			bus = data.getBus(r);
+			origins[r] = data.getIndex(bus.getOrigin());
+			startTimes[r] = bus.getMinBusStartTime();
+			wheelchairSeats[r] = bus.getWheelChairsSeats();
+			basicSeats[r] = bus.getNonWheelChairsSeats();
+			lengths[r] = 0;
+			modifiedRoutes[r] = false;
+
+			// The first and the last stops are the bus origin
+			for (int i = 1 ; i < route.getCountStops() - 1 ; i++, v++)
+			{
+				stop = route.getStop(i);
+				stopLocations[v] = stop.getLocation();
+				locations[v] = data.getIndex(stop.getLocation());
+				partners[v] = -1;
+				if (stop instanceof PickupStop)
+				{
+					kinds[v] = PICKUP;
+					times[v] = ((PickupStop) stop).getMinimumTime();
+				}
+				else if (stop instanceof DepositStop)
+				{
+					kinds[v] = DEPOSIT;
+					times[v] = ((DepositStop) stop).getWishedTime();
+				}
+				else
+				{
+					kinds[v] = SWAP;
+				}
+				if (stop instanceof TransportStop)
+				{
+					persons[v] = ((TransportStop) stop).getPerson();
+					wheelchaireds[v] = persons[v].isWheelchaired();
+					downtimes[v] = ((TransportStop) stop).getDowntime();
+				}
+				else
+				{
+					persons[v] = null;
+					wheelchaireds[v] = false;
+					downtimes[v] = SolverData.getDriverSwapTime();
+				}
+				if (kinds[v] == DEPOSIT)
+				{
+					linkPickup(r, v);
+				}
+				positions[v] = lengths[r];
+				sequences[r][lengths[r]++] = v;
+			}
+			schedule(r, sequences[r], lengths[r], 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+			delays[r] = scheduledDelay;
+			costs[r] = scheduledCost;
+		}
+	}
+
+	/**
+	 * Allocate the arrays, or keep the current ones if they are big enough
+	 * @param routesCount the number of routes
+	 */
+	protected void allocate(int routesCount)
+	{
+		if (kinds == null || kinds.length < stopsCount)
+		{
+			kinds = new int[stopsCount];
+			locations = new int[stopsCount];
+			stopLocations = new Location[stopsCount];
+			persons = new Person[stopsCount];
+			times = new int[stopsCount];
+			partners = new int[stopsCount];
+			downtimes = new int[stopsCount];
+			wheelchaireds = new boolean[stopsCount];
+			positions = new int[stopsCount];
+			pickupTimes = new int[stopsCount];
+			candidate = new int[stopsCount];
+			otherCandidate = new int[stopsCount];
+			arrivals = new int[stopsCount];
+			baseHours = new int[stopsCount + 1];
+			baseBasics = new int[stopsCount + 1];
+			baseWheelchairs = new int[stopsCount + 1];
+			baseDelays = new int[stopsCount + 1];
+			baseCosts = new int[stopsCount + 1];
+			baseArrivals = new int[stopsCount];
+			sequences = null;
+		}
+		if (sequences == null || sequences.length != routesCount)
+		{
+			// A route can receive all the stops
+			sequences = new int[routesCount][kinds.length];
+			lengths = new int[routesCount];
+			delays = new int[routesCount];
+			costs = new int[routesCount];
+			modifiedRoutes = new boolean[routesCount];
+			origins = new int[routesCount];
+			startTimes = new int[routesCount];
+			wheelchairSeats = new int[routesCount];
+			basicSeats = new int[routesCount];
+		}
+	}
+
+	/**
+	 * Link a deposit stop to the first pickup stop of the same person, in the same route,
+	 * which is not linked yet
+	 * @param route the route of the stops
+	 * @param deposit the deposit stop
+	 */
+	protected void linkPickup(int route, int deposit)
+	{
+		int v;
+		for (int i = 0 ; i < lengths[route] ; i++)
+		{
+			v = sequences[route][i];
+			if (kinds[v] == PICKUP && partners[v] == -1 && persons[v] == persons[deposit])
+			{
+				partners[v] = deposit;
+				partners[deposit] = v;
+				return;
+			}
+		}
+		throw new IllegalStateException("A person is deposited without being taken.");
+	}
+
+	/**
+	 * Try to move each stop to another position of its route
+	 * @return true if the partition was improved
+	 */
+	protected boolean relocateStops()
+	{
+		boolean improvement = false;
+		int[] sequence;
+		int length, v, first, last;
+
+		for (int r = 0 ; r < sequences.length ; r++)
+		{
+			sequence = sequences[r];
+			length = lengths[r];
+			prepare(r);
+			for (int i = 0 ; i < length ; i++)
+			{
+				v = sequence[i];
+				// Positions in the route without the stop which respect the order of the person stops
+				first = kinds[v] == DEPOSIT ? positions[partners[v]] + 1 : 0;
+				last = kinds[v] == PICKUP ? positions[partners[v]] - 1 : length - 1;
+				for (int j = first ; j <= last ; j++)
+				{
+					if (j == i)
+						continue;
+					removeStop(sequence, length, i, candidate);
+					insertStop(candidate, length - 1, j, v);
+					if (schedule(r, candidate, length, Math.min(i, j), delays[r], costs[r]))
+					{
+						updateRoute(r, candidate, length);
+						improvement = true;
+						break;
+					}
+					// The next positions give the same stops until the one which stopped the scheduling
+					if (j > i && stoppedPosition < j)
+						break;
+				}
+			}
+		}
+		return improvement;
+	}
+
+	/**
+	 * Try to reverse the parts of the routes which don't contain the pickup and the deposit of a same person
+	 * @return true if the partition was improved
+	 */
+	protected boolean reverseStops()
+	{
+		boolean improvement = false;
+		int[] sequence;
+		int length, v;
+
+		for (int r = 0 ; r < sequences.length ; r++)
+		{
+			sequence = sequences[r];
+			length = lengths[r];
+			prepare(r);
+			for (int i = 0 ; i < length - 1 ; i++)
+			{
+				for (int j = i + 1 ; j < length ; j++)
+				{
+					// Once a part contains the two stops of a person, the longer parts contain them too
+					v = sequence[j];
+					if (kinds[v] == DEPOSIT && positions[partners[v]] >= i)
+						break;
+					System.arraycopy(sequence, 0, candidate, 0, length);
+					for (int k = 0 ; k <= j - i ; k++)
+					{
+						candidate[i + k] = sequence[j - k];
+					}
+					if (schedule(r, candidate, length, i, delays[r], costs[r]))
+					{
+						updateRoute(r, candidate, length);
+						improvement = true;
+					}
+				}
+			}
+		}
+		return improvement;
+	}
+
+	/**
+	 * Try to move the stops of each person to another route
+	 * @return true if the partition was improved
+	 */
+	protected boolean transferPaths()
+	{
+		boolean improvement = false;
+		int pickup, deposit, reducedDelay, reducedCost;
+
+		for (int a = 0 ; a < sequences.length ; a++)
+		{
+			for (int i = 0 ; i < lengths[a] ; i++)
+			{
+				pickup = sequences[a][i];
+				if (kinds[pickup] != PICKUP)
+					continue;
+				deposit = partners[pickup];
+
+				// The route without the person
+				removeStop(sequences[a], lengths[a], positions[deposit], otherCandidate);
+				removeStop(otherCandidate, lengths[a] - 1, i, otherCandidate);
+				schedule(a, otherCandidate, lengths[a] - 2, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+				reducedDelay = scheduledDelay - delays[a];
+				reducedCost = scheduledCost - costs[a];
+
+				for (int b = 0 ; b < sequences.length ; b++)
+				{
+					if (b == a || !transferPath(pickup, deposit, b, reducedDelay, reducedCost))
+						continue;
+					updateRoute(a, otherCandidate, lengths[a] - 2);
+					updateRoute(b, candidate, lengths[b] + 2);
+					improvement = true;
+					// The next stop is now at the position of the removed pickup
+					i--;
+					break;
+				}
+			}
+		}
+		return improvement;
+	}
+
+	/**
+	 * Search positions of the stops of a person in a route which improve the partition.
+	 * If the transfer improves the partition, the candidate array contains the new stops of the route.
+	 * @param pickup the pickup stop of the person
+	 * @param deposit the deposit stop of the person
+	 * @param route the route receiving the person
+	 * @param reducedDelay the delay variation of the route losing the person
+	 * @param reducedCost the user time and advance variation of the route losing the person
+	 * @return true if the transfer improves the partition
+	 */
+	protected boolean transferPath(int pickup, int deposit, int route, int reducedDelay, int reducedCost)
+	{
+		int[] sequence = sequences[route];
+		int length = lengths[route], maxDelay = delays[route] - reducedDelay, maxCost = costs[route] - reducedCost;
+
+		prepare(route);
+		for (int i = 0 ; i <= length ; i++)
+		{
+			// The totals only increase along the route, so if the stops before the pickup
+			// already exceed the bounds, the next positions exceed them too
+			if (baseDelays[i] > maxDelay || baseDelays[i] == maxDelay && baseCosts[i] >= maxCost)
+				return false;
+			for (int j = i ; j <= length ; j++)
+			{
+				insertStop(sequence, length, i, pickup, candidate);
+				insertStop(candidate, length + 1, j + 1, deposit);
+				if (schedule(route, candidate, length + 2, i, maxDelay, maxCost))
+					return true;
+				// The next deposit positions give the same stops until the one which stopped the scheduling
+				if (stoppedPosition <= j)
+					break;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Try to swap the stops of two persons of two different routes.
+	 * Each person takes the positions of the other one.
+	 * @return true if the partition was improved
+	 */
+	protected boolean exchangePaths()
+	{
+		boolean improvement = false;
+		int first, second, delay, cost;
+
+		for (int a = 0 ; a < sequences.length ; a++)
+		{
+			for (int b = a + 1 ; b < sequences.length ; b++)
+			{
+				for (int i = 0 ; i < lengths[a] ; i++)
+				{
+					first = sequences[a][i];
+					if (kinds[first] != PICKUP)
+						continue;
+					for (int j = 0 ; j < lengths[b] ; j++)
+					{
+						second = sequences[b][j];
+						if (kinds[second] != PICKUP)
+							continue;
+						System.arraycopy(sequences[a], 0, candidate, 0, lengths[a]);
+						candidate[i] = second;
+						candidate[positions[partners[first]]] = partners[second];
+						// The totals of the second route can't be negative
+						delay = delays[a] + delays[b];
+						cost = costs[a] + costs[b];
+						if (!schedule(a, candidate, lengths[a], 0, delay, cost))
+							continue;
+						delay -= scheduledDelay;
+						cost -= scheduledCost;
+						System.arraycopy(sequences[b], 0, otherCandidate, 0, lengths[b]);
+						otherCandidate[j] = first;
+						otherCandidate[positions[partners[second]]] = partners[first];
+						if (schedule(b, otherCandidate, lengths[b], 0, delay, cost))
+						{
+							updateRoute(a, candidate, lengths[a]);
+							updateRoute(b, otherCandidate, lengths[b]);
+							improvement = true;
+							break;
+						}
+					}
+				}
+			}
+		}
+		return improvement;
+	}
+
+	/**
+	 * Replace the stops of a route, update their positions and the totals of the route
+	 * @param route the route
+	 * @param sequence the new stops of the route
+	 * @param length the number of stops
+	 */
+	protected void updateRoute(int route, int[] sequence, int length)
+	{
+		System.arraycopy(sequence, 0, sequences[route], 0, length);
+		lengths[route] = length;
+		for (int i = 0 ; i < length ; i++)
+		{
+			positions[sequence[i]] = i;
+		}
+		schedule(route, sequences[route], length, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+		delays[route] = scheduledDelay;
+		costs[route] = scheduledCost;
+		modifiedRoutes[route] = true;
+	}
+
+	/**
+	 * Copy stops without the stop at the given position
+	 * @param sequence the stops
+	 * @param length the number of stops
+	 * @param position the position of the stop to remove
+	 * @param destination the array receiving the stops, may be the given one
+	 */
+	protected static void removeStop(int[] sequence, int length, int position, int[] destination)
+	{
+		if (destination != sequence)
+		{
+			System.arraycopy(sequence, 0, destination, 0, position);
+		}
+		System.arraycopy(sequence, position + 1, destination, position, length - position - 1);
+	}
+
+	/**
+	 * Insert a stop at the given position, moving the next ones
+	 * @param sequence the stops, with at least one free place at the end
+	 * @param length the number of stops
+	 * @param position the position of the new stop
+	 * @param stop the stop to insert
+	 */
+	protected static void insertStop(int[] sequence, int length, int position, int stop)
+	{
+		System.arraycopy(sequence, position, sequence, position + 1, length - position);
+		sequence[position] = stop;
+	}
+
+	/**
+	 * Copy stops and insert a stop at the given position
+	 * @param sequence the stops
+	 * @param length the number of stops
+	 * @param position the position of the new stop
+	 * @param stop the stop to insert
+	 * @param destination the array receiving the stops
+	 */
+	protected static void insertStop(int[] sequence, int length, int position, int stop, int[] destination)
+	{
+		System.arraycopy(sequence, 0, destination, 0, position);
+		destination[position] = stop;
+		System.arraycopy(sequence, position, destination, position + 1, length - position);
+	}
+
+	/**
+	 * Schedule the current stops of a route, so the routes differing from it only after a given position
+	 * can be scheduled from this position
+	 * @param route the route
+	 */
+	protected void prepare(int route)
+	{
+		if (preparedRoute != route)
+		{
+			schedule(route, sequences[route], lengths[route], 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * Calculate the arrival times and the totals of a route, the same way the ants do.
+	 * The results are put in the scheduled fields and in the arrivals array.
+	 * The delay and the cost only increase along the route, so the calculation stops as soon as 
+	 * the totals can't be lower than the given bounds. The delay is compared first, 
+	 * then the user time and the advance, like the solver compares the partitions.
+	 * When the current stops of the route are scheduled, the route becomes the prepared one.
+	 * @param route the route, giving the bus
+	 * @param sequence the stops of the route
+	 * @param length the number of stops
+	 * @param from the position from which the stops differ from the prepared route, 0 to schedule all the stops
+	 * @param maxDelay the delay bound
+	 * @param maxCost the user time and advance bound
+	 * @return true if the bus capacity is respected and if the totals are strictly lower than the bounds
+	 */
+	protected boolean schedule(int route, int[] sequence, int length, int from, int maxDelay, int maxCost)
+	{
+		boolean record = sequence == sequences[route];
+		int hour, position, basics, wheelchairs, duration, minimum, v;
+
+		if (from > 0)
+		{
+			// The stops before the given position are the ones of the prepared route
+			hour = baseHours[from];
+			position = locations[sequence[from - 1]];
+			basics = baseBasics[from];
+			wheelchairs = baseWheelchairs[from];
+			scheduledStart = baseStart;
+			scheduledSwap = baseSwap;
+			scheduledDelay = baseDelays[from];
+			scheduledCost = baseCosts[from];
+			for (int k = 0 ; k < from ; k++)
+			{
+				arrivals[k] = baseArrivals[k];
+				pickupTimes[sequence[k]] = baseArrivals[k];
+			}
+		}
+		else
+		{
+			hour = startTimes[route];
+			position = origins[route];
+			basics = wheelchairs = 0;
+			scheduledStart = hour;
+			scheduledSwap = hour + SolverData.getDriverWorkTime();
+			scheduledDelay = 0;
+			scheduledCost = 0;
+		}
+		if (record)
+		{
+			preparedRoute = -1;
+		}
+
+		for (int k = from ; k < length ; k++)
+		{
+			v = sequence[k];
+			if (record)
+			{
+				baseHours[k] = hour;
+				baseBasics[k] = basics;
+				baseWheelchairs[k] = wheelchairs;
+				baseDelays[k] = scheduledDelay;
+				baseCosts[k] = scheduledCost;
+			}
+
+			// The duration is modified by the traffic coefficients met during the travel
+			duration = data.getTravelTime(position, locations[v], hour);
+			hour += duration;
+
+			// Bus arrive early for departure, so it has to wait
+			if (kinds[v] != DEPOSIT)
+			{
+				minimum = kinds[v] == PICKUP ? times[v] : scheduledSwap - SolverData.getDriverSwapTime()
+						* SolverData.TIME_FRAME_COEFFICIENT;
+				if (hour < minimum)
+				{
+					hour = minimum;
+					if (k == 0)
+					{
+						scheduledStart = hour - duration;
+						scheduledSwap = scheduledStart + SolverData.getDriverWorkTime();
+					}
+				}
+			}
+			arrivals[k] = hour;
+
+			switch (kinds[v])
+			{
+				case PICKUP:
+					if (wheelchaireds[v] ? ++wheelchairs > wheelchairSeats[route] : ++basics > basicSeats[route])
+					{
+						stoppedPosition = k;
+						return false;
+					}
+					pickupTimes[v] = hour;
+					break;
+				case DEPOSIT:
+					if (wheelchaireds[v])
+						wheelchairs--;
+					else
+						basics--;
+					scheduledDelay += Math.max(hour - times[v], 0);
+					scheduledCost += hour - pickupTimes[partners[v]] + Math.max(times[v] - hour, 0);
+					break;
+				default:
+					scheduledDelay += Math.max(hour - scheduledSwap, 0);
+					scheduledCost += Math.max(scheduledSwap - hour, 0);
+					break;
+			}
+			if (scheduledDelay > maxDelay || scheduledDelay == maxDelay && scheduledCost >= maxCost)
+			{
+				stoppedPosition = k;
+				return false;
+			}
+			hour += downtimes[v];
+			position = locations[v];
+		}
+		scheduledEnd = hour + data.getDuration(position, origins[route]);
+
+		if (record)
+		{
+			baseHours[length] = hour;
+			baseBasics[length] = basics;
+			baseWheelchairs[length] = wheelchairs;
+			baseDelays[length] = scheduledDelay;
+			baseCosts[length] = scheduledCost;
+			System.arraycopy(arrivals, 0, baseArrivals, 0, length);
+			baseStart = scheduledStart;
+			baseSwap = scheduledSwap;
+			preparedRoute = route;
+		}
+		return true;
+	}
+
+	/**
+	 * Build the route corresponding to the current stops of a route
+	 * @param route the route
+	 * @return the route built
+	 */
+	protected Route buildRoute(int route)
+	{
+		Location origin = data.getBus(route).getOrigin();
+		Route built = new Route(lengths[route] + 2);
+		int v;
+
+		schedule(route, sequences[route], lengths[route], 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+		built.addLocation(origin, scheduledStart);
+		for (int k = 0 ; k < lengths[route] ; k++)
+		{
+			v = sequences[route][k];
+			switch (kinds[v])
+			{
+				case PICKUP:
+					built.addPickupStop(stopLocations[v], persons[v], times[v], arrivals[k]);
+					break;
+				case DEPOSIT:
+					built.addDepositStop(stopLocations[v], persons[v], arrivals[k], times[v],
+							pickupTimes[partners[v]]);
+					break;
+				default:
+					built.addDriverSwapStop(stopLocations[v], arrivals[k], scheduledSwap);
+					break;
+			}
+		}
+		built.addLocation(origin, scheduledEnd);
+		return built;
+	}
+}
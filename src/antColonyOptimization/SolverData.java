@@ -8,6 +8,7 @@ import locationsData.DataMatrix;
 import locationsData.Location;
 import locationsData.Path;
 import locationsData.TrafficInformation;
+import locationsData.TravelTimeMatrix;
 import application.BusSchedulingException;
 
 /**
@@ -48,6 +49,9 @@ public class SolverData
 	/** */
 	protected TrafficInformation traffic;
 
+	/** Travel times depending on the departure hour, built from the matrix and the traffic */
+	protected TravelTimeMatrix travelTimes;
+
 	/** The bus used for the route */
 	protected List<Bus> bus;
 
@@ -64,10 +68,25 @@ public class SolverData
 	{
 		this.distancesMatrix = matrix;
 		this.setBus(bus);
-		this.traffic = traffic;
+		setTraffic(traffic);
 		setPaths(paths);
 	}
 
+	/**
+	 * Constructor by copy using an other matrix. The paths, the bus and the traffic are shared with the given data.
+	 * @param data the data to copy
+	 * @param matrix the matrix used instead of the data one, containing the same locations
+	 */
+	public SolverData(SolverData data, DataMatrix matrix)
+	{
+		this.distancesMatrix = matrix;
+		this.bus = data.bus;
+		this.traffic = data.traffic;
+		// The durations are shared by the matrices, so are the travel times
+		this.travelTimes = data.travelTimes;
+		this.paths = data.paths;
+	}
+
 	/**
 	 * Minimal constructor
 	 * @param matrix The distance matrix containing paths weight
@@ -110,6 +129,38 @@ public class SolverData
 		return distancesMatrix.getDuration(origin, destination);
 	}
 
+	/**
+	 * Return the value of the pheromones between two indexes of the matrix
+	 * @param origin Pheromones matrix lines
+	 * @param destination Pheromones matrix columns
+	 * @return the pheromones value
+	 */
+	public double getPheromones(int origin, int destination)
+	{
+		return distancesMatrix.getPheromones(origin, destination);
+	}
+
+	/**
+	 * Return the weight of the path between two indexes of the matrix
+	 * @param origin  Distances matrix lines
+	 * @param destination Distances matrix columns
+	 * @return the weight value
+	 */
+	public int getDuration(int origin, int destination)
+	{
+		return distancesMatrix.getDuration(origin, destination);
+	}
+
+	/**
+	 * Return the index of a location in the matrix
+	 * @param location the location
+	 * @return the index of the location
+	 */
+	public int getIndex(Location location)
+	{
+		return distancesMatrix.getIndex(location);
+	}
+
 	/**
 	 * Return the list of locations used by the matrix
 	 * @return the list of locations 
@@ -311,6 +362,7 @@ public class SolverData
 	public void setTraffic(TrafficInformation traffic)
 	{
 		this.traffic = traffic;
+		travelTimes = new TravelTimeMatrix(distancesMatrix, traffic);
 	}
 
 	/**
@@ -320,7 +372,19 @@ public class SolverData
 	 */
 	public float getTrafficCoefficient(int hour)
 	{
-		return traffic.getCoefficient(hour);
+		return travelTimes.getCoefficient(hour);
+	}
+
+	/**
+	 * Return the duration of the travel between two indexes of the matrix, modified by the traffic
+	 * @param origin Distances matrix lines
+	 * @param destination Distances matrix columns
+	 * @param departure the departure hour
+	 * @return the duration of the travel leaving at the given hour
+	 */
+	public int getTravelTime(int origin, int destination, int departure)
+	{
+		return travelTimes.getTravelTime(origin, destination, departure);
 	}
 
 	/** 
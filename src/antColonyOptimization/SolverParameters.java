@@ -45,6 +45,44 @@ public class SolverParameters
 	/**	 Minimum amount of pheromones authorized on trails */
 	protected double minPheromones = 0;
 
+	/** Number of threads building the constructions of an iteration at the same time.
+	 * With only one thread the constructions are built sequentially. */
+	protected int threads_number = 1;
+
+	/** Seed of the random generators used by the ants. 
+	 * For a given seed and threads number the solver always returns the same solution. */
+	protected long seed = System.nanoTime();
+
+	/** Number of nearest locations evaluated by the ants at each step before evaluating all of them.
+	 * With 0 the ants always evaluate every path. */
+	protected int candidates_number = 0;
+
+	/** Maximum number of passes of the local search applied to the best partition of each iteration.
+	 * With 0 the partitions built by the ants are not improved. */
+	protected int local_search_passes = 3;
+
+	/** Maximum duration of the search in seconds, checked after each iteration. With 0 there is no time limit. */
+	protected int time_limit = 0;
+
+	/** Number of consecutive iterations without improvement of the best partition after which the search stops.
+	 * With 0 the search doesn't stop because of a lack of improvement. */
+	protected int stall_iterations = 0;
+
+	/** Total delay, in seconds, under which a partition is good enough to stop the search.
+	 * With a negative value the search doesn't stop because of the best partition delay. */
+	protected int target_delay = -1;
+
+	/** Number of colonies searching at the same time, each one with its own pheromones.
+	 * With only one colony there is no migration. */
+	protected int colonies_number = 1;
+
+	/** Number of iterations between two exchanges of the best partitions between the colonies */
+	protected int migration_interval = 10;
+
+	/** Delay, in seconds, allowed to the persons in the bus before a location making it certain is discarded by the ants.
+	 * With a negative value, the default one, the ants don't discard any location. */
+	protected int feasibility_slack = -1;
+
 	/** Path length found using nearest neighbor algorithm */
 	protected int basicPathLength = -1;
 
@@ -59,9 +97,39 @@ public class SolverParameters
 		updateAutomaticParameters();
 	}
 
+	/**
+	 * Constructor by copy
+	 * @param parameters the parameters to copy
+	 */
+	public SolverParameters(SolverParameters parameters)
+	{
+		this.constructions_number = parameters.constructions_number;
+		this.iterations_number = parameters.iterations_number;
+		this.evaporate_rate = parameters.evaporate_rate;
+		this.pheromone_coef = parameters.pheromone_coef;
+		this.visibility_coef = parameters.visibility_coef;
+		this.pheromones_by_ant = parameters.pheromones_by_ant;
+		this.pheromones_at_start = parameters.pheromones_at_start;
+		this.matrix = parameters.matrix;
+		this.maxPheromones = parameters.maxPheromones;
+		this.minPheromones = parameters.minPheromones;
+		this.threads_number = parameters.threads_number;
+		this.seed = parameters.seed;
+		this.candidates_number = parameters.candidates_number;
+		this.local_search_passes = parameters.local_search_passes;
+		this.time_limit = parameters.time_limit;
+		this.stall_iterations = parameters.stall_iterations;
+		this.target_delay = parameters.target_delay;
+		this.colonies_number = parameters.colonies_number;
+		this.migration_interval = parameters.migration_interval;
+		this.feasibility_slack = parameters.feasibility_slack;
+		this.basicPathLength = parameters.basicPathLength;
+	}
+
 	/** 
 	 *  Update all the following automatic parameters :
 	 *   - constructions number
+	 *   - candidates number
 	 *   - initial pheromones amount
 	 *   - max pheromone number
 	 *   - min pheromones number
@@ -69,6 +137,7 @@ public class SolverParameters
 	public void updateAutomaticParameters()
 	{
 		this.constructions_number = calculateConstructionsNumber();
+		this.candidates_number = calculateCandidatesNumber();
 		this.pheromones_at_start = calculateInitialPheromones();
 		this.minPheromones = calculateMinPheromones();
 		this.maxPheromones = calculateMaxPheromones();
@@ -92,6 +161,16 @@ public class SolverParameters
 		return matrix.getMatrixSize() > 300 ? 50 : 100;
 	}
 
+	/**
+	 * Calculate and return the number of nearest locations evaluated by the ants.
+	 * The candidate lists are only used with a lot of locations.
+	 * @return the candidates number
+	 */
+	protected int calculateCandidatesNumber()
+	{
+		return matrix.getMatrixSize() > 300 ? 30 : 0;
+	}
+
 	/**
 	 * Use informations of the solver parameters to calculate and return 
 	 * the minimum amount of pheromones authorized on each trails. 
@@ -274,6 +353,157 @@ public class SolverParameters
 		this.evaporate_rate = rate;
 	}
 
+	/**
+	 * Setter for the number of threads building the constructions
+	 * @param number the number of threads
+	 */
+	public void setThreadsNumber(int number)
+	{
+		if (number < 1)
+			throw new IllegalArgumentException("The threads number must be a strictly positive integer.");
+		this.threads_number = number;
+	}
+
+	/**
+	 * Setter for the number of nearest locations evaluated by the ants at each step
+	 * @param number the candidates number, 0 to always evaluate every path
+	 */
+	public void setCandidatesNumber(int number)
+	{
+		if (number < 0)
+			throw new IllegalArgumentException("The candidates number must be a positive integer.");
+		this.candidates_number = number;
+	}
+
+	/**
+	 * Setter for the maximum number of passes of the local search
+	 * @param passes the passes number, 0 to disable the local search
+	 */
+	public void setLocalSearchPasses(int passes)
+	{
+		if (passes < 0)
+			throw new IllegalArgumentException("The local search passes number must be a positive integer.");
+		this.local_search_passes = passes;
+	}
+
+	/**
+	 * Setter for the maximum duration of the search
+	 * @param seconds the duration in seconds, 0 for no time limit
+	 */
+	public void setTimeLimit(int seconds)
+	{
+		if (seconds < 0)
+			throw new IllegalArgumentException("The time limit must be a positive integer.");
+		this.time_limit = seconds;
+	}
+
+	/**
+	 * Setter for the number of consecutive iterations without improvement after which the search stops
+	 * @param iterations the iterations number, 0 to never stop because of a lack of improvement
+	 */
+	public void setStallIterations(int iterations)
+	{
+		if (iterations < 0)
+			throw new IllegalArgumentException("The stall iterations number must be a positive integer.");
+		this.stall_iterations = iterations;
+	}
+
+	/**
+	 * Setter for the total delay under which the search stops
+	 * @param delay the delay in seconds, a negative value to never stop because of the delay
+	 */
+	public void setTargetDelay(int delay)
+	{
+		this.target_delay = delay;
+	}
+
+	/**
+	 * Setter for the number of colonies searching at the same time
+	 * @param number the colonies number
+	 */
+	public void setColoniesNumber(int number)
+	{
+		if (number < 1)
+			throw new IllegalArgumentException("The colonies number must be a strictly positive integer.");
+		this.colonies_number = number;
+	}
+
+	/**
+	 * Setter for the number of iterations between two exchanges of the best partitions between the colonies
+	 * @param iterations the iterations number
+	 */
+	public void setMigrationInterval(int iterations)
+	{
+		if (iterations < 1)
+			throw new IllegalArgumentException("The migration interval must be a strictly positive integer.");
+		this.migration_interval = iterations;
+	}
+
+	/**
+	 * Setter for the delay allowed to the persons in the bus before a location making it certain is discarded
+	 * @param slack the delay in seconds, a negative value to never discard a location
+	 */
+	public void setFeasibilitySlack(int slack)
+	{
+		this.feasibility_slack = slack;
+	}
+
+	/**
+	 * Setter for the seed of the random generators
+	 * @param seed the seed
+	 */
+	public void setSeed(long seed)
+	{
+		this.seed = seed;
+	}
+
+	/**
+	 * Set a parameter from its name and its textual value, used by the command line options.
+	 * The names are: iterations, constructions, evaporate-rate, threads, candidates, local-search-passes,
+	 * time-limit, stall-iterations, target-delay, colonies, migration-interval, feasibility-slack and seed.
+	 * @param name the name of the parameter
+	 * @param value the value of the parameter
+	 * @throws IllegalArgumentException if the name is unknown or if the value is invalid
+	 */
+	public void setParameter(String name, String value)
+	{
+		try
+		{
+			if (name.equals("iterations"))
+				setIterationNumber(Integer.parseInt(value));
+			else if (name.equals("constructions"))
+				setConstructionsNumber(Integer.parseInt(value));
+			else if (name.equals("evaporate-rate"))
+				setEvaporateRate(Float.parseFloat(value));
+			else if (name.equals("threads"))
+				setThreadsNumber(Integer.parseInt(value));
+			else if (name.equals("candidates"))
+				setCandidatesNumber(Integer.parseInt(value));
+			else if (name.equals("local-search-passes"))
+				setLocalSearchPasses(Integer.parseInt(value));
+			else if (name.equals("time-limit"))
+				setTimeLimit(Integer.parseInt(value));
+			else if (name.equals("stall-iterations"))
+				setStallIterations(Integer.parseInt(value));
+			else if (name.equals("target-delay"))
+				setTargetDelay(Integer.parseInt(value));
+			else if (name.equals("colonies"))
+				setColoniesNumber(Integer.parseInt(value));
+			else if (name.equals("migration-interval"))
+				setMigrationInterval(Integer.parseInt(value));
+			else if (name.equals("feasibility-slack"))
+				setFeasibilitySlack(Integer.parseInt(value));
+			else if (name.equals("seed"))
+				setSeed(Long.parseLong(value));
+			else
+				throw new IllegalArgumentException("Unknown parameter: " + name + ".");
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Invalid value for the parameter " + name + ": " + value + ".");
+		}
+	}
+
 	/**
 	 * Return the number of ants
 	 * @return the number of ants
@@ -319,6 +549,96 @@ public class SolverParameters
 		return this.visibility_coef;
 	}
 
+	/**
+	 * Return the number of threads building the constructions of an iteration
+	 * @return the number of threads
+	 */
+	public int getThreadsNumber()
+	{
+		return this.threads_number;
+	}
+
+	/**
+	 * Return the number of nearest locations evaluated by the ants at each step
+	 * @return the candidates number, 0 if every path is always evaluated
+	 */
+	public int getCandidatesNumber()
+	{
+		return this.candidates_number;
+	}
+
+	/**
+	 * Return the maximum number of passes of the local search applied to the best partition of each iteration
+	 * @return the passes number, 0 if the local search is disabled
+	 */
+	public int getLocalSearchPasses()
+	{
+		return this.local_search_passes;
+	}
+
+	/**
+	 * Return the maximum duration of the search
+	 * @return the duration in seconds, 0 if there is no time limit
+	 */
+	public int getTimeLimit()
+	{
+		return this.time_limit;
+	}
+
+	/**
+	 * Return the number of consecutive iterations without improvement after which the search stops
+	 * @return the iterations number, 0 if the search never stops because of a lack of improvement
+	 */
+	public int getStallIterations()
+	{
+		return this.stall_iterations;
+	}
+
+	/**
+	 * Return the total delay under which the search stops
+	 * @return the delay in seconds, a negative value if the search never stops because of the delay
+	 */
+	public int getTargetDelay()
+	{
+		return this.target_delay;
+	}
+
+	/**
+	 * Return the number of colonies searching at the same time
+	 * @return the colonies number
+	 */
+	public int getColoniesNumber()
+	{
+		return this.colonies_number;
+	}
+
+	/**
+	 * Return the number of iterations between two exchanges of the best partitions between the colonies
+	 * @return the iterations number
+	 */
+	public int getMigrationInterval()
+	{
+		return this.migration_interval;
+	}
+
+	/**
+	 * Return the delay allowed to the persons in the bus before a location making it certain is discarded
+	 * @return the delay in seconds, a negative value if no location is discarded
+	 */
+	public int getFeasibilitySlack()
+	{
+		return this.feasibility_slack;
+	}
+
+	/**
+	 * Return the seed of the random generators used by the ants
+	 * @return the seed
+	 */
+	public long getSeed()
+	{
+		return this.seed;
+	}
+
 	/**
 	 * Return the number of pheromones to put on the trails at the start of the algorithm
 	 * @return the number of pheromones to put on the trails at the start of the algorithm
@@ -355,6 +675,16 @@ public class SolverParameters
 		sb.append("Visibility coefficient: " + getVisibilityCoef() + "\n");
 		sb.append("Min Pheromones: " + getMinPheromones() + "\n");
 		sb.append("Max Pheromones: " + getMaxPheromones() + "\n");
+		sb.append("Threads number: " + getThreadsNumber() + "\n");
+		sb.append("Candidates number: " + getCandidatesNumber() + "\n");
+		sb.append("Local search passes: " + getLocalSearchPasses() + "\n");
+		sb.append("Time limit: " + getTimeLimit() + "\n");
+		sb.append("Stall iterations: " + getStallIterations() + "\n");
+		sb.append("Target delay: " + getTargetDelay() + "\n");
+		sb.append("Colonies number: " + getColoniesNumber() + "\n");
+		sb.append("Migration interval: " + getMigrationInterval() + "\n");
+		sb.append("Feasibility slack: " + getFeasibilitySlack() + "\n");
+		sb.append("Seed: " + getSeed() + "\n");
 		return sb.toString();
 	}
 }
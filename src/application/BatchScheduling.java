@@ -0,0 +1,322 @@
+package application;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import locationsData.Bus;
+import locationsData.TrafficInformation;
+import dataLoader.ConnectionPool;
+import dataLoader.DatabaseManager;
+import dataLoader.DistanceCache;
+import dataLoader.XLSParser;
+
+/**
+ *  Scheduling of several independent paths sheets, for example the days of a week or the districts of a city,
+ *  in the same process. The configuration file is parsed once, the database connection and the distances
+ *  read from the database or received from Google are shared by all the jobs, and the jobs are run at the same
+ *  time by a bounded number of workers. Each job writes its own results file.
+ */
+public class BatchScheduling
+{
+	/**
+	 *  Paths sheet to schedule and its results file
+	 */
+	public static class Job
+	{
+		/** Paths input file */
+		private File pathsFile;
+
+		/** Paths file sheet number */
+		private int sheet;
+
+		/** Output file */
+		private File resultsFile;
+
+		/** Scheduling of the job, null before the batch is run */
+		private BusScheduling busScheduling;
+
+		/**
+		 * Full constructor
+		 * @param pathsFile Paths input file
+		 * @param sheet Paths file sheet number
+		 * @param resultsFile Output file
+		 */
+		public Job(File pathsFile, int sheet, File resultsFile)
+		{
+			this.pathsFile = pathsFile;
+			this.sheet = sheet;
+			this.resultsFile = resultsFile;
+		}
+
+		/**
+		 * Return the paths input file
+		 * @return The paths input file
+		 */
+		public File getPathsFile()
+		{
+			return pathsFile;
+		}
+
+		/**
+		 * Return the paths file sheet number
+		 * @return The sheet number
+		 */
+		public int getSheet()
+		{
+			return sheet;
+		}
+
+		/**
+		 * Return the output file
+		 * @return The output file
+		 */
+		public File getResultsFile()
+		{
+			return resultsFile;
+		}
+
+		/**
+		 * Return the scheduling of the job, holding its metrics
+		 * @return The scheduling, null if the batch has not been run
+		 */
+		public BusScheduling getBusScheduling()
+		{
+			return busScheduling;
+		}
+
+		/**
+		 * Return true if the results file of the job has been written
+		 * @return true if the job succeeded, false else
+		 */
+		public boolean isSucceeded()
+		{
+			return busScheduling != null && busScheduling.isSucceeded();
+		}
+	}
+
+	/** Configuration input file, shared by all the jobs */
+	private File configurationFile;
+
+	/** true if a Google Business subscription is owned, false else */
+	private boolean subscription;
+
+	/** Maximum number of jobs run at the same time */
+	private int workersNumber;
+
+	/** Correction of the locations found outside of Joinville, null to stop the job */
+	private LocationCorrector locationCorrector;
+
+	/** Jobs to run, in the order they were added */
+	private List<Job> jobs = new ArrayList<Job>();
+
+	/** Solver parameters set by name, applied to every job */
+	private Map<String, String> solverOptions = new LinkedHashMap<String, String>();
+
+	/** Distances shared by all the jobs */
+	private DistanceCache distanceCache = new DistanceCache();
+
+	/**
+	 * Constructor
+	 * @param configFile Configuration input file, shared by all the jobs
+	 * @param subscription true if a Google Business subscription is owned, false else
+	 * @param workersNumber Maximum number of jobs run at the same time
+	 * @param locationCorrector Correction of the locations found outside of Joinville, null to stop the job
+	 */
+	public BatchScheduling(File configFile, boolean subscription, int workersNumber, LocationCorrector locationCorrector)
+	{
+		if (workersNumber < 1)
+			throw new IllegalArgumentException("The workers number must be a strictly positive integer.");
+		this.configurationFile = configFile;
+		this.subscription = subscription;
+		this.workersNumber = workersNumber;
+		this.locationCorrector = locationCorrector;
+	}
+
+	/**
+	 * Add a job to the batch
+	 * @param pathsFile Paths input file
+	 * @param sheet Paths file sheet number
+	 * @param resultsFile Output file
+	 */
+	public void addJob(File pathsFile, int sheet, File resultsFile)
+	{
+		jobs.add(new Job(pathsFile, sheet, resultsFile));
+	}
+
+	/**
+	 * Set a solver parameter of every job
+	 * @param name The name of the parameter, as accepted by SolverParameters.setParameter
+	 * @param value The value of the parameter
+	 */
+	public void setSolverOption(String name, String value)
+	{
+		solverOptions.put(name, value);
+	}
+
+	/**
+	 * Return the jobs, in the order they were added
+	 * @return The jobs
+	 */
+	public List<Job> getJobs()
+	{
+		return jobs;
+	}
+
+	/**
+	 * Return the distances shared by all the jobs
+	 * @return The distance cache
+	 */
+	public DistanceCache getDistanceCache()
+	{
+		return distanceCache;
+	}
+
+	/**
+	 * Parse the configuration then run all the jobs. A job failing doesn't stop the other ones.
+	 * @return The number of jobs which failed
+	 * @throws BusSchedulingException If the configuration can't be parsed or the database can't be used
+	 * @throws InterruptedException If the thread is interrupted while waiting for the jobs
+	 */
+	public int run() throws BusSchedulingException, InterruptedException
+	{
+		TrafficInformation traffic = new TrafficInformation();
+		XLSParser xlsParser = new XLSParser();
+		List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(jobs.size());
+		ExecutorService executor;
+		DatabaseManager databaseManager;
+		final Bus[] bus;
+		BusScheduling configuration;
+		int failures = 0;
+
+		System.out.print("Carregamento da configuração.....");
+		try
+		{
+			bus = BusScheduling.loadConfiguration(xlsParser, configurationFile, traffic);
+		}
+		catch (BusSchedulingException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new BusSchedulingException("Erro encontrado ao carregamento da configuração de " + configurationFile
+					+ " ficheiro. (Error encountered parsing configuration file)");
+		}
+		System.out.println("Feito.");
+
+		try
+		{
+			databaseManager = DatabaseManager.getInstance();
+			// Each worker may hold a connection of the pool while another one flushes the new rows
+			if (workersNumber >= ConnectionPool.DEFAULT_MAXIMUM_SIZE)
+			{
+				databaseManager.getConnectionPool().setMaximumSize(workersNumber + 1);
+			}
+			for (int i = 0 ; i < jobs.size() ; i++)
+			{
+				Job job = jobs.get(i);
+				job.busScheduling = new BusScheduling(configurationFile, job.pathsFile, job.sheet, job.resultsFile,
+						subscription, locationCorrector);
+				job.busScheduling.setConfiguration(bus.clone(), traffic);
+				job.busScheduling.setDistanceCache(distanceCache);
+				job.busScheduling.setCloseDatabase(false);
+				job.busScheduling.setMetricsName(Metrics.OBJECT_NAME + ",job=" + (i + 1));
+				// The metrics of the finished jobs stay published until the end of the batch
+				job.busScheduling.setUnregisterMetrics(false);
+				for (Map.Entry<String, String> option : solverOptions.entrySet())
+				{
+					job.busScheduling.setSolverOption(option.getKey(), option.getValue());
+				}
+			}
+		}
+		catch (Exception e)
+		{
+			throw new BusSchedulingException("A conexão ao base de dados voltou um erro. (The database connection has failed)");
+		}
+
+		// The locations of the configuration are shared by the jobs, so they are resolved once before the jobs run
+		try
+		{
+			configuration = new BusScheduling(configurationFile, null, 0, null, subscription, locationCorrector);
+			configuration.setConfiguration(bus, traffic);
+			configuration.resolveConfigurationLocations();
+		}
+		catch (BusSchedulingException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new BusSchedulingException("Um erro ocorreu ao pedir côordenadas dos endereços. (An error occurred while asking for locations coordinates)");
+		}
+
+		executor = Executors.newFixedThreadPool(Math.min(workersNumber, Math.max(1, jobs.size())));
+		try
+		{
+			for (final Job job : jobs)
+			{
+				results.add(executor.submit(new Callable<Boolean>()
+				{
+					@Override
+					public Boolean call()
+					{
+						job.busScheduling.run();
+						return job.busScheduling.isSucceeded();
+					}
+				}));
+			}
+			for (int i = 0 ; i < results.size() ; i++)
+			{
+				try
+				{
+					if (!results.get(i).get())
+					{
+						++failures;
+					}
+				}
+				catch (ExecutionException e)
+				{
+					Main.saveLog(e);
+					System.err.println("\nO trabalho " + (i + 1) + " encontrou um erro interno. (The job has encountered an internal error) : "
+							+ e.getCause());
+					++failures;
+				}
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+			for (Job job : jobs)
+			{
+				job.busScheduling.unregisterMetrics();
+			}
+		}
+
+		// The coordinates of the configuration locations found by the jobs are saved once
+		if (failures < jobs.size())
+		{
+			try
+			{
+				xlsParser.writeConfigurationCoordinates(configurationFile, bus);
+			}
+			catch (Exception e)
+			{
+				System.err.println("\nUm erro ocorreu quando salvar côordenadas. (An error occurred while saving coordinates)");
+			}
+		}
+		try
+		{
+			databaseManager.close();
+		}
+		catch (Exception e) {}
+		return failures;
+	}
+}
@@ -8,7 +8,9 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import jxl.read.biff.BiffException;
 import locationsData.Bus;
@@ -17,26 +19,26 @@ import locationsData.Location;
 import locationsData.Path;
 import locationsData.Person;
 import locationsData.TrafficInformation;
-import presentation.GraphicalUserInterface;
-import presentation.LocationNotFoundFrame;
-import presentation.ProcessFrame;
 import presentation.ProgressionEvent;
 import presentation.ProgressionEvent.ProgressionType;
 import presentation.ProgressionListener;
-import antColonyOptimization.MinMaxAntSystem;
+import antColonyOptimization.MultiColonySystem;
 import antColonyOptimization.SolverData;
 import antColonyOptimization.SolverParameters;
 import dataLoader.DatabaseManager;
+import dataLoader.DistanceCache;
 import dataLoader.GoogleDatabaseDistances;
 import dataLoader.GoogleGeocode;
 import dataLoader.GoogleService.LocationNotFoundException;
 import dataLoader.GoogleService.OverQueryLimitException;
 import dataLoader.GoogleService.RequestDeniedException;
+import dataLoader.InsertBuffer;
 import dataLoader.XLSParser;
 
 /**
  * Permits to find a path from XLS files containing locations.
  * The path found has to pass by specified locations.
+ * This class doesn't use the graphical user interface, so it can also be run from the command line.
  */
 public class BusScheduling extends Thread implements ProgressionInvoker
 {
@@ -76,7 +78,7 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 	private Person[] people;
 
 	/** Permits to find a path as short as possible under constraints, passing by specified locations */
-	private MinMaxAntSystem minMaxAntSystem;
+	private MultiColonySystem antSystem;
 
 	/** List of path sent to the solver */
 	private List<Path> paths = new ArrayList<Path>();
@@ -96,9 +98,6 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 	/** Data matrix containing every distances between each location */
 	private DataMatrix matrix;
 
-	/** Graphical user interface */
-	private GraphicalUserInterface userInterface;
-
 	/** Progression events listeners */
 	private List<ProgressionListener> listeners = new ArrayList<ProgressionListener>();
 	
@@ -109,10 +108,34 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 	private boolean subscription = false;
 	
 	/** Traffic coefficients */
-	private TrafficInformation traffic = new TrafficInformation(6*24);
+	private TrafficInformation traffic = new TrafficInformation();
 	
-	/** Progression frame */
-	ProcessFrame processFrame;
+	/** Correction of the locations found outside of Joinville, null to stop the process */
+	private LocationCorrector locationCorrector;
+
+	/** Solver parameters set by name, applied to the automatic parameters */
+	private Map<String, String> solverOptions = new LinkedHashMap<String, String>();
+
+	/** Phases durations, requests counts and solver convergence of this scheduling */
+	private Metrics metrics = new Metrics();
+
+	/** true if every phase has been done, false else */
+	private boolean succeeded = false;
+
+	/** Name under which the metrics are registered in the platform MBean server */
+	private String metricsName = Metrics.OBJECT_NAME;
+
+	/** Distances already read from the database or received from Google, can be shared by several schedulings */
+	private DistanceCache distanceCache = new DistanceCache();
+
+	/** true if the configuration is given instead of being parsed from the configuration file */
+	private boolean sharedConfiguration = false;
+
+	/** true if the database connection is closed at the end of the scheduling, false if it is shared */
+	private boolean closeDatabase = true;
+
+	/** true to unregister the metrics at the end of the scheduling, false if the caller unregisters them */
+	private boolean unregisterMetrics = true;
 
 	/**
 	 * Constructor
@@ -121,23 +144,22 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 	 * @param pathsFile Paths input file
 	 * @param sheet Paths file sheet number
 	 * @param resultsFile Output file
-	 * @param userInterface User interface used to fire events
-	 * @param processFrame Progression frame
+	 * @param locationCorrector Correction of the locations found outside of Joinville, null to stop the process
 	 * @throws FileNotFoundException If a file can't be found
 	 * @throws SQLException 
 	 * @throws ClassNotFoundException 
 	 */
 	public BusScheduling(File configFile, File pathsFile, int sheet, File resultsFile,
-			GraphicalUserInterface userInterface, boolean subscription, ProcessFrame processFrame) throws FileNotFoundException, ClassNotFoundException, SQLException
+			boolean subscription, LocationCorrector locationCorrector) throws FileNotFoundException, ClassNotFoundException, SQLException
 	{
 		this.configurationFile = configFile;
 		this.pathsFile = pathsFile;
 		this.pathsSheet = sheet;
 		this.resultsFile = resultsFile;
-		this.userInterface = userInterface;
 		this.databaseManager = DatabaseManager.getInstance();
 		this.subscription = subscription;
-		this.processFrame = processFrame;
+		this.locationCorrector = locationCorrector;
+		this.xlsParser.setMetrics(metrics);
 	}
 
 	/**
@@ -145,8 +167,50 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 	 */
 	@Override
 	public void run()
+	{
+		try
+		{
+			metrics.register(metricsName);
+		}
+		catch (Exception e)
+		{
+			System.err.println("As métricas não podem ser publicadas por JMX. (The metrics can't be published through JMX) : " + e.getMessage());
+		}
+		try
+		{
+			schedule();
+		}
+		finally
+		{
+			if (unregisterMetrics)
+			{
+				unregisterMetrics();
+			}
+		}
+	}
+
+	/**
+	 * Unregister the metrics of this scheduling from the platform MBean server
+	 */
+	public void unregisterMetrics()
+	{
+		try
+		{
+			metrics.unregister();
+		}
+		catch (Exception e)
+		{
+			System.err.println("As métricas não podem ser retiradas de JMX. (The metrics can't be unregistered from JMX) : " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Run the phases of the scheduling, stopping at the first one which fails or if the thread is interrupted
+	 */
+	private void schedule()
 	{
 		Date startTime = new Date();
+		long phaseStart = System.nanoTime();
 		// Unused
 		// try
 		// {
@@ -182,6 +246,7 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 			fireEvent(this, ProgressionType.INTERRUPT, null);
 			return;
 		}
+		phaseStart = endPhase("configuration", phaseStart);
 		fireEvent(this, ProgressionType.SET, 1);
 		
 		if(isInterrupted())
@@ -205,6 +270,7 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 			fireEvent(this, ProgressionType.INTERRUPT, null);
 			return;
 		}
+		phaseStart = endPhase("paths", phaseStart);
 		fireEvent(this, ProgressionType.SET, 2);
 		
 		if(isInterrupted())
@@ -220,11 +286,13 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 			fireEvent(this, ProgressionType.INTERRUPT, null);
 			return;
 		}
+		phaseStart = endPhase("locations", phaseStart);
 
 		// Ask Google Geocoding API for locations coordinates
 		try
 		{
-			fillLocationsCoordinates();
+			// The locations of a shared configuration are already resolved, they are only read by the scheduling
+			fillLocationsCoordinates(sharedConfiguration ? Arrays.copyOf(locations, paths.size() * 2) : locations);
 		}
 		catch (BusSchedulingException e1)
 		{
@@ -238,6 +306,7 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 			fireEvent(this, ProgressionType.INTERRUPT, null);
 			return;
 		}
+		phaseStart = endPhase("geocoding", phaseStart);
 		fireEvent(this, ProgressionType.SET, 7);
 		
 		if(isInterrupted())
@@ -260,6 +329,7 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 			fireEvent(this, ProgressionType.INTERRUPT, null);
 			return;
 		}
+		phaseStart = endPhase("coordinates-saving", phaseStart);
 		fireEvent(this, ProgressionType.INCREMENT, 1);
 		
 		if(isInterrupted())
@@ -289,6 +359,7 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 			fireEvent(this, ProgressionType.INTERRUPT, null);
 			return;
 		}
+		phaseStart = endPhase("distances", phaseStart);
 		fireEvent(this, ProgressionType.SET, 50);
 		
 		if(isInterrupted())
@@ -315,6 +386,7 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 			fireEvent(this, ProgressionType.INTERRUPT, null);
 			return;
 		}
+		phaseStart = endPhase("solver", phaseStart);
 		fireEvent(this, ProgressionType.SET, 99);
 		
 		System.out.print(String.format("\nTempo de busca total : %s \n\n",
@@ -335,32 +407,70 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 			fireEvent(this, ProgressionType.INTERRUPT, null);
 			return;
 		}
-		fireEvent(this, ProgressionType.SET, 100);
+		endPhase("results", phaseStart);
+		succeeded = true;
 
-		try
+		if (closeDatabase)
 		{
-			databaseManager.close();
+			try
+			{
+				databaseManager.close();
+			}
+			catch (SQLException e) {}
 		}
-		catch (SQLException e) {}
-		
-		if (userInterface != null)
+
+		fireEvent(this, ProgressionType.SET, 100);
+	}
+
+	/**
+	 * Save the duration of a phase which has been done
+	 * @param phase The name of the phase
+	 * @param phaseStart The start time of the phase, in nanoseconds
+	 * @return The end time of the phase, in nanoseconds, which is the start time of the next one
+	 */
+	private long endPhase(String phase, long phaseStart)
+	{
+		long phaseEnd = System.nanoTime();
+		metrics.setPhaseTime(phase, (phaseEnd - phaseStart) / 1000000);
+		return phaseEnd;
+	}
+
+	/**
+	 * Ask to Google the coordinates and the database ids of the bus depots and driver swap locations of the
+	 * configuration. The schedulings sharing this configuration then only read these locations.
+	 * @throws BusSchedulingException If an exception must be printed to the user
+	 * @throws Exception If an exception occurs
+	 */
+	public void resolveConfigurationLocations() throws BusSchedulingException, Exception
+	{
+		Location[] configurationLocations = new Location[bus.length * 2];
+		int i = 0;
+
+		for (Bus b : bus)
 		{
-			userInterface.configureOutput();
+			configurationLocations[i] = b.getOrigin();
+			++i;
+			configurationLocations[i] = b.getDriverSwap();
+			++i;
 		}
+		fillLocationsCoordinates(configurationLocations);
 	}
 
 	/**
 	 * Ask to Google the locations coordinates, parse the response and fill the coordinates in the locations
+	 * @param locations The locations to fill
 	 * @throws IOException 
 	 * @throws RequestDeniedException 
 	 * @throws NullPointerException 
 	 * @throws BusSchedulingException 
 	 * @throws Exception If an exception occurs
 	 */
-	private void fillLocationsCoordinates() throws NullPointerException, RequestDeniedException, IOException, BusSchedulingException, Exception
+	private void fillLocationsCoordinates(Location[] locations) throws NullPointerException, RequestDeniedException, IOException, BusSchedulingException, Exception
 	{
 		System.out.print("Construindo e processando pedidos por côordenadas dos lugares.....");
 		int cpt = 1, percent = 0, tmpPercent, id;
+		InsertBuffer insertBuffer = databaseManager.getInsertBuffer();
+		List<Location> inserted = new ArrayList<Location>();
 		for (Location l : locations)
 		{
 			//Request for geographic coordinates
@@ -368,6 +478,7 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 			{
 				try
 				{
+					metrics.increment(Metrics.GEOCODING_REQUESTS);
 					GoogleGeocode.geocode(l);
 				}
 				catch (OverQueryLimitException e)
@@ -382,40 +493,14 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 							+ " não pode ser encontrado. (Not found location)");
 				}
 			}
-			//Check if the localisation is in the database
-			try
+			// The schedulings of a batch share the database, a location must only be inserted once
+			synchronized (databaseManager)
 			{
-				id = databaseManager.getLocationId(l);
-			}
-			catch(SQLException e)
-			{
-				try
-				{
-					databaseManager.close();
-				}
-				catch(SQLException e1) {}
-				throw new BusSchedulingException("O pedido à base de dados voltou um erro. (Error encountered while requesting database)");
-			}
-			
-			//Validation of geographic coordinates and insertion in database
-			if(id == DatabaseManager.UNSET_VALUE)
-			{
-				if(!isGeolocalisationCorrect(l.getLatitude(), l.getLongitude()))
-				{
-					String message = "'" + l.getAddress() + "'\nnão pode ser encontrado. Obrigado entrar novas côordenadas.";
-					LocationNotFoundFrame frame = new LocationNotFoundFrame(processFrame, message);
-					
-					if(frame.isCanceled())
-						throw new BusSchedulingException("Tratamento parado pelo utilizador. (Process stopped by user)");
-					
-					l.setLatitude(frame.getLatitude());
-					l.setLongitude(frame.getLongitude());
-					l.setCoordinatesFilled(false);
-				}
-				
+				//Check if the localisation is in the database
 				try
 				{
-					databaseManager.insertLocation(l);
+					metrics.increment(Metrics.DATABASE_QUERIES);
+					id = databaseManager.getLocationId(l);
 				}
 				catch(SQLException e)
 				{
@@ -424,26 +509,32 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 						databaseManager.close();
 					}
 					catch(SQLException e1) {}
-					throw new BusSchedulingException("A inserção do lugar " + l.getAddress()
-							+ " na base de dados voltou um erro. (Error encountered while inserting this location in database)");
-				}
-				
-				try
-				{
-					id = databaseManager.getLocationId(l);
+					throw new BusSchedulingException("O pedido à base de dados voltou um erro. (Error encountered while requesting database)");
 				}
-				catch(SQLException e)
+			
+				//Validation of geographic coordinates and insertion in database once all the locations are known
+				if(id == DatabaseManager.UNSET_VALUE)
 				{
-					try
+					if(!isGeolocalisationCorrect(l.getLatitude(), l.getLongitude()))
 					{
-						databaseManager.close();
+						String message = "'" + l.getAddress() + "'\nnão pode ser encontrado. Obrigado entrar novas côordenadas.";
+					
+						if(locationCorrector == null)
+							throw new BusSchedulingException("O lugar " + l.getAddress()
+									+ " não pode ser encontrado em Joinville. (Location found outside of Joinville)");
+						if(!locationCorrector.correctLocation(l, message))
+							throw new BusSchedulingException("Tratamento parado pelo utilizador. (Process stopped by user)");
 					}
-					catch(SQLException e1) {}
-					throw new BusSchedulingException("O pedido à base de dados voltou um erro. (Error encountered while requesting database)");
+				
+					insertBuffer.addLocation(l);
+					inserted.add(l);
+				}
+				else
+				{
+					metrics.increment(Metrics.LOCATIONS_CACHE_HITS);
 				}
+				l.setId(id);
 			}
-			
-			l.setId(id);
 
 			tmpPercent = 5 * cpt / locations.length;
 			if (tmpPercent != percent)
@@ -455,6 +546,41 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 				System.out.println();
 			++cpt;
 		}
+
+		// The new locations are inserted by batches, then their ids are read
+		synchronized (databaseManager)
+		{
+			try
+			{
+				metrics.add(Metrics.DATABASE_QUERIES, insertBuffer.flushLocations());
+			}
+			catch(SQLException e)
+			{
+				try
+				{
+					databaseManager.close();
+				}
+				catch(SQLException e1) {}
+				throw new BusSchedulingException("A inserção dos lugares na base de dados voltou um erro. (Error encountered while inserting the locations in database)");
+			}
+			for (Location l : inserted)
+			{
+				try
+				{
+					metrics.increment(Metrics.DATABASE_QUERIES);
+					l.setId(databaseManager.getLocationId(l));
+				}
+				catch(SQLException e)
+				{
+					try
+					{
+						databaseManager.close();
+					}
+					catch(SQLException e1) {}
+					throw new BusSchedulingException("O pedido à base de dados voltou um erro. (Error encountered while requesting database)");
+				}
+			}
+		}
 		System.out.println("Feito.");
 	}
 
@@ -506,13 +632,34 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 	 */
 	private void parseXLSConfiguration() throws BiffException, IOException, BusSchedulingException
 	{
+		// The configuration given by a batch is already parsed
+		if (sharedConfiguration)
+			return;
+
 		System.out.print("Carregamento da configuração.....");
 
+		bus = loadConfiguration(xlsParser, configurationFile, traffic);
+
+		System.out.println("Feito.");
+	}
+
+	/** 
+	 * Parse a configuration XLS file and apply its times to the solver data
+	 * @param xlsParser The parser to use
+	 * @param configurationFile The configuration file
+	 * @param traffic The traffic information to fill
+	 * @return The bus of the configuration
+	 * @throws BusSchedulingException 
+	 * @throws IOException 
+	 * @throws BiffException 
+	 */
+	public static Bus[] loadConfiguration(XLSParser xlsParser, File configurationFile, TrafficInformation traffic)
+			throws BiffException, IOException, BusSchedulingException
+	{
 		Integer[] times = new Integer[6];
 		List<Bus> tmpBus = new ArrayList<Bus>();
 		
 		xlsParser.parseConfiguration(configurationFile, times, tmpBus, traffic);
-		bus = tmpBus.toArray(new Bus[tmpBus.size()]);
 		try
 		{
 			SolverData.setBasicAdditionalTime(times[0]);
@@ -526,8 +673,7 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 		{
 			throw new BusSchedulingException(e.getMessage());
 		}
-
-		System.out.println("Feito.");
+		return tmpBus.toArray(new Bus[tmpBus.size()]);
 	}
 
 	/** 
@@ -612,11 +758,26 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 		System.out.print("Começando a busca do repartition do ônibus.....");
 
 		SolverData data = new SolverData(matrix, paths, Arrays.asList(bus), traffic);
-		minMaxAntSystem = new MinMaxAntSystem(data, new SolverParameters(matrix));
-		minMaxAntSystem.setBusScheduling(this);
-		minMaxAntSystem.solve();
+		SolverParameters parameters = new SolverParameters(matrix);
+		// One colony building its constructions on every processor, unless the options say otherwise
+		parameters.setThreadsNumber(Runtime.getRuntime().availableProcessors());
+		try
+		{
+			for (Map.Entry<String, String> option : solverOptions.entrySet())
+			{
+				parameters.setParameter(option.getKey(), option.getValue());
+			}
+		}
+		catch(IllegalArgumentException e)
+		{
+			throw new BusSchedulingException(e.getMessage());
+		}
+		antSystem = new MultiColonySystem(data, parameters);
+		antSystem.setBusScheduling(this);
+		antSystem.setMetrics(metrics);
+		antSystem.solve();
 
-		System.out.println("Feito.");
+		System.out.println("Feito. (" + antSystem.getStopCriterion() + ")");
 	}
 
 	/**
@@ -627,7 +788,7 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 	{
 		System.out.print("Salvaguarda dos resultados.....");
 
-		xlsParser.writeResults(XLS_RESULTS_MODEL, resultsFile, bus, minMaxAntSystem.getBestPartition());
+		xlsParser.writeResults(XLS_RESULTS_MODEL, resultsFile, bus, antSystem.getBestPartition());
 
 		System.out.println("Feito.");
 	}
@@ -641,7 +802,11 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 	{
 		System.out.print("Salvaguarda dos côordenadas.....");
 
-		xlsParser.writeConfigurationCoordinates(configurationFile, bus);
+		// The coordinates of a shared configuration are saved once by the batch
+		if (!sharedConfiguration)
+		{
+			xlsParser.writeConfigurationCoordinates(configurationFile, bus);
+		}
 		xlsParser.writePathsCoordinates(pathsFile, paths);
 
 		System.out.println("Feito.");
@@ -771,18 +936,115 @@ public class BusScheduling extends Thread implements ProgressionInvoker
 	 * Return the antSystem 
 	 * @return The antSystem 
 	 */
-	public MinMaxAntSystem getMinMaxAntSystem()
+	public MultiColonySystem getAntSystem()
 	{
-		return minMaxAntSystem;
+		return antSystem;
 	}
 
 	/** 
 	 * Update the antSystem 
 	 * @param antSystem The antSystem 
 	 */
-	public void setMinMaxAntSystem(MinMaxAntSystem antSystem)
+	public void setAntSystem(MultiColonySystem antSystem)
+	{
+		this.antSystem = antSystem;
+	}
+
+	/**
+	 * Set a solver parameter, applied after the automatic parameters
+	 * @param name The name of the parameter, as accepted by SolverParameters.setParameter
+	 * @param value The value of the parameter
+	 */
+	public void setSolverOption(String name, String value)
+	{
+		solverOptions.put(name, value);
+	}
+
+	/**
+	 * Return the duration in milliseconds of each phase done, in the order of the phases
+	 * @return The phases durations
+	 */
+	public Map<String, Long> getPhaseTimes()
+	{
+		return metrics.getPhaseTimes();
+	}
+
+	/**
+	 * Return the metrics of this scheduling
+	 * @return The metrics
+	 */
+	public Metrics getMetrics()
+	{
+		return metrics;
+	}
+
+	/**
+	 * Return true if every phase has been done, false if the process failed or has been interrupted
+	 * @return true if every phase has been done, false else
+	 */
+	public boolean isSucceeded()
+	{
+		return succeeded;
+	}
+
+	/**
+	 * Use a configuration already parsed instead of parsing the configuration file.
+	 * The locations of the configuration must be resolved by resolveConfigurationLocations before the scheduling
+	 * is run, they are then not modified, and their coordinates are not saved in the configuration file.
+	 * @param bus The bus of the configuration
+	 * @param traffic The traffic information of the configuration
+	 */
+	public void setConfiguration(Bus[] bus, TrafficInformation traffic)
+	{
+		this.bus = bus;
+		this.traffic = traffic;
+		this.sharedConfiguration = true;
+	}
+
+	/**
+	 * Return the distance cache
+	 * @return The distance cache
+	 */
+	public DistanceCache getDistanceCache()
+	{
+		return distanceCache;
+	}
+
+	/**
+	 * Update the distance cache, so that it is shared with other schedulings
+	 * @param distanceCache The distance cache
+	 */
+	public void setDistanceCache(DistanceCache distanceCache)
+	{
+		this.distanceCache = distanceCache;
+	}
+
+	/**
+	 * Update the closeDatabase value
+	 * @param closeDatabase true to close the database connection at the end of the scheduling, false if it is shared
+	 */
+	public void setCloseDatabase(boolean closeDatabase)
+	{
+		this.closeDatabase = closeDatabase;
+	}
+
+	/**
+	 * Update the unregisterMetrics value
+	 * @param unregisterMetrics true to unregister the metrics at the end of the scheduling,
+	 * false to keep them published until the caller unregisters them
+	 */
+	public void setUnregisterMetrics(boolean unregisterMetrics)
+	{
+		this.unregisterMetrics = unregisterMetrics;
+	}
+
+	/**
+	 * Update the name under which the metrics are registered in the platform MBean server
+	 * @param metricsName The object name
+	 */
+	public void setMetricsName(String metricsName)
 	{
-		this.minMaxAntSystem = antSystem;
+		this.metricsName = metricsName;
 	}
 
 	/**
@@ -0,0 +1,376 @@
+package application;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import locationsData.Location;
+import dataLoader.DatabaseManager;
+import dataLoader.DistanceFetcher;
+import dataLoader.GoogleDistances;
+import dataLoader.InsertBuffer;
+
+/**
+ *  Headless entry point of the Bus Scheduling program, used to run the scheduling in batch.
+ *  The same phases as the graphical user interface are run, without loading any graphical class.
+ *  The messages of the phases are printed on the error stream, the standard output only contains
+ *  one line by phase done and a status line, as key=value pairs.
+ *  With several --job options the jobs are run by a batch sharing the configuration and the distances,
+ *  the lines of each job being prefixed by its number.
+ *  The exit code is 0 if the results files have been written, another value else.
+ */
+public class CommandLine
+{
+	/** Exit code when the results file has been written */
+	public static final int EXIT_SUCCESS = 0;
+
+	/** Exit code when a phase of the scheduling failed */
+	public static final int EXIT_FAILURE = 1;
+
+	/** Exit code when the arguments are invalid */
+	public static final int EXIT_USAGE = 2;
+
+	/** Exit code when the database can't be used */
+	public static final int EXIT_DATABASE = 3;
+
+	/** Stop the process when a location is found outside of Joinville */
+	public static final String MISSING_COORDINATES_FAIL = "fail";
+
+	/** Keep the coordinates found by Google when a location is found outside of Joinville */
+	public static final String MISSING_COORDINATES_SKIP = "skip";
+
+	/** Arguments description */
+	private static final String USAGE = "Uso (usage) : application.CommandLine --config <file> --paths <file> --results <file>"
+			+ " [--sheet <n>] [--job <paths file> <sheet> <results file>]... [--workers <n>] [--subscription]"
+			+ " [--transaction-size <n>] [--distances-url <url>] [--distance-requests <n>]"
+			+ " [--missing-coordinates fail|skip] [--metrics <file>] [--<solver parameter> <value>]...\n"
+			+ "Solver parameters : iterations, constructions, evaporate-rate, threads, candidates, local-search-passes,"
+			+ " time-limit, stall-iterations, target-delay, colonies, migration-interval, feasibility-slack, seed";
+
+	/**
+	 * Run the scheduling and exit with its status
+	 * @param args The options
+	 */
+	public static void main(String[] args)
+	{
+		System.setProperty("java.awt.headless", "true");
+		System.exit(run(args, System.out));
+	}
+
+	/**
+	 * Run the scheduling with the given options
+	 * @param args The options
+	 * @param out The stream where the phases durations and the status are printed
+	 * @return The exit code
+	 */
+	public static int run(String[] args, PrintStream out)
+	{
+		File configFile = null, pathsFile = null, resultsFile = null, metricsFile = null;
+		int sheet = 0, workers = 1, transactionSize = InsertBuffer.DEFAULT_TRANSACTION_SIZE,
+				distanceRequests = DistanceFetcher.DEFAULT_REQUESTS_IN_FLIGHT;
+		boolean subscription = false;
+		String missingCoordinates = MISSING_COORDINATES_FAIL, name, distancesURL = GoogleDistances.DEFAULT_SERVICE_URL;
+		Map<String, String> solverOptions = new LinkedHashMap<String, String>();
+		List<BatchScheduling.Job> jobs = new ArrayList<BatchScheduling.Job>();
+		LocationCorrector locationCorrector;
+		BusScheduling busScheduling;
+		PrintStream standardOutput = System.out;
+		long start = System.nanoTime();
+
+		try
+		{
+			for (int i = 0 ; i < args.length ; ++i)
+			{
+				if (!args[i].startsWith("--"))
+					throw new IllegalArgumentException("Argumento inválido (invalid argument) : " + args[i]);
+				name = args[i].substring(2);
+				if (name.equals("subscription"))
+				{
+					subscription = true;
+					continue;
+				}
+				if (i + (name.equals("job") ? 3 : 1) >= args.length)
+					throw new IllegalArgumentException("Valor ausente (missing value) : " + args[i]);
+				++i;
+				if (name.equals("config"))
+					configFile = new File(args[i]);
+				else if (name.equals("paths"))
+					pathsFile = new File(args[i]);
+				else if (name.equals("results"))
+					resultsFile = new File(args[i]);
+				else if (name.equals("sheet"))
+					sheet = Integer.parseInt(args[i]);
+				else if (name.equals("job"))
+				{
+					jobs.add(new BatchScheduling.Job(new File(args[i]), Integer.parseInt(args[i + 1]), new File(args[i + 2])));
+					i += 2;
+				}
+				else if (name.equals("workers"))
+					workers = Integer.parseInt(args[i]);
+				else if (name.equals("transaction-size"))
+					transactionSize = Integer.parseInt(args[i]);
+				else if (name.equals("distances-url"))
+					distancesURL = args[i];
+				else if (name.equals("distance-requests"))
+					distanceRequests = Integer.parseInt(args[i]);
+				else if (name.equals("metrics"))
+					metricsFile = new File(args[i]);
+				else if (name.equals("missing-coordinates"))
+					missingCoordinates = args[i];
+				else
+					solverOptions.put(name, args[i]);
+			}
+			// The paths and results files given alone are the first job of a batch
+			if (pathsFile != null && resultsFile != null && !jobs.isEmpty())
+			{
+				jobs.add(0, new BatchScheduling.Job(pathsFile, sheet, resultsFile));
+			}
+			if (configFile == null || (jobs.isEmpty() && (pathsFile == null || resultsFile == null)))
+				throw new IllegalArgumentException("Os ficheiros de configuração, de trajetos e de resultados são obrigatórios."
+						+ " (The configuration, paths and results files are required)");
+			if (!configFile.isFile())
+				throw new IllegalArgumentException("Ficheiro não encontrado. (File not found) : " + configFile);
+			if (jobs.isEmpty() && !pathsFile.isFile())
+				throw new IllegalArgumentException("Ficheiro não encontrado. (File not found) : " + pathsFile);
+			for (BatchScheduling.Job job : jobs)
+			{
+				if (!job.getPathsFile().isFile())
+					throw new IllegalArgumentException("Ficheiro não encontrado. (File not found) : " + job.getPathsFile());
+			}
+			if (workers < 1)
+				throw new IllegalArgumentException("Valor inválido (invalid value) : --workers " + workers);
+			if (transactionSize < 1)
+				throw new IllegalArgumentException("Valor inválido (invalid value) : --transaction-size " + transactionSize);
+			if (distanceRequests < 1)
+				throw new IllegalArgumentException("Valor inválido (invalid value) : --distance-requests " + distanceRequests);
+			if (!missingCoordinates.equals(MISSING_COORDINATES_FAIL) && !missingCoordinates.equals(MISSING_COORDINATES_SKIP))
+				throw new IllegalArgumentException("Valor inválido (invalid value) : --missing-coordinates " + missingCoordinates);
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			printStatus(out, "usage", EXIT_USAGE, start);
+			return EXIT_USAGE;
+		}
+		locationCorrector = missingCoordinates.equals(MISSING_COORDINATES_SKIP) ? new SkippingLocationCorrector() : null;
+		GoogleDistances.setServiceURL(distancesURL);
+		GoogleDistances.setRequestsInFlight(distanceRequests);
+
+		try
+		{
+			DatabaseManager.getInstance().getInsertBuffer().setTransactionSize(transactionSize);
+		}
+		catch (Exception e)
+		{
+			System.err.println("A conexão ao base de dados voltou um erro. (The database connection has failed) : " + e.getMessage());
+			printStatus(out, "database", EXIT_DATABASE, start);
+			return EXIT_DATABASE;
+		}
+
+		if (!jobs.isEmpty())
+			return runBatch(configFile, subscription, workers, locationCorrector, jobs, solverOptions, metricsFile, out,
+					start);
+
+		try
+		{
+			busScheduling = new BusScheduling(configFile, pathsFile, sheet, resultsFile, subscription, locationCorrector);
+		}
+		catch (Exception e)
+		{
+			System.err.println("A conexão ao base de dados voltou um erro. (The database connection has failed) : " + e.getMessage());
+			printStatus(out, "database", EXIT_DATABASE, start);
+			return EXIT_DATABASE;
+		}
+
+		for (Map.Entry<String, String> option : solverOptions.entrySet())
+		{
+			busScheduling.setSolverOption(option.getKey(), option.getValue());
+		}
+
+		// The messages of the phases mustn't be mixed with the machine readable output
+		System.setOut(System.err);
+		try
+		{
+			busScheduling.run();
+		}
+		catch (RuntimeException e)
+		{
+			Main.saveLog(e);
+			System.err.println("O programa encontrou um erro interno. (The program has encountered an internal error) : " + e);
+		}
+		finally
+		{
+			System.setOut(standardOutput);
+		}
+
+		printPhases(out, "", busScheduling);
+		if (metricsFile != null)
+		{
+			writeMetrics(metricsFile, busScheduling.getMetrics().getJSON());
+		}
+		if (!busScheduling.isSucceeded())
+		{
+			printStatus(out, "failure", EXIT_FAILURE, start);
+			return EXIT_FAILURE;
+		}
+		printStatus(out, "success", EXIT_SUCCESS, start);
+		return EXIT_SUCCESS;
+	}
+
+	/**
+	 * Run several jobs sharing the configuration, the database connection and the distances
+	 * @param configFile Configuration input file
+	 * @param subscription true if a Google Business subscription is owned, false else
+	 * @param workers Maximum number of jobs run at the same time
+	 * @param locationCorrector Correction of the locations found outside of Joinville, null to stop the job
+	 * @param jobs The jobs
+	 * @param solverOptions The solver parameters by name
+	 * @param metricsFile The file where the metrics of the jobs are written as a JSON array, null to not write them
+	 * @param out The stream where the phases durations and the status are printed
+	 * @param start The start time of the program, in nanoseconds
+	 * @return The exit code
+	 */
+	private static int runBatch(File configFile, boolean subscription, int workers, LocationCorrector locationCorrector,
+			List<BatchScheduling.Job> jobs, Map<String, String> solverOptions, File metricsFile, PrintStream out, long start)
+	{
+		BatchScheduling batch = new BatchScheduling(configFile, subscription, workers, locationCorrector);
+		PrintStream standardOutput = System.out;
+		StringBuilder json = new StringBuilder("[");
+		BatchScheduling.Job job;
+		int failures;
+
+		for (BatchScheduling.Job j : jobs)
+		{
+			batch.addJob(j.getPathsFile(), j.getSheet(), j.getResultsFile());
+		}
+		for (Map.Entry<String, String> option : solverOptions.entrySet())
+		{
+			batch.setSolverOption(option.getKey(), option.getValue());
+		}
+
+		// The messages of the phases mustn't be mixed with the machine readable output
+		System.setOut(System.err);
+		try
+		{
+			failures = batch.run();
+		}
+		catch (BusSchedulingException e)
+		{
+			System.err.println(e.getMessage());
+			printStatus(out, "failure", EXIT_FAILURE, start);
+			return EXIT_FAILURE;
+		}
+		catch (InterruptedException e)
+		{
+			printStatus(out, "failure", EXIT_FAILURE, start);
+			return EXIT_FAILURE;
+		}
+		finally
+		{
+			System.setOut(standardOutput);
+		}
+
+		for (int i = 0 ; i < batch.getJobs().size() ; i++)
+		{
+			job = batch.getJobs().get(i);
+			printPhases(out, "job=" + (i + 1) + " ", job.getBusScheduling());
+			out.println(String.format(Locale.ROOT, "job=%d status=%s", i + 1, job.isSucceeded() ? "success" : "failure"));
+			json.append(i > 0 ? "," : "").append(job.getBusScheduling().getMetrics().getJSON());
+		}
+		if (metricsFile != null)
+		{
+			writeMetrics(metricsFile, json.append("]").toString());
+		}
+		if (failures > 0)
+		{
+			printStatus(out, "failure", EXIT_FAILURE, start);
+			return EXIT_FAILURE;
+		}
+		printStatus(out, "success", EXIT_SUCCESS, start);
+		return EXIT_SUCCESS;
+	}
+
+	/**
+	 * Print the duration of each phase done by a scheduling
+	 * @param out The output stream
+	 * @param prefix The prefix of each line
+	 * @param busScheduling The scheduling
+	 */
+	private static void printPhases(PrintStream out, String prefix, BusScheduling busScheduling)
+	{
+		for (Map.Entry<String, Long> phase : busScheduling.getPhaseTimes().entrySet())
+		{
+			out.println(String.format(Locale.ROOT, "%sphase=%s millis=%d", prefix, phase.getKey(), phase.getValue()));
+		}
+	}
+
+	/**
+	 * Write metrics as JSON, an error only being printed if the file can't be written
+	 * @param file The output file
+	 * @param json The metrics as JSON
+	 */
+	private static void writeMetrics(File file, String json)
+	{
+		try
+		{
+			Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+			try
+			{
+				writer.write(json);
+				writer.write('\n');
+			}
+			finally
+			{
+				writer.close();
+			}
+		}
+		catch (IOException e)
+		{
+			System.err.println("As métricas não podem ser salvadas. (The metrics can't be saved) : " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Print the status line
+	 * @param out The output stream
+	 * @param status The status
+	 * @param exitCode The exit code
+	 * @param start The start time of the program, in nanoseconds
+	 */
+	private static void printStatus(PrintStream out, String status, int exitCode, long start)
+	{
+		out.println(String.format(Locale.ROOT, "status=%s exit=%d millis=%d", status, exitCode,
+				(System.nanoTime() - start) / 1000000));
+		out.flush();
+	}
+
+	/**
+	 * Correction keeping the coordinates found by Google, the location is only reported
+	 */
+	private static class SkippingLocationCorrector implements LocationCorrector
+	{
+		/**
+		 * Keep the coordinates of the location
+		 * @param location The location found outside of Joinville
+		 * @param message The message describing the problem
+		 * @return true
+		 * @see application.LocationCorrector#correctLocation(locationsData.Location, java.lang.String)
+		 */
+		@Override
+		public boolean correctLocation(Location location, String message)
+		{
+			System.err.println("\nCuidado (warning) : " + message.replace('\n', ' ')
+					+ " (" + location.getLatitude() + ", " + location.getLongitude() + ")");
+			return true;
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package application;
+
+import locationsData.Location;
+
+/**
+ *  Correction of the coordinates of a location found by Google outside of Joinville.
+ *  The graphical user interface asks the coordinates to the user, the command line applies a policy,
+ *  so that the scheduling doesn't depend on the presentation.
+ */
+public interface LocationCorrector
+{
+	/**
+	 * Correct the coordinates of a location
+	 * @param location the location whose coordinates are wrong, its coordinates are updated if they are corrected
+	 * @param message the message describing the problem
+	 * @return true if the location can be used, false if the process must be stopped
+	 */
+	public abstract boolean correctLocation(Location location, String message);
+}
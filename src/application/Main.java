@@ -17,11 +17,17 @@ public class Main
 	private static final String LOG_PATH = "resources/errorLog";
 	
 	/**
-	 *  Main function, launching the Bus Scheduling program
-	 * @param args Unused
+	 *  Main function, launching the Bus Scheduling program.
+	 *  Without arguments the graphical user interface is opened, else the scheduling is run from the command line.
+	 * @param args The command line options, see CommandLine
 	 */
 	public static void main(String[] args)
 	{
+		if (args.length > 0)
+		{
+			CommandLine.main(args);
+			return;
+		}
 		try
 		{
 			new GraphicalUserInterface();
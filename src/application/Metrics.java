@@ -0,0 +1,276 @@
+package application;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ *  Registry of the metrics of a scheduling: duration of each phase, counters (database queries, Google requests,
+ *  cache hits, constructions...) and series (best delay after each iteration...).
+ *  The metrics can be updated by several threads at the same time. They are exported as JSON or through JMX.
+ */
+public class Metrics implements MetricsMXBean
+{
+	/** Name under which the metrics of the current scheduling are registered in the platform MBean server */
+	public static final String OBJECT_NAME = "application:type=Metrics";
+
+	/** Number of queries sent to the database */
+	public static final String DATABASE_QUERIES = "database.queries";
+
+	/** Number of requests sent to the Google Geocoding API */
+	public static final String GEOCODING_REQUESTS = "google.geocoding-requests";
+
+	/** Number of requests sent to the Google Distance Matrix API */
+	public static final String DISTANCE_REQUESTS = "google.distance-requests";
+
+	/** Number of elements (origins x destinations) asked to the Google Distance Matrix API */
+	public static final String DISTANCE_ELEMENTS = "google.distance-elements";
+
+	/** Number of locations whose coordinates were already in the database */
+	public static final String LOCATIONS_CACHE_HITS = "database.locations-cache-hits";
+
+	/** Number of distances which were already in the database */
+	public static final String DISTANCES_CACHE_HITS = "database.distances-cache-hits";
+
+	/** Number of distances which were already in the memory cache shared by the schedulings */
+	public static final String MEMORY_CACHE_HITS = "memory.distances-cache-hits";
+
+	/** Number of rows read in the spreadsheets */
+	public static final String ROWS_READ = "xls.rows-read";
+
+	/** Number of routes written in the results spreadsheet */
+	public static final String ROUTES_WRITTEN = "xls.routes-written";
+
+	/** Number of iterations done by the solver */
+	public static final String ITERATIONS = "solver.iterations";
+
+	/** Number of constructions built by the solver */
+	public static final String CONSTRUCTIONS = "solver.constructions";
+
+	/** Number of improvements of the best partition */
+	public static final String IMPROVEMENTS = "solver.improvements";
+
+	/** Number of best partitions received from another colony which were better */
+	public static final String MIGRATIONS = "solver.migrations";
+
+	/** Prefix of the series of the best delay after each iteration, followed by the colony index */
+	public static final String BEST_DELAY = "solver.best-delay.colony-";
+
+	/** Metrics registered in the platform MBean server by object name, guarded by the class */
+	private static Map<ObjectName, Metrics> registeredMetrics = new HashMap<ObjectName, Metrics>();
+
+	/** Name under which these metrics are registered, null if they aren't */
+	private ObjectName objectName;
+
+	/** Duration of each phase in milliseconds */
+	private Map<String, Long> phaseTimes = Collections.synchronizedMap(new LinkedHashMap<String, Long>());
+
+	/** Counters by name */
+	private ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+
+	/** Series by name */
+	private ConcurrentMap<String, List<Long>> series = new ConcurrentHashMap<String, List<Long>>();
+
+	/**
+	 * Save the duration of a phase
+	 * @param phase the name of the phase
+	 * @param millis the duration in milliseconds
+	 */
+	public void setPhaseTime(String phase, long millis)
+	{
+		phaseTimes.put(phase, millis);
+	}
+
+	/**
+	 * Add one to a counter
+	 * @param counter the name of the counter
+	 */
+	public void increment(String counter)
+	{
+		add(counter, 1);
+	}
+
+	/**
+	 * Add a value to a counter
+	 * @param counter the name of the counter
+	 * @param value the value to add
+	 */
+	public void add(String counter, long value)
+	{
+		AtomicLong count = counters.get(counter);
+		if (count == null)
+		{
+			counters.putIfAbsent(counter, new AtomicLong());
+			count = counters.get(counter);
+		}
+		count.addAndGet(value);
+	}
+
+	/**
+	 * Return the value of a counter
+	 * @param counter the name of the counter
+	 * @return the value, 0 if nothing was added to the counter
+	 */
+	public long getCount(String counter)
+	{
+		AtomicLong count = counters.get(counter);
+		return count == null ? 0 : count.get();
+	}
+
+	/**
+	 * Add a value at the end of a series
+	 * @param name the name of the series
+	 * @param value the value to add
+	 */
+	public void addValue(String name, long value)
+	{
+		List<Long> values = series.get(name);
+		if (values == null)
+		{
+			series.putIfAbsent(name, Collections.synchronizedList(new ArrayList<Long>()));
+			values = series.get(name);
+		}
+		values.add(value);
+	}
+
+	/**
+	 * @see application.MetricsMXBean#getPhaseTimes()
+	 */
+	@Override
+	public Map<String, Long> getPhaseTimes()
+	{
+		synchronized (phaseTimes)
+		{
+			return new LinkedHashMap<String, Long>(phaseTimes);
+		}
+	}
+
+	/**
+	 * @see application.MetricsMXBean#getCounters()
+	 */
+	@Override
+	public Map<String, Long> getCounters()
+	{
+		Map<String, Long> values = new TreeMap<String, Long>();
+		for (Map.Entry<String, AtomicLong> counter : counters.entrySet())
+		{
+			values.put(counter.getKey(), counter.getValue().get());
+		}
+		return values;
+	}
+
+	/**
+	 * @see application.MetricsMXBean#getSeries()
+	 */
+	@Override
+	public Map<String, long[]> getSeries()
+	{
+		Map<String, long[]> values = new TreeMap<String, long[]>();
+		long[] array;
+		for (Map.Entry<String, List<Long>> s : series.entrySet())
+		{
+			synchronized (s.getValue())
+			{
+				array = new long[s.getValue().size()];
+				for (int i = 0 ; i < array.length ; i++)
+				{
+					array[i] = s.getValue().get(i);
+				}
+			}
+			values.put(s.getKey(), array);
+		}
+		return values;
+	}
+
+	/**
+	 * @see application.MetricsMXBean#getJSON()
+	 */
+	@Override
+	public String getJSON()
+	{
+		Map<String, Object> root = new LinkedHashMap<String, Object>();
+		root.put("phases", getPhaseTimes());
+		root.put("counters", getCounters());
+		root.put("series", getSeries());
+		try
+		{
+			return new ObjectMapper().writeValueAsString(root);
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException("The metrics can't be written as JSON.", e);
+		}
+	}
+
+	/**
+	 * Register these metrics in the platform MBean server, replacing the metrics of the previous scheduling
+	 * @throws JMException if the metrics can't be registered
+	 */
+	public void register() throws JMException
+	{
+		register(OBJECT_NAME);
+	}
+
+	/**
+	 * Register these metrics in the platform MBean server under the given name,
+	 * replacing the metrics previously registered under this name
+	 * @param objectName the object name, such as "application:type=Metrics,job=1"
+	 * @throws JMException if the metrics can't be registered
+	 */
+	public void register(String objectName) throws JMException
+	{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(objectName);
+
+		synchronized (Metrics.class)
+		{
+			if (server.isRegistered(name))
+			{
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(this, name);
+			registeredMetrics.put(name, this);
+			this.objectName = name;
+		}
+	}
+
+	/**
+	 * Unregister these metrics from the platform MBean server.
+	 * Nothing is done if they aren't registered or if other metrics replaced them under their name.
+	 * @throws JMException if the metrics can't be unregistered
+	 */
+	public void unregister() throws JMException
+	{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+		synchronized (Metrics.class)
+		{
+			if (objectName == null)
+				return;
+			if (registeredMetrics.get(objectName) == this)
+			{
+				registeredMetrics.remove(objectName);
+				if (server.isRegistered(objectName))
+				{
+					server.unregisterMBean(objectName);
+				}
+			}
+			objectName = null;
+		}
+	}
+}
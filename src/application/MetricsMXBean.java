@@ -0,0 +1,33 @@
+package application;
+
+import java.util.Map;
+
+/**
+ *  Management interface of the metrics of a scheduling, read through JMX
+ */
+public interface MetricsMXBean
+{
+	/**
+	 * Return the duration in milliseconds of each phase done, in the order of the phases
+	 * @return the phases durations
+	 */
+	public abstract Map<String, Long> getPhaseTimes();
+
+	/**
+	 * Return the value of each counter
+	 * @return the counters by name
+	 */
+	public abstract Map<String, Long> getCounters();
+
+	/**
+	 * Return the values of each series, in the order they were added
+	 * @return the series by name
+	 */
+	public abstract Map<String, long[]> getSeries();
+
+	/**
+	 * Return all the metrics as a JSON object
+	 * @return the JSON object
+	 */
+	public abstract String getJSON();
+}
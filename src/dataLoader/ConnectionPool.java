@@ -0,0 +1,258 @@
+package dataLoader;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ *  Bounded pool of database connections shared by the threads. The connections are opened when needed,
+ *  validated before being reused after a pause, and closed after staying idle too long.
+ *  A thread asking for a connection while all of them are used waits for a release.
+ */
+public class ConnectionPool
+{
+	/** Default maximum number of connections opened at the same time */
+	public static final int DEFAULT_MAXIMUM_SIZE = 8;
+
+	/** Default time after which an idle connection is closed, in milliseconds */
+	public static final long DEFAULT_IDLE_TIMEOUT = 60000;
+
+	/** Default maximum time waited for a free connection, in milliseconds */
+	public static final long DEFAULT_CHECKOUT_TIMEOUT = 30000;
+
+	/** Default time after which an idle connection is validated before being reused, in milliseconds */
+	public static final long DEFAULT_VALIDATION_INTERVAL = 5000;
+
+	/** Maximum time waited for the answer of the database to a validation, in seconds */
+	private static final int VALIDATION_TIMEOUT = 2;
+
+	/** Database url */
+	private String url;
+
+	/** User login */
+	private String login;
+
+	/** User password */
+	private String password;
+
+	/** Maximum number of connections opened at the same time */
+	private int maximumSize = DEFAULT_MAXIMUM_SIZE;
+
+	/** Time after which an idle connection is closed, in milliseconds */
+	private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+	/** Maximum time waited for a free connection, in milliseconds */
+	private volatile long checkoutTimeout = DEFAULT_CHECKOUT_TIMEOUT;
+
+	/** Time after which an idle connection is validated before being reused, in milliseconds */
+	private volatile long validationInterval = DEFAULT_VALIDATION_INTERVAL;
+
+	/** Idle connections, the last released first */
+	private LinkedList<PooledConnection> idle = new LinkedList<PooledConnection>();
+
+	/** Number of connections opened, idle or used */
+	private int opened = 0;
+
+	/**
+	 * Constructor
+	 * @param url Database url
+	 * @param login User login
+	 * @param password User password
+	 */
+	public ConnectionPool(String url, String login, String password)
+	{
+		this.url = url;
+		this.login = login;
+		this.password = password;
+	}
+
+	/**
+	 * Set the maximum number of connections opened at the same time
+	 * @param maximumSize The number of connections
+	 */
+	public synchronized void setMaximumSize(int maximumSize)
+	{
+		if (maximumSize < 1)
+			throw new IllegalArgumentException("The maximum size must be a strictly positive integer.");
+		this.maximumSize = maximumSize;
+		notifyAll();
+	}
+
+	/**
+	 * Set the time after which an idle connection is closed
+	 * @param idleTimeout The time in milliseconds
+	 */
+	public synchronized void setIdleTimeout(long idleTimeout)
+	{
+		if (idleTimeout < 0)
+			throw new IllegalArgumentException("The idle timeout can't be negative.");
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * Set the maximum time waited for a free connection
+	 * @param checkoutTimeout The time in milliseconds
+	 */
+	public void setCheckoutTimeout(long checkoutTimeout)
+	{
+		if (checkoutTimeout < 0)
+			throw new IllegalArgumentException("The checkout timeout can't be negative.");
+		this.checkoutTimeout = checkoutTimeout;
+	}
+
+	/**
+	 * Set the time after which an idle connection is validated before being reused
+	 * @param validationInterval The time in milliseconds, 0 to validate the connections at each checkout
+	 */
+	public void setValidationInterval(long validationInterval)
+	{
+		if (validationInterval < 0)
+			throw new IllegalArgumentException("The validation interval can't be negative.");
+		this.validationInterval = validationInterval;
+	}
+
+	/**
+	 * Return a connection which must be given back with release. An idle connection is reused if it still
+	 * works, else a new connection is opened if the maximum size isn't reached, else the thread waits.
+	 * The connections are validated and opened without holding the pool, so the other threads aren't blocked
+	 * by a slow database.
+	 * @return The connection
+	 * @throws SQLException If the database connection returns an error or if no connection was released in time
+	 */
+	public PooledConnection getConnection() throws SQLException
+	{
+		PooledConnection connection;
+		long deadline = System.currentTimeMillis() + checkoutTimeout, remaining;
+
+		while (true)
+		{
+			connection = null;
+			synchronized (this)
+			{
+				evictIdleConnections();
+				while (true)
+				{
+					if (!idle.isEmpty())
+					{
+						// The connection is taken out of the idle ones, so no other thread can use it
+						connection = idle.removeFirst();
+						break;
+					}
+					if (opened < maximumSize)
+					{
+						// The place is booked, the connection is opened without holding the pool
+						++opened;
+						break;
+					}
+					remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0)
+						throw new SQLException("No database connection has been released in time.");
+					try
+					{
+						wait(remaining);
+					}
+					catch (InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+						throw new SQLException("Interrupted while waiting for a database connection.", e);
+					}
+				}
+			}
+
+			if (connection == null)
+				return openConnection();
+			if (System.currentTimeMillis() - connection.getLastUse() < validationInterval
+					|| connection.isValid(VALIDATION_TIMEOUT))
+				return connection;
+			connection.close();
+			synchronized (this)
+			{
+				--opened;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Open a new connection, whose place in the pool is already booked
+	 * @return The connection
+	 * @throws SQLException If the database connection returns an error
+	 */
+	private PooledConnection openConnection() throws SQLException
+	{
+		try
+		{
+			return new PooledConnection(DriverManager.getConnection(url, login, password));
+		}
+		catch (SQLException e)
+		{
+			synchronized (this)
+			{
+				--opened;
+				notifyAll();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Give back a connection returned by getConnection, a closed connection is forgotten
+	 * @param connection The connection, it mustn't be used anymore by the caller
+	 */
+	public synchronized void release(PooledConnection connection)
+	{
+		if (connection.isClosed())
+		{
+			--opened;
+		}
+		else
+		{
+			connection.setLastUse();
+			idle.addFirst(connection);
+			evictIdleConnections();
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Close the connections which stayed idle longer than the idle timeout
+	 */
+	private void evictIdleConnections()
+	{
+		long now = System.currentTimeMillis();
+		for (Iterator<PooledConnection> it = idle.descendingIterator() ; it.hasNext() ; )
+		{
+			PooledConnection connection = it.next();
+			if (now - connection.getLastUse() <= idleTimeout)
+				break;
+			it.remove();
+			connection.close();
+			--opened;
+		}
+	}
+
+	/**
+	 * Close all the idle connections. The connections used are kept until their release,
+	 * and the pool opens new connections when asked.
+	 */
+	public synchronized void close()
+	{
+		for (PooledConnection connection : idle)
+		{
+			connection.close();
+			--opened;
+		}
+		idle.clear();
+		notifyAll();
+	}
+
+	/**
+	 * Return the number of connections opened, idle or used
+	 * @return The number of connections
+	 */
+	public synchronized int getOpenedConnections()
+	{
+		return opened;
+	}
+}
@@ -8,8 +8,6 @@
 
 package dataLoader;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -20,8 +18,8 @@ import java.sql.SQLException;
  */
 public class DAO
 {
-	/** The database connection */
-	protected Connection connection;
+	/** The database connections */
+	protected ConnectionPool pool;
 
 	/** Database url */
 	protected String database = "localhost:3306/gidion";
@@ -46,15 +44,17 @@ public class DAO
 	}
 	
 	/**
-	 * Create a connection to the database
+	 * Create the pool of connections to the database and check that a connection can be opened
 	 * @throws ClassNotFoundException If the JDBC driver can't be found
 	 * @throws SQLException If the database connection return an error 
 	 */
 	public void connect() throws ClassNotFoundException, SQLException
 	{
 		Class.forName("com.mysql.jdbc.Driver");
-		String url = "jdbc:mysql://" + database;
-		connection = DriverManager.getConnection(url, login, password);
+		// The driver sends the batches of inserts as multi-rows requests
+		String url = "jdbc:mysql://" + database + "?rewriteBatchedStatements=true";
+		pool = new ConnectionPool(url, login, password);
+		pool.release(pool.getConnection());
 	}
 	
 	/**
@@ -63,13 +63,41 @@ public class DAO
 	 * @throws ClassNotFoundException If the JDBC driver can't be found
 	 * @throws SQLException If the database connection return an error 
 	 */
-	public static DAO getInstance() throws ClassNotFoundException, SQLException
+	public static synchronized DAO getInstance() throws ClassNotFoundException, SQLException
 	{
 		if(instance == null)
 			instance = new DAO();
 		return instance;
 	}
 
+	/**
+	 * Return a connection of the pool, it must be given back with release
+	 * @return The connection
+	 * @throws SQLException If the database connection returns an error or if no connection is available
+	 */
+	public PooledConnection getConnection() throws SQLException
+	{
+		return pool.getConnection();
+	}
+
+	/**
+	 * Give back a connection to the pool
+	 * @param connection The connection returned by getConnection
+	 */
+	public void release(PooledConnection connection)
+	{
+		pool.release(connection);
+	}
+
+	/**
+	 * Return the pool of connections
+	 * @return The connection pool
+	 */
+	public ConnectionPool getPool()
+	{
+		return pool;
+	}
+
 	/**
 	 * Execute an update request on database
 	 * @param ps The prepared statement to execute
@@ -92,22 +120,21 @@ public class DAO
     }
 
 	/**
-	 * Close the database connection
-	 * @throws SQLException If the closing returns an error
+	 * Execute the batch of update requests of a prepared statement
+	 * @param ps The prepared statement to execute
+	 * @return The number of rows updated by each request
+	 * @throws SQLException If a request returns an error
 	 */
-    public void close() throws SQLException
+    public int[] updateBatch(PreparedStatement ps) throws SQLException
     {
-        connection.close();
+        return ps.executeBatch();
     }
 
 	/**
-	 * Return a prepared statement created from a string request
-	 * @param s The request to prepare
-	 * @return The prepared statement
-	 * @throws SQLException If the prepare statement creation returns an error
+	 * Close the idle database connections, the next requests open new ones
 	 */
-    public PreparedStatement prepareStatement(String s) throws SQLException
+    public void close()
     {
-        return connection.prepareStatement(s);
+        pool.close();
     }
 }
@@ -11,11 +11,17 @@ package dataLoader;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import locationsData.DataMatrix;
 import locationsData.Location;
 
 /** 
- * 
+ * Requests of the application to the database. Each request uses a connection of the pool and the
+ * statement prepared by this connection, so the requests of several threads are run at the same time.
  */
 public class DatabaseManager
 {
@@ -25,6 +31,9 @@ public class DatabaseManager
 	/** The DAO used to interact with database */
 	protected DAO dao;
 
+	/** The new rows waiting to be inserted */
+	private InsertBuffer insertBuffer = new InsertBuffer(this);
+
 
 	/** The location table name */
 	protected static final String TABLE_LOCATION = "location";
@@ -63,6 +72,48 @@ public class DatabaseManager
 	
 	/** If the value isn't set */
 	public static final int UNSET_VALUE = -1;
+
+	/** Maximum number of origin locations of a path data bulk request */
+	protected static final int BULK_ORIGINS = 500;
+
+
+	/** INSERT INTO PathData VALUES (?, ?, ?, ?) */
+	private static final String INSERT_PATH_DATA = "INSERT INTO " + TABLE_DATA + " VALUES  (?, ?, ?, ?)";
+
+	/** INSERT INTO Location (Address, Latitude, Longitude, Informations) VALUES (?, ?, ?, ?) */
+	private static final String INSERT_LOCATION = "INSERT INTO " + TABLE_LOCATION + " (" + ADDRESS + ", " + LATITUDE + ", "
+			+ LONGITUDE + ", " + INFORMATIONS + ") VALUES (?, ?, ?, ?)";
+
+	/** SELECT distance FROM PathData WHERE IdOrigin = ? AND IdDestination = ? */
+	private static final String SELECT_DISTANCE = "SELECT " + DISTANCE + " FROM " + TABLE_DATA + " WHERE "
+			+ ID_ORIGIN_LOCATION + " = ? AND " + ID_DESTINATION_LOCATION + " = ?";
+
+	/** SELECT duration FROM PathData WHERE IdOrigin = ? AND IdDestination = ? */
+	private static final String SELECT_DURATION = "SELECT " + DURATION + " FROM " + TABLE_DATA + " WHERE "
+			+ ID_ORIGIN_LOCATION + " = ? AND " + ID_DESTINATION_LOCATION + " = ?";
+
+	/** SELECT count(*) FROM PathData WHERE IdOrigin = ? AND IdDestination = ? */
+	private static final String COUNT_PATH_DATA = "SELECT count(*) FROM " + TABLE_DATA + " WHERE "
+			+ ID_ORIGIN_LOCATION + " = ? AND " + ID_DESTINATION_LOCATION + " = ?";
+
+	/** SELECT IdLocation FROM Location WHERE Latitude = ? AND Longitude = ? */
+	private static final String SELECT_LOCATION_ID = "SELECT " + ID_LOCATION + " FROM " + TABLE_LOCATION + " WHERE "
+			+ LATITUDE + " = ? AND " + LONGITUDE + " = ?";
+
+	/** SELECT Latitude, Longitude FROM Location WHERE IdLocation = ? */
+	private static final String SELECT_LOCATION_COORDINATES = "SELECT " + LATITUDE + ", " + LONGITUDE + " FROM "
+			+ TABLE_LOCATION + " WHERE " + ID_LOCATION + " = ?";
+
+	/** DELETE FROM PathData WHERE IdOrigin = ? OR IdDestination = ? */
+	private static final String DELETE_PATHS_DATA = "DELETE FROM " + TABLE_DATA + " WHERE " + ID_ORIGIN_LOCATION
+			+ " OR " + ID_DESTINATION_LOCATION + " = ?";
+
+	/** DELETE FROM Location WHERE IdLocation = ? */
+	private static final String DELETE_LOCATION = "DELETE FROM " + TABLE_LOCATION + " WHERE " + ID_LOCATION + " = ?";
+
+	/** UPDATE Location SET Address = ? WHERE IdLocation = ? */
+	private static final String UPDATE_LOCATION_ADDRESS = "UPDATE " + TABLE_LOCATION + " SET " + ADDRESS + " = ? WHERE "
+			+ ID_LOCATION + " = ?";
 	
 	/**
 	 * Private constructor
@@ -80,12 +131,10 @@ public class DatabaseManager
 	 * @throws ClassNotFoundException If the JDBC driver can't be found
 	 * @throws SQLException If the database connection return an error 
 	 */
-	public static DatabaseManager getInstance() throws ClassNotFoundException, SQLException
+	public static synchronized DatabaseManager getInstance() throws ClassNotFoundException, SQLException
 	{
 		if(instance == null)
 			instance = new DatabaseManager();
-		if(instance.dao.connection.isClosed())
-			instance.dao.connect();
 		return instance;
 	}
 
@@ -99,15 +148,57 @@ public class DatabaseManager
 	 */
 	public void insertPathData(Location origin, Location destination, int distance, int duration) throws SQLException
 	{
-		// INSERT INTO PathData VALUES (?, ?, ?, ?)
-		StringBuilder query = new StringBuilder().append("INSERT INTO ").append(TABLE_DATA).append(" VALUES ").append(" (?, ?, ?, ?)");
-		PreparedStatement ps = dao.prepareStatement(query.toString());
-        ps.setInt(1, origin.getId());
-        ps.setInt(2, destination.getId());
-        ps.setInt(3, distance);
-        ps.setInt(4, duration);
-        dao.update(ps);
-        ps.close();
+		PooledConnection connection = dao.getConnection();
+		try
+		{
+			PreparedStatement ps = connection.prepareStatement(INSERT_PATH_DATA);
+			ps.setInt(1, origin.getId());
+			ps.setInt(2, destination.getId());
+			ps.setInt(3, distance);
+			ps.setInt(4, duration);
+			dao.update(ps);
+		}
+		finally
+		{
+			dao.release(connection);
+		}
+	}
+
+	/**
+	 * Insert several path data in the path data table with one batch, in a transaction
+	 * @param paths The path data to insert
+	 * @throws SQLException If the request return an error, the transaction is then rolled back
+	 */
+	void insertPathsData(List<InsertBuffer.PathData> paths) throws SQLException
+	{
+		PooledConnection connection = dao.getConnection();
+		try
+		{
+			PreparedStatement ps = connection.prepareStatement(INSERT_PATH_DATA);
+			for (InsertBuffer.PathData path : paths)
+			{
+				ps.setInt(1, path.origin.getId());
+				ps.setInt(2, path.destination.getId());
+				ps.setInt(3, path.distance);
+				ps.setInt(4, path.duration);
+				ps.addBatch();
+			}
+			connection.beginTransaction();
+			try
+			{
+				dao.updateBatch(ps);
+				connection.commit();
+			}
+			catch (SQLException e)
+			{
+				connection.rollback();
+				throw e;
+			}
+		}
+		finally
+		{
+			dao.release(connection);
+		}
 	}
 
 	/**
@@ -117,15 +208,61 @@ public class DatabaseManager
 	 */
 	public void insertLocation(Location loc) throws SQLException
 	{
-		// INSERT INTO Location (Address, Latitude, Longitude, Informations) VALUES (?, ?, ?, ?)
-		StringBuilder query = new StringBuilder();
-		// INSERT TO
-		query.append("INSERT INTO ").append(TABLE_LOCATION).append(" (").append(ADDRESS).append(", ")
-			.append(LATITUDE).append(", ").append(LONGITUDE).append(", ").append(INFORMATIONS).append(") ");
-		// VALUES
-		query.append("VALUES (?, ?, ?, ?)");
-		
-		PreparedStatement ps = dao.prepareStatement(query.toString());
+		PooledConnection connection = dao.getConnection();
+		try
+		{
+			PreparedStatement ps = connection.prepareStatement(INSERT_LOCATION);
+			setLocationParameters(ps, loc);
+			dao.update(ps);
+		}
+		finally
+		{
+			dao.release(connection);
+		}
+	}
+
+	/**
+	 * Insert several locations in the location table with one batch, in a transaction
+	 * @param locations The locations to insert
+	 * @throws SQLException If the request return an error, the transaction is then rolled back
+	 */
+	void insertLocations(List<Location> locations) throws SQLException
+	{
+		PooledConnection connection = dao.getConnection();
+		try
+		{
+			PreparedStatement ps = connection.prepareStatement(INSERT_LOCATION);
+			for (Location loc : locations)
+			{
+				setLocationParameters(ps, loc);
+				ps.addBatch();
+			}
+			connection.beginTransaction();
+			try
+			{
+				dao.updateBatch(ps);
+				connection.commit();
+			}
+			catch (SQLException e)
+			{
+				connection.rollback();
+				throw e;
+			}
+		}
+		finally
+		{
+			dao.release(connection);
+		}
+	}
+
+	/**
+	 * Set the parameters of a location insertion
+	 * @param ps The location insertion statement
+	 * @param loc The location to insert
+	 * @throws SQLException If a parameter can't be set
+	 */
+	private static void setLocationParameters(PreparedStatement ps, Location loc) throws SQLException
+	{
 		ps.setString(1, loc.getAddress());
 		ps.setFloat(2, loc.getLatitude());
 		ps.setFloat(3, loc.getLongitude());
@@ -133,41 +270,55 @@ public class DatabaseManager
 			ps.setString(4, loc.getAdditionalInformations());
 		else
 			ps.setString(4, "");
-		
-		dao.update(ps);
+	}
 
-        ps.close();
+	/**
+	 * Return the buffer of the new rows, inserted by batches
+	 * @return The insert buffer
+	 */
+	public InsertBuffer getInsertBuffer()
+	{
+		return insertBuffer;
+	}
+
+	/**
+	 * Return the pool of the database connections
+	 * @return The connection pool
+	 */
+	public ConnectionPool getConnectionPool()
+	{
+		return dao.getPool();
 	}
 	
 	/**
 	 * Return the distance or duration between two location
 	 * @param originId The first location id
 	 * @param destinationId The second location id
+	 * @param query The request of the data asked (distance or duration)
 	 * @param data The data asked (distance or duration)
 	 * @return The data between the two locations
 	 * @throws SQLException If the request return an error
 	 */
-	private int getPathData(int originId, int destinationId, String data) throws SQLException
+	private int getPathData(int originId, int destinationId, String query, String data) throws SQLException
 	{
-		//SELECT x FROM PathData WHERE IdOrigin = ? AND IdDestination = ?;
-		StringBuilder query = new StringBuilder();
-		//SELECT
-		query.append("SELECT ").append(data).append(" FROM ").append(TABLE_DATA)
-			.append(" WHERE ").append(ID_ORIGIN_LOCATION).append(" = ? AND ")
-			.append(ID_DESTINATION_LOCATION).append(" = ?");
-
-		PreparedStatement ps = dao.prepareStatement(query.toString());
-		ps.setInt(1, originId);
-		ps.setInt(2, destinationId);
-		ResultSet rs = dao.query(ps);
-
 		int value = UNSET_VALUE;
-		while (rs.next())
+		PooledConnection connection = dao.getConnection();
+		try
+		{
+			PreparedStatement ps = connection.prepareStatement(query);
+			ps.setInt(1, originId);
+			ps.setInt(2, destinationId);
+			ResultSet rs = dao.query(ps);
+			while (rs.next())
+			{
+				value = rs.getInt(data);
+			}
+			rs.close();
+		}
+		finally
 		{
-			value = rs.getInt(data);
+			dao.release(connection);
 		}
-		rs.close();
-        ps.close();
 		return value;
 	}
 	
@@ -180,7 +331,7 @@ public class DatabaseManager
 	 */
 	public int getDuration(int originId, int destinationId) throws SQLException
 	{
-		return getPathData(originId, destinationId, DURATION);
+		return getPathData(originId, destinationId, SELECT_DURATION, DURATION);
 	}
 	
 	/**
@@ -192,9 +343,102 @@ public class DatabaseManager
 	 */
 	public int getDistance(int originId, int destinationId) throws SQLException
 	{
-		return getPathData(originId, destinationId, DISTANCE);
+		return getPathData(originId, destinationId, SELECT_DISTANCE, DISTANCE);
 	}
-	
+
+	/**
+	 * Fill a matrix with all the path data between its locations. The path data are read with one streaming
+	 * request by group of origins instead of several requests by couple of locations.
+	 * @param matrix The matrix to fill, the ids of its locations must be set
+	 * @return The couples of locations, origin then destination, without path data
+	 * @throws SQLException If the request return an error
+	 */
+	public List<Location[]> loadPathsData(DataMatrix matrix) throws SQLException
+	{
+		int dimension = matrix.getDimension(), origin, destination, parameter;
+		Map<Integer, Integer> indexes = new HashMap<Integer, Integer>(dimension * 2);
+		boolean[] found = new boolean[dimension * dimension];
+		List<Location[]> missing = new ArrayList<Location[]>();
+		StringBuilder destinations = new StringBuilder(), query;
+		PooledConnection connection;
+		PreparedStatement ps;
+		ResultSet rs;
+
+		for (int i = 0 ; i < dimension ; ++i)
+		{
+			indexes.put(matrix.getLocation(i).getId(), i);
+			destinations.append(i == 0 ? "?" : ", ?");
+		}
+		connection = dao.getConnection();
+		try
+		{
+			for (int start = 0 ; start < dimension ; start += BULK_ORIGINS)
+			{
+				int end = Math.min(start + BULK_ORIGINS, dimension);
+				// SELECT IdOrigin, IdDestination, distance, duration FROM PathData
+				// WHERE IdOrigin IN (?, ...) AND IdDestination IN (?, ...)
+				query = new StringBuilder().append("SELECT ").append(ID_ORIGIN_LOCATION).append(", ")
+					.append(ID_DESTINATION_LOCATION).append(", ").append(DISTANCE).append(", ").append(DURATION)
+					.append(" FROM ").append(TABLE_DATA).append(" WHERE ").append(ID_ORIGIN_LOCATION).append(" IN (");
+				for (int i = start ; i < end ; ++i)
+				{
+					query.append(i == start ? "?" : ", ?");
+				}
+				query.append(") AND ").append(ID_DESTINATION_LOCATION).append(" IN (").append(destinations).append(")");
+
+				ps = connection.prepareStreamingStatement(query.toString());
+				try
+				{
+					parameter = 1;
+					for (int i = start ; i < end ; ++i)
+					{
+						ps.setInt(parameter++, matrix.getLocation(i).getId());
+					}
+					for (int i = 0 ; i < dimension ; ++i)
+					{
+						ps.setInt(parameter++, matrix.getLocation(i).getId());
+					}
+					rs = dao.query(ps);
+					try
+					{
+						while (rs.next())
+						{
+							origin = indexes.get(rs.getInt(ID_ORIGIN_LOCATION));
+							destination = indexes.get(rs.getInt(ID_DESTINATION_LOCATION));
+							matrix.setDistance(origin, destination, rs.getInt(DISTANCE));
+							matrix.setDuration(origin, destination, rs.getInt(DURATION));
+							found[origin * dimension + destination] = true;
+						}
+					}
+					finally
+					{
+						rs.close();
+					}
+				}
+				finally
+				{
+					ps.close();
+				}
+			}
+		}
+		finally
+		{
+			dao.release(connection);
+		}
+
+		for (int i = 0 ; i < dimension ; ++i)
+		{
+			for (int j = 0 ; j < dimension ; ++j)
+			{
+				if (!found[i * dimension + j])
+				{
+					missing.add(new Location[] { matrix.getLocation(i), matrix.getLocation(j) });
+				}
+			}
+		}
+		return missing;
+	}
+
 	/**
 	 * Return true if a path data exists between the two locations, false else
 	 * @param l1 The first location
@@ -205,24 +449,23 @@ public class DatabaseManager
 	public boolean existPathData(Location l1, Location l2) throws SQLException
 	{
 		int count = 0;
-		//SELECT count(*) FROM PathData WHERE IdOrigin = ? AND IdDestination = ?;
-		StringBuilder query = new StringBuilder();
-		//SELECT
-		query.append("SELECT count(*) FROM ").append(TABLE_DATA)
-			.append(" WHERE ").append(ID_ORIGIN_LOCATION).append(" = ? AND ")
-			.append(ID_DESTINATION_LOCATION).append(" = ?");
-
-		PreparedStatement ps = dao.prepareStatement(query.toString());
-		ps.setInt(1, l1.getId());
-		ps.setInt(2, l2.getId());
-		ResultSet rs = dao.query(ps);
-
-		while (rs.next())
+		PooledConnection connection = dao.getConnection();
+		try
+		{
+			PreparedStatement ps = connection.prepareStatement(COUNT_PATH_DATA);
+			ps.setInt(1, l1.getId());
+			ps.setInt(2, l2.getId());
+			ResultSet rs = dao.query(ps);
+			while (rs.next())
+			{
+				count = rs.getInt("count(*)");
+			}
+			rs.close();
+		}
+		finally
 		{
-			count = rs.getInt("count(*)");
+			dao.release(connection);
 		}
-		rs.close();
-        ps.close();
 		if(count == 0)
 			return false;
 		else if(count == 1)
@@ -239,25 +482,27 @@ public class DatabaseManager
 	 * @throws SQLException If the request return an error
 	 */
 	public int getLocationId(Location loc) throws SQLException
-    {
-		//SELECT IdLocation FROM Location WHERE Latitude = ? AND Longitude = ?"
-        PreparedStatement ps = dao.prepareStatement(new StringBuilder()
-        	.append("SELECT ").append(ID_LOCATION).append(" FROM ")
-        	.append(TABLE_LOCATION).append(" WHERE ").append(LATITUDE).append(" = ?")
-        	.append(" AND ").append(LONGITUDE).append(" = ?").toString());
-        ps.setFloat(1, loc.getLatitude());
-        ps.setFloat(2, loc.getLongitude());
-        ResultSet rs = dao.query(ps);
-        
-        int id = UNSET_VALUE;
-        while(rs.next())
-        {
-    		id = rs.getInt("IdLocation");
-        }
-		rs.close();
-        ps.close();
-        return id;
-    }
+	{
+		int id = UNSET_VALUE;
+		PooledConnection connection = dao.getConnection();
+		try
+		{
+			PreparedStatement ps = connection.prepareStatement(SELECT_LOCATION_ID);
+			ps.setFloat(1, loc.getLatitude());
+			ps.setFloat(2, loc.getLongitude());
+			ResultSet rs = dao.query(ps);
+			while(rs.next())
+			{
+				id = rs.getInt(ID_LOCATION);
+			}
+			rs.close();
+		}
+		finally
+		{
+			dao.release(connection);
+		}
+		return id;
+	}
 	
 	/**
 	 * Return the geographic coordinates of a location
@@ -267,24 +512,24 @@ public class DatabaseManager
 	 */
 	public float[] getLocationCoordinates(Location l) throws SQLException
 	{
-		//SELECT Latitude, Longitude FROM Location WHERE IdLocation = ?
-		StringBuilder query = new StringBuilder();
-		//SELECT
-		query.append("SELECT ").append(LATITUDE).append(", ").append(LONGITUDE).append(" FROM ")
-			.append(TABLE_LOCATION).append(" WHERE ").append(ID_LOCATION).append(" = ?");
-
-		PreparedStatement ps = dao.prepareStatement(query.toString());
-		ps.setInt(1, l.getId());
-		ResultSet rs = dao.query(ps);
-
 		float[] coord = new float[2];
-		while (rs.next())
+		PooledConnection connection = dao.getConnection();
+		try
 		{
-			coord[0] = rs.getFloat(LATITUDE);
-			coord[1] = rs.getFloat(LONGITUDE);
+			PreparedStatement ps = connection.prepareStatement(SELECT_LOCATION_COORDINATES);
+			ps.setInt(1, l.getId());
+			ResultSet rs = dao.query(ps);
+			while (rs.next())
+			{
+				coord[0] = rs.getFloat(LATITUDE);
+				coord[1] = rs.getFloat(LONGITUDE);
+			}
+			rs.close();
+		}
+		finally
+		{
+			dao.release(connection);
 		}
-		rs.close();
-        ps.close();
 		return coord;
 	}
 	
@@ -295,14 +540,18 @@ public class DatabaseManager
 	 */
 	public void removePathsData(Location l) throws SQLException
 	{
-		// DELETE FROM PathData WHERE IdOrigin = ? OR IdDestination = ?
-		StringBuilder query = new StringBuilder().append("DELETE FROM ").append(TABLE_DATA).append(" WHERE ").append(ID_ORIGIN_LOCATION)
-				.append(" OR ").append(ID_DESTINATION_LOCATION).append(" = ?");
-		PreparedStatement ps = dao.prepareStatement(query.toString());
-        ps.setInt(1, l.getId());
-        ps.setInt(1, l.getId());
-        dao.update(ps);
-        ps.close();
+		PooledConnection connection = dao.getConnection();
+		try
+		{
+			PreparedStatement ps = connection.prepareStatement(DELETE_PATHS_DATA);
+			ps.setInt(1, l.getId());
+			ps.setInt(1, l.getId());
+			dao.update(ps);
+		}
+		finally
+		{
+			dao.release(connection);
+		}
 	}
 	
 	/**
@@ -312,13 +561,17 @@ public class DatabaseManager
 	 */
 	public void removeLocation(Location l) throws SQLException
 	{
-		// DELETE FROM Location WHERE IdLocation = ?
-		StringBuilder query = new StringBuilder().append("DELETE FROM ").append(TABLE_LOCATION).append(" WHERE ").append(ID_LOCATION)
-				.append(" = ?");
-		PreparedStatement ps = dao.prepareStatement(query.toString());
-        ps.setInt(1, l.getId());
-        dao.update(ps);
-        ps.close();
+		PooledConnection connection = dao.getConnection();
+		try
+		{
+			PreparedStatement ps = connection.prepareStatement(DELETE_LOCATION);
+			ps.setInt(1, l.getId());
+			dao.update(ps);
+		}
+		finally
+		{
+			dao.release(connection);
+		}
 	}
 	
 	/**
@@ -329,22 +582,34 @@ public class DatabaseManager
 	 */
 	public void updateLocationAddress(int id, String address) throws SQLException
 	{
-		// UPDATE Location SET Address = ? WHERE IdLocation = ?
-		StringBuilder query = new StringBuilder().append("UPDATE ").append(TABLE_LOCATION).append(" SET ").append(ADDRESS)
-				.append(" = ? WHERE ").append(ID_LOCATION).append(" = ?");
-		PreparedStatement ps = dao.prepareStatement(query.toString());
-        ps.setString(1, address);
-        ps.setInt(2, id);
-        dao.update(ps);
-        ps.close();
+		PooledConnection connection = dao.getConnection();
+		try
+		{
+			PreparedStatement ps = connection.prepareStatement(UPDATE_LOCATION_ADDRESS);
+			ps.setString(1, address);
+			ps.setInt(2, id);
+			dao.update(ps);
+		}
+		finally
+		{
+			dao.release(connection);
+		}
 	}
 
 	/**
-	 * Close the database connection
-	 * @throws SQLException If the closing returns an error
+	 * Insert the rows waiting then close the idle database connections.
+	 * The next requests open new connections.
+	 * @throws SQLException If the insertion returns an error
 	 */
-    public void close() throws SQLException
-    {
-        dao.close();
-    }
+	public void close() throws SQLException
+	{
+		try
+		{
+			insertBuffer.flush();
+		}
+		finally
+		{
+			dao.close();
+		}
+	}
 }
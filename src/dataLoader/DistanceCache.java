@@ -0,0 +1,81 @@
+package dataLoader;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import locationsData.Location;
+
+/**
+ *  Distances and durations between locations already read from the database or received from Google,
+ *  kept in memory so that several schedulings run in the same process don't ask them again.
+ *  The locations are identified by their database identifier. The cache can be used by several threads.
+ */
+public class DistanceCache
+{
+	/** Distance in the high bits and duration in the low bits, by origin and destination identifiers */
+	private ConcurrentMap<Long, Long> distances = new ConcurrentHashMap<Long, Long>();
+
+	/**
+	 * Return the key of a couple of locations
+	 * @param origin the origin location
+	 * @param destination the destination location
+	 * @return the key
+	 */
+	private static Long getKey(Location origin, Location destination)
+	{
+		return ((long) origin.getId() << 32) | (destination.getId() & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Save the distance and the duration between two locations
+	 * @param origin the origin location
+	 * @param destination the destination location
+	 * @param distance the distance in meters
+	 * @param duration the duration in seconds
+	 */
+	public void put(Location origin, Location destination, int distance, int duration)
+	{
+		distances.put(getKey(origin, destination), ((long) distance << 32) | (duration & 0xFFFFFFFFL));
+	}
+
+	/**
+	 * Return the distance and the duration between two locations
+	 * @param origin the origin location
+	 * @param destination the destination location
+	 * @return the distance in the high bits and the duration in the low bits,
+	 *  use getDistance and getDuration to read them, null if the couple is not in the cache
+	 */
+	public Long get(Location origin, Location destination)
+	{
+		return distances.get(getKey(origin, destination));
+	}
+
+	/**
+	 * Return the distance of a value returned by get
+	 * @param value the value
+	 * @return the distance in meters
+	 */
+	public static int getDistance(long value)
+	{
+		return (int) (value >> 32);
+	}
+
+	/**
+	 * Return the duration of a value returned by get
+	 * @param value the value
+	 * @return the duration in seconds
+	 */
+	public static int getDuration(long value)
+	{
+		return (int) value;
+	}
+
+	/**
+	 * Return the number of couples of locations in the cache
+	 * @return the number of couples
+	 */
+	public int size()
+	{
+		return distances.size();
+	}
+}
@@ -0,0 +1,290 @@
+package dataLoader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import application.Metrics;
+import dataLoader.GoogleDistances.DistanceRequest;
+import dataLoader.GoogleService.OverQueryLimitException;
+
+/**
+ *  Pipeline sending the Distance Matrix requests. A bounded number of requests are in flight at the same time,
+ *  their responses are parsed by another thread, and the elements parsed are given to a single writer, the
+ *  thread which runs the pipeline, which fills the matrix and saves the distances.
+ *  A request failing or over the query limit is sent again after a delay without stopping the other ones.
+ */
+public class DistanceFetcher
+{
+	/**
+	 *  Last stage of the pipeline, called by one thread only
+	 */
+	public interface Writer
+	{
+		/**
+		 * Save the elements of a response
+		 * @param request the request
+		 * @param elements the distances then the durations between each origin and each destination of the
+		 *  request, by origin
+		 * @throws Exception if the elements can't be saved, the pipeline is then stopped
+		 */
+		public abstract void write(DistanceRequest request, int[][] elements) throws Exception;
+	}
+
+	/**
+	 *  Output of the parse stage : the elements of a response or the error of a request
+	 */
+	private static class Result
+	{
+		/** The request */
+		private DistanceRequest request;
+
+		/** The elements of the response, null if the request failed */
+		private int[][] elements;
+
+		/** The error of the request, null if it succeeded */
+		private Exception error;
+
+		/**
+		 * Full constructor
+		 * @param request the request
+		 * @param elements the elements of the response, null if the request failed
+		 * @param error the error of the request, null if it succeeded
+		 */
+		private Result(DistanceRequest request, int[][] elements, Exception error)
+		{
+			this.request = request;
+			this.elements = elements;
+			this.error = error;
+		}
+	}
+
+	/** Default number of requests in flight at the same time */
+	public static final int DEFAULT_REQUESTS_IN_FLIGHT = 4;
+
+	/** Maximum number of times a request is sent */
+	protected static final int MAX_ATTEMPTS = 3;
+
+	/** Delay before sending a failed request again the first time, doubled at each attempt, in milliseconds */
+	protected static final long RETRY_DELAY = 2000;
+
+	/** Service parsing the responses */
+	private GoogleDistances service;
+
+	/** Rate limiter of the requests */
+	private TokenBucket rateLimiter;
+
+	/** Number of requests in flight at the same time */
+	private int requestsInFlight;
+
+	/** Metrics of the scheduling */
+	private Metrics metrics;
+
+	/** Threads sending the requests, they also wait for the rate limiter */
+	private ScheduledExecutorService fetchStage;
+
+	/** Thread parsing the responses */
+	private ExecutorService parseStage;
+
+	/** Responses parsed and errors, waiting for the writer */
+	private BlockingQueue<Result> results = new LinkedBlockingQueue<Result>();
+
+	/**
+	 * Constructor
+	 * @param service Service parsing the responses
+	 * @param rateLimiter Rate limiter of the requests, the cost of a request is its number of elements
+	 * @param requestsInFlight Number of requests in flight at the same time
+	 * @param metrics Metrics of the scheduling
+	 */
+	public DistanceFetcher(GoogleDistances service, TokenBucket rateLimiter, int requestsInFlight, Metrics metrics)
+	{
+		if (requestsInFlight < 1)
+			throw new IllegalArgumentException("The number of requests in flight must be a strictly positive integer.");
+		this.service = service;
+		this.rateLimiter = rateLimiter;
+		this.requestsInFlight = requestsInFlight;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Send all the requests and give their elements to the writer, in the order the responses are received.
+	 * A fetcher can only be run once.
+	 * @param requests the requests to send
+	 * @param writer the writer of the elements
+	 * @throws Exception the error of a request failing after the last attempt, or of the writer
+	 */
+	public void run(List<DistanceRequest> requests, Writer writer) throws Exception
+	{
+		Result result;
+
+		fetchStage = Executors.newScheduledThreadPool(Math.min(requestsInFlight, Math.max(1, requests.size())));
+		parseStage = Executors.newSingleThreadExecutor();
+		try
+		{
+			for (DistanceRequest request : requests)
+			{
+				fetchStage.execute(new Fetch(request, 1));
+			}
+			for (int i = 0 ; i < requests.size() ; ++i)
+			{
+				result = results.take();
+				if (result.error != null)
+					throw result.error;
+				writer.write(result.request, result.elements);
+			}
+		}
+		finally
+		{
+			fetchStage.shutdownNow();
+			parseStage.shutdownNow();
+		}
+	}
+
+	/**
+	 * Send a request again after a delay, or give its error to the writer after the last attempt
+	 * @param request the request
+	 * @param attempt the number of times the request has been sent
+	 * @param error the error of the last attempt
+	 */
+	private void retry(DistanceRequest request, int attempt, Exception error)
+	{
+		if (attempt >= MAX_ATTEMPTS)
+		{
+			results.add(new Result(request, null, error));
+			return;
+		}
+		try
+		{
+			fetchStage.schedule(new Fetch(request, attempt + 1), RETRY_DELAY << (attempt - 1), TimeUnit.MILLISECONDS);
+		}
+		catch (RejectedExecutionException e) {}
+	}
+
+	/**
+	 *  Fetch stage : send a request and read its response
+	 */
+	private class Fetch implements Runnable
+	{
+		/** The request */
+		private DistanceRequest request;
+
+		/** The number of times the request has been sent, this one included */
+		private int attempt;
+
+		/**
+		 * Full constructor
+		 * @param request the request
+		 * @param attempt the number of times the request has been sent, this one included
+		 */
+		private Fetch(DistanceRequest request, int attempt)
+		{
+			this.request = request;
+			this.attempt = attempt;
+		}
+
+		/**
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run()
+		{
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			InputStream in;
+			int read;
+
+			try
+			{
+				rateLimiter.acquire(request.getOrigins().length * request.getDestinations().length);
+				metrics.increment(Metrics.DISTANCE_REQUESTS);
+				metrics.add(Metrics.DISTANCE_ELEMENTS, request.getOrigins().length * request.getDestinations().length);
+				in = GoogleService.connect(request).getInputStream();
+				try
+				{
+					while ((read = in.read(buffer)) != -1)
+					{
+						body.write(buffer, 0, read);
+					}
+				}
+				finally
+				{
+					in.close();
+				}
+				parseStage.execute(new Parse(request, attempt, body.toByteArray()));
+			}
+			catch (InterruptedException e)
+			{
+				// The pipeline has been stopped
+			}
+			catch (RejectedExecutionException e)
+			{
+				// The pipeline has been stopped
+			}
+			catch (IOException e)
+			{
+				retry(request, attempt, new IOException("I/O error occured while trying to get data", e));
+			}
+			catch (Exception e)
+			{
+				results.add(new Result(request, null, e));
+			}
+		}
+	}
+
+	/**
+	 *  Parse stage : read the elements of a response
+	 */
+	private class Parse implements Runnable
+	{
+		/** The request */
+		private DistanceRequest request;
+
+		/** The number of times the request has been sent */
+		private int attempt;
+
+		/** The response */
+		private byte[] body;
+
+		/**
+		 * Full constructor
+		 * @param request the request
+		 * @param attempt the number of times the request has been sent
+		 * @param body the response
+		 */
+		private Parse(DistanceRequest request, int attempt, byte[] body)
+		{
+			this.request = request;
+			this.attempt = attempt;
+			this.body = body;
+		}
+
+		/**
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run()
+		{
+			try
+			{
+				results.add(new Result(request, service.parseElements(new ByteArrayInputStream(body), request), null));
+			}
+			catch (OverQueryLimitException e)
+			{
+				retry(request, attempt, e);
+			}
+			catch (Exception e)
+			{
+				results.add(new Result(request, null, e));
+			}
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package dataLoader;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import locationsData.Location;
+
+/**
+ *  Planner of the Distance Matrix requests needed to get a set of missing couples of locations.
+ *  The origins missing the same destinations are grouped, then each group is cut into rectangular tiles of
+ *  several origins and several destinations, as large as the limits of the API allow. Every couple of a tile
+ *  is missing, so no element is asked twice.
+ */
+public class DistanceRequestPlanner
+{
+	/**
+	 *  Rectangular request : every origin with every destination
+	 */
+	public static class Tile
+	{
+		/** Origins of the request */
+		private Location[] origins;
+
+		/** Destinations of the request */
+		private Location[] destinations;
+
+		/**
+		 * Full constructor
+		 * @param origins Origins of the request
+		 * @param destinations Destinations of the request
+		 */
+		public Tile(Location[] origins, Location[] destinations)
+		{
+			this.origins = origins;
+			this.destinations = destinations;
+		}
+
+		/**
+		 * Return the origins of the request
+		 * @return The origins
+		 */
+		public Location[] getOrigins()
+		{
+			return origins;
+		}
+
+		/**
+		 * Return the destinations of the request
+		 * @return The destinations
+		 */
+		public Location[] getDestinations()
+		{
+			return destinations;
+		}
+
+		/**
+		 * Return the number of couples of locations asked, counted by Google in its limits
+		 * @return The number of elements
+		 */
+		public int getElements()
+		{
+			return origins.length * destinations.length;
+		}
+	}
+
+	/**
+	 * Plan the requests of the missing couples of locations
+	 * @param missing The couples of locations, origin then destination, in the order of the origins
+	 * @param maxLocations Maximum number of origins, and of destinations, by request
+	 * @param maxElements Maximum number of couples by request
+	 * @return The requests
+	 */
+	public static List<Tile> plan(List<Location[]> missing, int maxLocations, int maxElements)
+	{
+		Map<Location, List<Location>> destinationsByOrigin = new LinkedHashMap<Location, List<Location>>();
+		Map<List<Location>, List<Location>> originsByDestinations = new LinkedHashMap<List<Location>, List<Location>>();
+		List<Tile> tiles = new ArrayList<Tile>();
+		List<Location> destinations, origins;
+
+		if (maxLocations < 1 || maxElements < 1)
+			throw new IllegalArgumentException("The limits of the requests must be strictly positive.");
+		for (Location[] couple : missing)
+		{
+			destinations = destinationsByOrigin.get(couple[0]);
+			if (destinations == null)
+			{
+				destinations = new ArrayList<Location>();
+				destinationsByOrigin.put(couple[0], destinations);
+			}
+			destinations.add(couple[1]);
+		}
+		for (Map.Entry<Location, List<Location>> entry : destinationsByOrigin.entrySet())
+		{
+			origins = originsByDestinations.get(entry.getValue());
+			if (origins == null)
+			{
+				origins = new ArrayList<Location>();
+				originsByDestinations.put(entry.getValue(), origins);
+			}
+			origins.add(entry.getKey());
+		}
+
+		for (Map.Entry<List<Location>, List<Location>> group : originsByDestinations.entrySet())
+		{
+			tile(group.getValue(), group.getKey(), maxLocations, maxElements, tiles);
+		}
+		return tiles;
+	}
+
+	/**
+	 * Cut a group of origins missing the same destinations into the smallest number of tiles
+	 * @param origins The origins of the group
+	 * @param destinations The destinations missing for each origin
+	 * @param maxLocations Maximum number of origins, and of destinations, by request
+	 * @param maxElements Maximum number of couples by request
+	 * @param tiles The list where the tiles are added
+	 */
+	private static void tile(List<Location> origins, List<Location> destinations, int maxLocations, int maxElements,
+			List<Tile> tiles)
+	{
+		int rows = 1, columns = 1, requests = Integer.MAX_VALUE, c, r;
+
+		// The shape of the tiles is chosen to minimize the number of requests
+		for (r = 1 ; r <= Math.min(origins.size(), maxLocations) ; ++r)
+		{
+			c = Math.min(Math.min(destinations.size(), maxLocations), maxElements / r);
+			if (c < 1)
+				break;
+			int n = ((origins.size() + r - 1) / r) * ((destinations.size() + c - 1) / c);
+			if (n < requests)
+			{
+				requests = n;
+				rows = r;
+				columns = c;
+			}
+		}
+
+		for (int i = 0 ; i < origins.size() ; i += rows)
+		{
+			Location[] tileOrigins = origins.subList(i, Math.min(i + rows, origins.size())).toArray(new Location[0]);
+			for (int j = 0 ; j < destinations.size() ; j += columns)
+			{
+				tiles.add(new Tile(tileOrigins,
+						destinations.subList(j, Math.min(j + columns, destinations.size())).toArray(new Location[0])));
+			}
+		}
+	}
+}
@@ -8,10 +8,16 @@
 
 package dataLoader;
 
-import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
 import application.BusScheduling;
 import application.BusSchedulingException;
+import application.Metrics;
 
 import locationsData.DataMatrix;
 import locationsData.Location;
@@ -22,6 +28,12 @@ import presentation.ProgressionEvent.ProgressionType;
  */
 public class GoogleDatabaseDistances extends GoogleDistances
 {
+	/** Metrics of the scheduling */
+	private Metrics metrics;
+
+	/** Buffer of the distances to save in the database */
+	private InsertBuffer insertBuffer;
+
 	/**
 	 * Constructor
 	 * @param matrix Matrix to fill
@@ -59,7 +71,8 @@ public class GoogleDatabaseDistances extends GoogleDistances
 	}
 	
 	/**
-	 * Fill the matrix in attribute
+	 * Fill the matrix in attribute. The distances already known are read from the memory cache, then all the
+	 * other ones are read from the database in bulk, and only the missing ones are asked to Google.
 	 * @throws IllegalArgumentException
 	 * @throws SQLException
 	 * @throws OverQueryLimitException
@@ -69,74 +82,128 @@ public class GoogleDatabaseDistances extends GoogleDistances
 	 */
 	public void fill() throws IllegalArgumentException, SQLException, OverQueryLimitException, LocationNotFoundException, Exception
 	{
-		int cpt = 1, percent = 0, tmpPercent;
+		int percent, dimension = matrix.getDimension();
 		DatabaseManager databaseManager = busScheduling.getDatabaseManager();
-		// First we cut the locations to create the different requests
-		DistanceRequest request;
-		boolean retry = false;
-		int requestCpt = 0;
-//		long startRequestsTime = new Date().getTime(), elapsedTime;
-		Location[] origins = new Location[1], destinations = new Location[1];
-		// Then for each request we ask google and parse the result
-		for (Location src : matrix.getLocations())
+		DistanceCache cache = busScheduling.getDistanceCache();
+		Long cached;
+		List<Location[]> missing = new ArrayList<Location[]>();
+		List<Location[]> requested = new ArrayList<Location[]>();
+		Map<Location, Integer> missingByOrigin = new HashMap<Location, Integer>();
+		List<DistanceRequestPlanner.Tile> tiles;
+		List<DistanceRequest> requests = new ArrayList<DistanceRequest>();
+		MatrixWriter writer;
+
+		metrics = busScheduling.getMetrics();
+		insertBuffer = databaseManager.getInsertBuffer();
+
+		// The distances already read by another scheduling are neither asked to the database nor to Google
+		for (int i = 0 ; i < dimension ; ++i)
 		{
-			origins[0] = src;
-			for(Location dest : matrix.getLocations())
+			for (int j = 0 ; j < dimension ; ++j)
 			{
-				if(!databaseManager.existPathData(src, dest))
+				cached = cache.get(matrix.getLocation(i), matrix.getLocation(j));
+				if (cached == null)
 				{
-					if(src == dest)
-					{
-						databaseManager.insertPathData(src, dest, 0, 0);
-						matrix.setDistance(src, dest, 0);
-						matrix.setDuration(src, dest, 0);
-					}
-					else
-					{
-						destinations[0] = dest;
-						++requestCpt;
-						do
-						{
-							try
-							{
-								request = new DistanceRequest(origins, destinations);
-								parse(connect(request).getInputStream(), request);
-								databaseManager.insertPathData(src, dest, matrix.getDistance(src, dest), matrix.getDuration(src, dest));
-								retry = false;
-							}
-							catch (IOException e)
-							{
-								if(retry)
-									throw new IOException("I/O error occured while trying to get data", e);
-								retry = true;
-								Thread.sleep(TIME_BETWEEN_REQUEST);
-							}
-							catch (OverQueryLimitException e)
-							{
-								if(retry)
-									throw e;
-								retry = true;
-								Thread.sleep(TIME_BETWEEN_REQUEST);
-							}
-						}
-						while (retry);
-					}
+					missing.add(new Location[] { matrix.getLocation(i), matrix.getLocation(j) });
 				}
 				else
 				{
-					matrix.setDistance(src, dest, databaseManager.getDistance(src.getId(), dest.getId()));
-					matrix.setDuration(src, dest, databaseManager.getDuration(src.getId(), dest.getId()));
+					metrics.increment(Metrics.MEMORY_CACHE_HITS);
+					matrix.setDistance(i, j, DistanceCache.getDistance(cached));
+					matrix.setDuration(i, j, DistanceCache.getDuration(cached));
 				}
 			}
-			// we wait the amount of time needed before sending a new request
-			tmpPercent = 42 * cpt / matrix.getLocations().size();
-			if (tmpPercent != percent)
+		}
+
+		// All the other distances known by the database are read at once
+		if (!missing.isEmpty())
+		{
+			int missingNumber = missing.size();
+			metrics.add(Metrics.DATABASE_QUERIES, (dimension + DatabaseManager.BULK_ORIGINS - 1) / DatabaseManager.BULK_ORIGINS);
+			missing = databaseManager.loadPathsData(matrix);
+			// The distances of the memory cache may not be saved in the database yet
+			for (Iterator<Location[]> it = missing.iterator() ; it.hasNext() ; )
+			{
+				Location[] couple = it.next();
+				if (cache.get(couple[0], couple[1]) != null)
+				{
+					it.remove();
+				}
+			}
+			metrics.add(Metrics.DISTANCES_CACHE_HITS, missingNumber - missing.size());
+		}
+
+		// The distance of a location to itself is known, it is only asked with the other destinations of its
+		// origin so that the origins missing the same destinations are asked together
+		for (Location[] couple : missing)
+		{
+			Integer n = missingByOrigin.get(couple[0]);
+			missingByOrigin.put(couple[0], n == null ? 1 : n + 1);
+		}
+		for (Location[] couple : missing)
+		{
+			if (couple[0] == couple[1] && missingByOrigin.get(couple[0]) == 1)
+			{
+				matrix.setDistance(couple[0], couple[1], 0);
+				matrix.setDuration(couple[0], couple[1], 0);
+				metrics.add(Metrics.DATABASE_QUERIES, insertBuffer.addPathData(couple[0], couple[1], 0, 0));
+			}
+			else
+			{
+				requested.add(couple);
+			}
+		}
+
+		// Then the missing distances are asked by rectangular requests, as large as Google allows
+		tiles = DistanceRequestPlanner.plan(requested, MAX_LOCATIONS_PER_SIDE,
+				subscription ? MAX_ELEMENTS_PER_SUBSCRIBED_DISTANCE_REQUEST : MAX_ELEMENTS_PER_DISTANCE_REQUEST);
+		for (DistanceRequestPlanner.Tile tile : tiles)
+		{
+			requests.add(new DistanceRequest(tile.getOrigins(), tile.getDestinations()));
+		}
+		writer = new MatrixWriter(requests.size(), 42);
+		new DistanceFetcher(this, getRateLimiter(), requestsInFlight, metrics).run(requests, writer);
+		percent = writer.getPercent();
+
+		metrics.add(Metrics.DATABASE_QUERIES, insertBuffer.flushPathsData());
+		if (percent != 42)
+		{
+			busScheduling.fireEvent(this, ProgressionType.INCREMENT, 42 - percent);
+		}
+
+		for (int i = 0 ; i < dimension ; ++i)
+		{
+			for (int j = 0 ; j < dimension ; ++j)
 			{
-				busScheduling.fireEvent(this, ProgressionType.INCREMENT, tmpPercent - percent);
-				percent = tmpPercent;
+				cache.put(matrix.getLocation(i), matrix.getLocation(j), matrix.getDistance(i, j), matrix.getDuration(i, j));
+			}
+		}
+		System.out.print(" (" + requests.size() + " pedidos efectuados) ");
+	}
+
+	/**
+	 * Fill the matrix with the elements of a response, then save them in the database
+	 * @param request url request
+	 * @param elements the distances then the durations between each origin and each destination of the request
+	 * @throws Exception 
+	 * @see dataLoader.GoogleDistances#write(dataLoader.GoogleDistances.DistanceRequest, int[][])
+	 */
+	@Override
+	protected void write(DistanceRequest request, int[][] elements) throws Exception
+	{
+		super.write(request, elements);
+		for (Location src : request.getOrigins())
+		{
+			for (Location dest : request.getDestinations())
+			{
+				if (src == dest)
+				{
+					matrix.setDistance(src, dest, 0);
+					matrix.setDuration(src, dest, 0);
+				}
+				metrics.add(Metrics.DATABASE_QUERIES,
+						insertBuffer.addPathData(src, dest, matrix.getDistance(src, dest), matrix.getDuration(src, dest)));
 			}
-			++cpt;
 		}
-		System.out.print(" (" + requestCpt + " pedidos efectuados) ");
 	}
 }
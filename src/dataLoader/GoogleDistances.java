@@ -9,6 +9,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URLConnection;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
@@ -31,8 +32,8 @@ public class GoogleDistances extends GoogleService
 	/** Contains all information about a google request on the google distances API.*/
 	protected class DistanceRequest extends GoogleRequest
 	{
-		/** Constant used for building distance requests. */
-		private static final String DISTANCE_REQUESTS_TEMPLATE = "http://maps.googleapis.com/maps/api/distancematrix/json?origins=%s&destinations=%s&language=en_US&sensor=false";
+		/** Constant used for building distance requests, after the service URL. */
+		private static final String DISTANCE_REQUESTS_TEMPLATE = "%s?origins=%s&destinations=%s&language=en_US&sensor=false";
 
 		/** Array of the origins used for the request.*/
 		private Location[] origins;
@@ -64,7 +65,7 @@ public class GoogleDistances extends GoogleService
 			{
 				if (ori != null)
 				{
-					origin.append(ori.getLatitude()).append("+").append(ori.getLongitude()).append("|");
+					origin.append(ori.getLatitude()).append("+").append(ori.getLongitude()).append("%7C");
 				}
 			}
 			for (Location dest : destinations)
@@ -72,10 +73,28 @@ public class GoogleDistances extends GoogleService
 				if (dest != null)
 				{
 					destination.append(dest.getLatitude()).append("+").append(dest.getLongitude())
-							.append("|");
+							.append("%7C");
 				}
 			}
-			return String.format(DISTANCE_REQUESTS_TEMPLATE, origin, destination);
+			return String.format(DISTANCE_REQUESTS_TEMPLATE, serviceURL, origin, destination);
+		}
+
+		/**
+		 * Return the origins used for the request
+		 * @return the origins
+		 */
+		public Location[] getOrigins()
+		{
+			return origins;
+		}
+
+		/**
+		 * Return the destinations used for the request
+		 * @return the destinations
+		 */
+		public Location[] getDestinations()
+		{
+			return destinations;
 		}
 
 	}
@@ -86,6 +105,21 @@ public class GoogleDistances extends GoogleService
 	/** Maximum number of locations allowed per distance request on Google Distance Matrix API with a Google Business subscription */
 	protected static final int MAX_LOCATIONS_PER_SUBSCRIBED_DISTANCE_REQUEST = 25;
 
+	/** Maximum number of origins, and of destinations, per distance request on Google Distance Matrix API */
+	protected static final int MAX_LOCATIONS_PER_SIDE = 25;
+
+	/** Maximum number of elements (origins x destinations) per distance request on Google Distance Matrix API */
+	protected static final int MAX_ELEMENTS_PER_DISTANCE_REQUEST = 100;
+
+	/** Maximum number of elements per distance request on Google Distance Matrix API with a Google Business subscription */
+	protected static final int MAX_ELEMENTS_PER_SUBSCRIBED_DISTANCE_REQUEST = 625;
+
+	/** Maximum number of elements which can be requested per period of TIME_BETWEEN_REQUEST with a Google Business subscription */
+	protected static final int MAX_ELEMENTS_PER_SUBSCRIBED_PERIOD = 1000;
+
+	/** Default URL of the Google Distance Matrix API */
+	public static final String DEFAULT_SERVICE_URL = "http://maps.googleapis.com/maps/api/distancematrix/json";
+
 	/** Maximal number of locations which can be requested per 24 hours without a Google Business subscription */
 	protected static final int MAX_LOCATIONS_NO_SUBSCRIPTION = 50;
 
@@ -95,6 +129,20 @@ public class GoogleDistances extends GoogleService
 	/** Minimal time in millisecond between two requests sent to google*/
 	protected static final int TIME_BETWEEN_REQUEST = 10000;
 
+	/** Elements rate allowed by Google without a Google Business subscription, shared by the schedulings */
+	protected static final TokenBucket RATE_LIMITER = new TokenBucket(MAX_ELEMENTS_PER_DISTANCE_REQUEST,
+			MAX_ELEMENTS_PER_DISTANCE_REQUEST, TIME_BETWEEN_REQUEST);
+
+	/** Elements rate allowed by Google with a Google Business subscription, shared by the schedulings */
+	protected static final TokenBucket SUBSCRIBED_RATE_LIMITER = new TokenBucket(MAX_ELEMENTS_PER_SUBSCRIBED_PERIOD,
+			MAX_ELEMENTS_PER_SUBSCRIBED_PERIOD, TIME_BETWEEN_REQUEST);
+
+	/** URL of the Distance Matrix service, a local stand-in can replace Google */
+	private static volatile String serviceURL = DEFAULT_SERVICE_URL;
+
+	/** Number of requests in flight at the same time */
+	protected static volatile int requestsInFlight = DistanceFetcher.DEFAULT_REQUESTS_IN_FLIGHT;
+
 	// Unused
 	/** The name of the directory use to save the files returns by the distances API */
 	protected static final String SAVES_DIRECTORY = "distances";
@@ -131,6 +179,26 @@ public class GoogleDistances extends GoogleService
 		gd.fill();
 	}
 
+	/**
+	 * Set the URL of the Distance Matrix service, for example a local stand-in of the Google API
+	 * @param url The URL, without parameters
+	 */
+	public static void setServiceURL(String url)
+	{
+		if (url == null)
+			throw new NullPointerException("The service URL can't be null.");
+		serviceURL = url;
+	}
+
+	/**
+	 * Return the URL of the Distance Matrix service
+	 * @return The URL, without parameters
+	 */
+	public static String getServiceURL()
+	{
+		return serviceURL;
+	}
+
 	/** 
 	 * Full constructor
 	 * @param matrix the Data Matrix that will be filled by the parsed data
@@ -159,58 +227,86 @@ public class GoogleDistances extends GoogleService
 	 */
 	public void fill() throws IllegalArgumentException, Exception
 	{
-		int cpt = 1, percent = 0, tmpPercent;
 		// First we cut the locations to create the different requests
-		DistanceRequest[] requests = createRequests();
-		int tries = 0;
-		boolean retry = false;
-		// Then for each request we ask google and parse the result
-		for (DistanceRequest request : requests)
+		List<DistanceRequest> requests = Arrays.asList(createRequests());
+		// Then the requests are sent at the same time and the matrix is filled with each response
+		new DistanceFetcher(this, getRateLimiter(), requestsInFlight, busScheduling.getMetrics())
+				.run(requests, new MatrixWriter(requests.size(), 40));
+	}
+
+	/**
+	 *  Writer of the distance fetcher filling the matrix and firing the progression events
+	 */
+	protected class MatrixWriter implements DistanceFetcher.Writer
+	{
+		/** Number of requests to write */
+		private int requestsNumber;
+
+		/** Progression percentage of all the requests */
+		private int share;
+
+		/** Number of requests written */
+		private int written = 0;
+
+		/** Progression percentage fired */
+		private int percent = 0;
+
+		/**
+		 * Constructor
+		 * @param requestsNumber Number of requests to write
+		 * @param share Progression percentage of all the requests
+		 */
+		public MatrixWriter(int requestsNumber, int share)
 		{
-			tries = 0;
-			do
-			{
-				try
-				{
-					parse(new FileInputStream(new File(saveResponse(connect(request)))), request);
-					retry = false;
-				}
-				catch (IOException e)
-				{
-					retry = true;
-					if (tries < 2)
-					{
-						tries++;
-					}
-					else
-						throw new IOException("I/O error occured while trying to get data", e);
-				}
-				catch (OverQueryLimitException e)
-				{
-					retry = true;
-					if (tries < 2)
-					{
-						tries++;
-						Thread.sleep(2000);
-					}
-					else
-						throw e;
-				}
-			}
-			while (retry);
-			// we wait the amount of time needed before sending a new
-			// request
-			Thread.sleep(TIME_BETWEEN_REQUEST);
-			tmpPercent = 40 * cpt / requests.length;
+			this.requestsNumber = requestsNumber;
+			this.share = share;
+		}
+
+		/**
+		 * @see dataLoader.DistanceFetcher.Writer#write(dataLoader.GoogleDistances.DistanceRequest, int[][])
+		 */
+		@Override
+		public void write(DistanceRequest request, int[][] elements) throws Exception
+		{
+			GoogleDistances.this.write(request, elements);
+			int tmpPercent = share * ++written / requestsNumber;
 			if (tmpPercent != percent)
 			{
-				busScheduling.fireEvent(this, ProgressionType.INCREMENT, tmpPercent - percent);
+				busScheduling.fireEvent(GoogleDistances.this, ProgressionType.INCREMENT, tmpPercent - percent);
 				percent = tmpPercent;
 			}
-			++cpt;
+		}
+
+		/**
+		 * Return the progression percentage fired
+		 * @return The percentage
+		 */
+		public int getPercent()
+		{
+			return percent;
 		}
 	}
 
+	/**
+	 * Return the rate limiter of the requests, depending on the subscription
+	 * @return The rate limiter
+	 */
+	protected TokenBucket getRateLimiter()
+	{
+		return subscription ? SUBSCRIBED_RATE_LIMITER : RATE_LIMITER;
+	}
+
+	/**
+	 * Set the number of requests in flight at the same time
+	 * @param requests The number of requests
+	 */
+	public static void setRequestsInFlight(int requests)
+	{
+		if (requests < 1)
+			throw new IllegalArgumentException("The number of requests in flight must be a strictly positive integer.");
+		requestsInFlight = requests;
+	}
+
 	/**
 	 * Create the requests that will need to be sent to Google
 	 * @return an array of {@link DistanceRequest} that need to be sent to google.
@@ -279,12 +375,46 @@ public class GoogleDistances extends GoogleService
 	 * @throws Exception 
 	 */
 	protected void parse(InputStream in, DistanceRequest request) throws Exception
+	{
+		write(request, parseElements(in, request));
+	}
+
+	/**
+	 * Fill the matrix with the elements of a response
+	 * @param request url request
+	 * @param elements the distances then the durations between each origin and each destination of the
+	 *  request, by origin
+	 * @throws Exception 
+	 */
+	protected void write(DistanceRequest request, int[][] elements) throws Exception
+	{
+		int n = request.destinations.length;
+		for (int row = 0 ; row < request.origins.length ; ++row)
+		{
+			for (int col = 0 ; col < n ; ++col)
+			{
+				matrix.setDistance(request.origins[row], request.destinations[col], elements[0][row * n + col]);
+				matrix.setDuration(request.origins[row], request.destinations[col], elements[1][row * n + col]);
+			}
+		}
+	}
+
+	/**
+	 * Parse a file without filling the matrix, so that several responses can be parsed at the same time
+	 * @param in contains the distances informations
+	 * @param request url request
+	 * @return the distances then the durations between each origin and each destination of the request,
+	 *  by origin
+	 * @throws Exception 
+	 */
+	protected int[][] parseElements(InputStream in, DistanceRequest request) throws Exception
 	{
 		ObjectMapper mapper;
 		JsonNode rootNode, status, distance, duration;
 		String statusValue;
 		int distanceValue, durationValue;
-		int row = 0, col = 0;
+		int row = 0, col = 0, n = request.destinations.length;
+		int[][] elements = new int[2][request.origins.length * n];
 
 		try
 		{
@@ -327,6 +457,9 @@ public class GoogleDistances extends GoogleService
 			{
 				for (JsonNode element : rows.get("elements"))
 				{
+					if (row >= request.origins.length || col >= n)
+						throw new IllegalArgumentException(
+								"The JSON file is unvalid. (The number of elements in the file are incoherent with the number of locations.)");
 					status = element.get("status");
 					if (status == null || !status.isTextual())
 						throw new IllegalArgumentException("The JSON file is unvalid. (Error with the status value)");
@@ -341,13 +474,13 @@ public class GoogleDistances extends GoogleService
 									"The JSON file is unvalid. (Error with the distance/duration values.)");
 						distanceValue = distance.asInt();
 						durationValue = duration.asInt();
-						matrix.setDistance(request.origins[row], request.destinations[col], distanceValue);
-						matrix.setDuration(request.origins[row], request.destinations[col], durationValue);
+						elements[0][row * n + col] = distanceValue;
+						elements[1][row * n + col] = durationValue;
 					}
 					else if (statusValue.equals("ZERO_RESULTS"))
 					{
-						matrix.setDistance(request.origins[row], request.destinations[col], DataMatrix.NO_WAY);
-						matrix.setDuration(request.origins[row], request.destinations[col], DataMatrix.NO_WAY);
+						elements[0][row * n + col] = DataMatrix.NO_WAY;
+						elements[1][row * n + col] = DataMatrix.NO_WAY;
 					}
 					else if (statusValue.equals("NOT_FOUND"))
 						throw new LocationNotFoundException("One location was not found by google.");
@@ -361,6 +494,10 @@ public class GoogleDistances extends GoogleService
 							"The JSON file is unvalid. (The number of elements in the file are incoherent with the number of locations.)");
 				col = 0;
 			}
+			if (row != request.origins.length)
+				throw new IllegalArgumentException(
+						"The JSON file is unvalid. (The number of elements in the file are incoherent with the number of locations.)");
+			return elements;
 		}
 		catch (JsonParseException e)
 		{
@@ -0,0 +1,302 @@
+package dataLoader;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import locationsData.Location;
+
+/**
+ *  Write-behind buffer of the new rows of the database. The path data and the locations are kept in memory
+ *  then inserted by batches, in transactions of a bounded number of rows, instead of one request by row.
+ *  The path data are flushed as soon as a transaction is full, the locations when their ids are needed,
+ *  and everything when the database connection is closed.
+ *  The buffer is shared by the schedulings using the same database manager and can be used by several threads.
+ */
+public class InsertBuffer
+{
+	/** Default maximum number of rows inserted by transaction */
+	public static final int DEFAULT_TRANSACTION_SIZE = 1000;
+
+	/**
+	 *  Path data waiting to be inserted
+	 */
+	static class PathData
+	{
+		/** Origin location */
+		Location origin;
+
+		/** Destination location */
+		Location destination;
+
+		/** Distance between these locations */
+		int distance;
+
+		/** Duration between these locations */
+		int duration;
+
+		/**
+		 * Full constructor
+		 * @param origin Origin location
+		 * @param destination Destination location
+		 * @param distance Distance between these locations
+		 * @param duration Duration between these locations
+		 */
+		PathData(Location origin, Location destination, int distance, int duration)
+		{
+			this.origin = origin;
+			this.destination = destination;
+			this.distance = distance;
+			this.duration = duration;
+		}
+	}
+
+	/** Database manager used to insert the rows, also used as lock */
+	private DatabaseManager databaseManager;
+
+	/** Maximum number of rows inserted by transaction */
+	private int transactionSize = DEFAULT_TRANSACTION_SIZE;
+
+	/** Path data waiting to be inserted, in the order they were added */
+	private List<PathData> paths = new ArrayList<PathData>();
+
+	/** Locations waiting to be inserted, in the order they were added */
+	private List<Location> locations = new ArrayList<Location>();
+
+	/**
+	 * Constructor
+	 * @param databaseManager Database manager used to insert the rows
+	 */
+	InsertBuffer(DatabaseManager databaseManager)
+	{
+		this.databaseManager = databaseManager;
+	}
+
+	/**
+	 * Set the maximum number of rows inserted by transaction
+	 * @param transactionSize The number of rows
+	 */
+	public void setTransactionSize(int transactionSize)
+	{
+		if (transactionSize < 1)
+			throw new IllegalArgumentException("The transaction size must be a strictly positive integer.");
+		synchronized (databaseManager)
+		{
+			this.transactionSize = transactionSize;
+		}
+	}
+
+	/**
+	 * Return the maximum number of rows inserted by transaction
+	 * @return The number of rows
+	 */
+	public int getTransactionSize()
+	{
+		return transactionSize;
+	}
+
+	/**
+	 * Add a path data to insert. The path data waiting are inserted if a transaction is full.
+	 * @param origin The origin location, its id must be set
+	 * @param destination The destination location, its id must be set
+	 * @param distance The distance between these locations
+	 * @param duration The duration between these locations
+	 * @return The number of requests sent to the database
+	 * @throws SQLException If the insertion of the path data waiting returns an error
+	 */
+	public int addPathData(Location origin, Location destination, int distance, int duration) throws SQLException
+	{
+		synchronized (databaseManager)
+		{
+			paths.add(new PathData(origin, destination, distance, duration));
+			if (paths.size() >= transactionSize)
+			{
+				return flushPathsData();
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * Add a location to insert. Its id is known once the locations have been flushed.
+	 * A location having the same coordinates as a location waiting is ignored.
+	 * @param loc The location to insert
+	 */
+	public void addLocation(Location loc)
+	{
+		synchronized (databaseManager)
+		{
+			if (!isLocationWaiting(loc))
+			{
+				locations.add(loc);
+			}
+		}
+	}
+
+	/**
+	 * Return true if a location having the same coordinates is waiting to be inserted, false else
+	 * @param loc The location
+	 * @return true if it is waiting, false else
+	 */
+	public boolean isLocationWaiting(Location loc)
+	{
+		synchronized (databaseManager)
+		{
+			for (Location l : locations)
+			{
+				if (l.getLatitude() == loc.getLatitude() && l.getLongitude() == loc.getLongitude())
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Insert all the rows waiting, the locations first
+	 * @return The number of requests sent to the database
+	 * @throws SQLException If the insertion returns an error, the rows which couldn't be inserted are kept
+	 */
+	public int flush() throws SQLException
+	{
+		synchronized (databaseManager)
+		{
+			return flushLocations() + flushPathsData();
+		}
+	}
+
+	/**
+	 * Insert the locations waiting
+	 * @return The number of requests sent to the database
+	 * @throws SQLException If the insertion returns an error, the locations which couldn't be inserted are kept.
+	 * The exception gives their number and is followed by every error encountered, in order
+	 */
+	public int flushLocations() throws SQLException
+	{
+		synchronized (databaseManager)
+		{
+			List<Location> failed = new ArrayList<Location>();
+			SQLException error = null;
+			int requests = 0, end, flushed = locations.size();
+
+			for (int start = 0 ; start < locations.size() ; start = end)
+			{
+				end = Math.min(start + transactionSize, locations.size());
+				List<Location> transaction = locations.subList(start, end);
+				++requests;
+				try
+				{
+					databaseManager.insertLocations(transaction);
+				}
+				catch (SQLException e)
+				{
+					// The tables may not be transactional: only the locations which are still missing are inserted again
+					error = chain(error, e);
+					for (Location loc : transaction)
+					{
+						try
+						{
+							++requests;
+							if (databaseManager.getLocationId(loc) == DatabaseManager.UNSET_VALUE)
+							{
+								++requests;
+								databaseManager.insertLocation(loc);
+							}
+						}
+						catch (SQLException e1)
+						{
+							error = chain(error, e1);
+							failed.add(loc);
+						}
+					}
+				}
+			}
+			locations = failed;
+			if (!failed.isEmpty())
+				throw flushError(failed.size() + " of " + flushed + " locations", error);
+			return requests;
+		}
+	}
+
+	/**
+	 * Insert the path data waiting
+	 * @return The number of requests sent to the database
+	 * @throws SQLException If the insertion returns an error, the path data which couldn't be inserted are kept.
+	 * The exception gives their number and is followed by every error encountered, in order
+	 */
+	public int flushPathsData() throws SQLException
+	{
+		synchronized (databaseManager)
+		{
+			List<PathData> failed = new ArrayList<PathData>();
+			SQLException error = null;
+			int requests = 0, end, flushed = paths.size();
+
+			for (int start = 0 ; start < paths.size() ; start = end)
+			{
+				end = Math.min(start + transactionSize, paths.size());
+				List<PathData> transaction = paths.subList(start, end);
+				++requests;
+				try
+				{
+					databaseManager.insertPathsData(transaction);
+				}
+				catch (SQLException e)
+				{
+					// The tables may not be transactional: only the path data which are still missing are inserted again
+					error = chain(error, e);
+					for (PathData path : transaction)
+					{
+						try
+						{
+							++requests;
+							if (!databaseManager.existPathData(path.origin, path.destination))
+							{
+								++requests;
+								databaseManager.insertPathData(path.origin, path.destination, path.distance, path.duration);
+							}
+						}
+						catch (SQLException e1)
+						{
+							error = chain(error, e1);
+							failed.add(path);
+						}
+					}
+				}
+			}
+			paths = failed;
+			if (!failed.isEmpty())
+				throw flushError(failed.size() + " of " + flushed + " path data", error);
+			return requests;
+		}
+	}
+
+	/**
+	 * Add an error at the end of the errors encountered by a flush
+	 * @param errors the first error encountered, null if there is none
+	 * @param error the new error
+	 * @return the first error encountered
+	 */
+	private static SQLException chain(SQLException errors, SQLException error)
+	{
+		if (errors == null)
+			return error;
+		errors.setNextException(error);
+		return errors;
+	}
+
+	/**
+	 * Create the error thrown by a flush when some rows couldn't be inserted
+	 * @param rows the number of rows which couldn't be inserted, with the number of rows flushed
+	 * @param errors the first error encountered, followed by the other ones
+	 * @return the error, caused by the first error and followed by all of them
+	 */
+	private static SQLException flushError(String rows, SQLException errors)
+	{
+		SQLException flushError = new SQLException(rows + " couldn't be inserted, first error : " + errors.getMessage(),
+				errors.getSQLState(), errors.getErrorCode(), errors);
+		flushError.setNextException(errors);
+		return flushError;
+	}
+}
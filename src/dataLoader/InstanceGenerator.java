@@ -0,0 +1,364 @@
+package dataLoader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import locationsData.Bus;
+import locationsData.DataMatrix;
+import locationsData.Location;
+import locationsData.Path;
+import locationsData.Person;
+import locationsData.TrafficInformation;
+import antColonyOptimization.SolverData;
+import application.BusSchedulingException;
+
+/**
+ *  Generator of synthetic instances of the problem, used to test the solver on any size without spreadsheets,
+ *  database or Google requests. The instances only depend on the seed and on the settings.
+ *  The persons live at random locations of Joinville and go to a few points of interest (schools, clinics...):
+ *  some of them are taken in the morning to be deposited at a point of interest, the other ones are taken at
+ *  a point of interest at the end of the day to go back home. The bus start from a few depots where the drivers
+ *  swap. The distances are the great circle distances lengthened by a road factor and the traffic is heavier
+ *  at the rush hours.
+ */
+public class InstanceGenerator
+{
+	/** Minimum latitude of the locations, the south of Joinville */
+	public static final float MIN_LATITUDE = -26.4177f;
+
+	/** Maximum latitude of the locations, the north of Joinville */
+	public static final float MAX_LATITUDE = -26.225679f;
+
+	/** Minimum longitude of the locations, the west of Joinville */
+	public static final float MIN_LONGITUDE = -48.995132f;
+
+	/** Maximum longitude of the locations, the east of Joinville */
+	public static final float MAX_LONGITUDE = -48.669663f;
+
+	/** Mean radius of the Earth, in meters */
+	protected static final double EARTH_RADIUS = 6371000;
+
+	/** Ratio between the distance by road and the great circle distance */
+	protected static final double ROAD_FACTOR = 1.3;
+
+	/** Number of persons going to each point of interest, on average */
+	protected static final int PERSONS_BY_POINT = 20;
+
+	/** Number of bus starting from each depot, on average */
+	protected static final int BUS_BY_DEPOT = 10;
+
+	/** The times of the paths are multiple of this duration, in seconds */
+	protected static final int TIME_ROUNDING = 5 * 60;
+
+	/** Seed of the random generator */
+	protected long seed;
+
+	/** Number of paths */
+	protected int pathsNumber = 100;
+
+	/** Number of bus */
+	protected int busNumber = 5;
+
+	/** Ratio of the persons in wheel chair */
+	protected float wheelchairRatio = 0.1f;
+
+	/** Ratio of the persons going back home at the end of the day, the other ones go to a point of interest */
+	protected float returnRatio = 0.4f;
+
+	/** Ratio of the persons going to a point of interest who can't be taken before a given time */
+	protected float pickupWindowRatio = 0.2f;
+
+	/** Number of wheel chairs seats of each bus */
+	protected int wheelchairSeats = 2;
+
+	/** Number of non wheel chairs seats of each bus */
+	protected int seats = 20;
+
+	/** Speed of the bus without traffic, in meters by second */
+	protected double speed = 25 / 3.6;
+
+	/** Factor applied to the rush hours increase of the durations, 0 for no traffic */
+	protected float trafficIntensity = 1;
+
+	/**
+	 * Full constructor
+	 * @param seed the seed of the random generator, the same seed and settings always give the same instance
+	 */
+	public InstanceGenerator(long seed)
+	{
+		this.seed = seed;
+	}
+
+	/**
+	 * Generate an instance
+	 * @return the data of the instance, containing the matrix, the paths, the bus and the traffic
+	 * @throws BusSchedulingException if the instance can't be created
+	 */
+	public SolverData generate() throws BusSchedulingException
+	{
+		Random random = new Random(seed);
+		List<Location> locations = new ArrayList<Location>();
+		List<Location> depots = createLocations("Garagem", (busNumber + BUS_BY_DEPOT - 1) / BUS_BY_DEPOT, random);
+		List<Location> points = createLocations("Ponto de interesse", (pathsNumber + PERSONS_BY_POINT - 1)
+				/ PERSONS_BY_POINT, random);
+		List<Location> homes = createLocations("Casa", pathsNumber, random);
+		List<Path> paths = new ArrayList<Path>(pathsNumber);
+		List<Bus> bus = new ArrayList<Bus>(busNumber);
+		DataMatrix matrix;
+
+		locations.addAll(depots);
+		locations.addAll(points);
+		locations.addAll(homes);
+		matrix = createMatrix(locations);
+
+		for (int i = 0 ; i < busNumber ; i++)
+		{
+			Location depot = depots.get(i % depots.size());
+			bus.add(new Bus(String.valueOf(i + 1), "Motorista " + (i + 1), "", wheelchairSeats, seats, depot, depot, -1));
+		}
+		for (int i = 0 ; i < pathsNumber ; i++)
+		{
+			paths.add(createPath(i, homes.get(i), points.get(random.nextInt(points.size())), matrix, random));
+		}
+		return new SolverData(matrix, paths, bus, createTraffic());
+	}
+
+	/**
+	 * Create locations at random coordinates of Joinville
+	 * @param name the name of the locations, followed by their number
+	 * @param count the number of locations
+	 * @param random the random generator
+	 * @return the locations
+	 * @throws BusSchedulingException if a location can't be created
+	 */
+	protected List<Location> createLocations(String name, int count, Random random) throws BusSchedulingException
+	{
+		List<Location> locations = new ArrayList<Location>(count);
+		for (int i = 1 ; i <= count ; i++)
+		{
+			locations.add(new Location(name + " " + i, "Rua " + name.toLowerCase() + " " + i, "Bairro "
+					+ (random.nextInt(40) + 1), null, null, MIN_LATITUDE + random.nextFloat()
+					* (MAX_LATITUDE - MIN_LATITUDE), MIN_LONGITUDE + random.nextFloat() * (MAX_LONGITUDE - MIN_LONGITUDE)));
+		}
+		return locations;
+	}
+
+	/**
+	 * Create the matrix of the locations, with the road distances and the durations without traffic
+	 * @param locations the locations
+	 * @return the matrix
+	 */
+	protected DataMatrix createMatrix(List<Location> locations)
+	{
+		DataMatrix matrix = new DataMatrix(locations);
+		int distance;
+
+		for (Location origin : locations)
+		{
+			for (Location destination : locations)
+			{
+				distance = (int) (getGreatCircleDistance(origin, destination) * ROAD_FACTOR);
+				matrix.setDistance(origin, destination, distance);
+				matrix.setDuration(origin, destination, (int) (distance / speed));
+			}
+		}
+		return matrix;
+	}
+
+	/**
+	 * Create the path of a person
+	 * @param number the number of the person
+	 * @param home the home of the person
+	 * @param point the point of interest the person goes to or comes back from
+	 * @param matrix the matrix containing the durations
+	 * @param random the random generator
+	 * @return the path
+	 */
+	protected Path createPath(int number, Location home, Location point, DataMatrix matrix, Random random)
+	{
+		Person person = new Person("Pessoa " + (number + 1), random.nextFloat() < wheelchairRatio);
+		int wished, minimum, duration;
+
+		if (random.nextFloat() < returnRatio)
+		{
+			// Taken at the end of the activity, between 16h30 and 18h30, and back home as soon as possible
+			minimum = round(16 * 3600 + 1800 + random.nextInt(2 * 3600));
+			duration = matrix.getDuration(point, home);
+			wished = round(minimum + duration + 1800 + random.nextInt(1800));
+			return new Path(point, home, minimum, wished, person);
+		}
+
+		// Deposited at the beginning of the activity, mostly between 7h and 9h, sometimes during the day
+		if (random.nextInt(4) > 0)
+		{
+			wished = round(7 * 3600 + random.nextInt(2 * 3600));
+		}
+		else
+		{
+			wished = round(9 * 3600 + random.nextInt(6 * 3600));
+		}
+		if (random.nextFloat() < pickupWindowRatio)
+		{
+			duration = matrix.getDuration(home, point);
+			minimum = round(wished - duration - 1800 - random.nextInt(3600));
+			return new Path(home, point, minimum, wished, person);
+		}
+		return new Path(home, point, wished, person);
+	}
+
+	/**
+	 * Create the traffic coefficients of the day, every 10 minutes: rush hours around 7h30 and 17h45
+	 * and a lighter one around 12h15
+	 * @return the traffic information
+	 */
+	protected TrafficInformation createTraffic()
+	{
+		TrafficInformation traffic = new TrafficInformation();
+		int step = TrafficInformation.DEFAULT_RESOLUTION;
+		double hour, coefficient;
+
+		for (int start = 0 ; start < TrafficInformation.DAY ; start += step)
+		{
+			hour = (start + step / 2) / 3600.0;
+			coefficient = 0.6 * getPeak(hour, 7.5) + 0.2 * getPeak(hour, 12.25) + 0.7 * getPeak(hour, 17.75);
+			coefficient = 1 + Math.round(coefficient * trafficIntensity * 20) / 20.0;
+			traffic.addCoefficient(start, start + step,
+					(float) Math.min(coefficient, TrafficInformation.MAX_COEFFICIENT));
+		}
+		return traffic;
+	}
+
+	/**
+	 * Return the intensity of a rush hour
+	 * @param hour the hour
+	 * @param center the hour when the traffic is the heaviest
+	 * @return the intensity, 1 at the center and decreasing in about one hour
+	 */
+	protected static double getPeak(double hour, double center)
+	{
+		return Math.exp(-(hour - center) * (hour - center) / (2 * 0.75 * 0.75));
+	}
+
+	/**
+	 * Round a time to the nearest multiple of the rounding, keeping it in the day
+	 * @param time the time in seconds
+	 * @return the rounded time
+	 */
+	protected static int round(int time)
+	{
+		time = Math.round((float) time / TIME_ROUNDING) * TIME_ROUNDING;
+		return Math.max(TIME_ROUNDING, Math.min(time, 24 * 3600 - TIME_ROUNDING));
+	}
+
+	/**
+	 * Return the great circle distance between two locations (haversine formula)
+	 * @param origin the origin location
+	 * @param destination the destination location
+	 * @return the distance in meters
+	 */
+	protected static double getGreatCircleDistance(Location origin, Location destination)
+	{
+		double latitude1 = Math.toRadians(origin.getLatitude()), latitude2 = Math.toRadians(destination.getLatitude());
+		double sinLatitude = Math.sin((latitude2 - latitude1) / 2);
+		double sinLongitude = Math.sin(Math.toRadians(destination.getLongitude() - origin.getLongitude()) / 2);
+		double a = sinLatitude * sinLatitude + Math.cos(latitude1) * Math.cos(latitude2) * sinLongitude * sinLongitude;
+		return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+	}
+
+	/**
+	 * Update the number of paths
+	 * @param pathsNumber the number of paths, one for each person
+	 */
+	public void setPathsNumber(int pathsNumber)
+	{
+		if (pathsNumber < 1)
+			throw new IllegalArgumentException("The paths number must be a strictly positive integer.");
+		this.pathsNumber = pathsNumber;
+	}
+
+	/**
+	 * Update the number of bus
+	 * @param busNumber the number of bus
+	 */
+	public void setBusNumber(int busNumber)
+	{
+		if (busNumber < 1)
+			throw new IllegalArgumentException("The bus number must be a strictly positive integer.");
+		this.busNumber = busNumber;
+	}
+
+	/**
+	 * Update the ratio of the persons in wheel chair
+	 * @param ratio the ratio, between 0 and 1
+	 */
+	public void setWheelchairRatio(float ratio)
+	{
+		this.wheelchairRatio = checkRatio(ratio);
+	}
+
+	/**
+	 * Update the ratio of the persons going back home at the end of the day
+	 * @param ratio the ratio, between 0 and 1
+	 */
+	public void setReturnRatio(float ratio)
+	{
+		this.returnRatio = checkRatio(ratio);
+	}
+
+	/**
+	 * Update the ratio of the persons going to a point of interest who can't be taken before a given time
+	 * @param ratio the ratio, between 0 and 1
+	 */
+	public void setPickupWindowRatio(float ratio)
+	{
+		this.pickupWindowRatio = checkRatio(ratio);
+	}
+
+	/**
+	 * Update the number of seats of each bus
+	 * @param wheelchairSeats the number of wheel chairs seats
+	 * @param seats the number of non wheel chairs seats
+	 */
+	public void setSeats(int wheelchairSeats, int seats)
+	{
+		if (wheelchairSeats < 0 || seats < 1)
+			throw new IllegalArgumentException("A bus must have at least one non wheel chair seat.");
+		this.wheelchairSeats = wheelchairSeats;
+		this.seats = seats;
+	}
+
+	/**
+	 * Update the speed of the bus without traffic
+	 * @param speed the speed in kilometers by hour
+	 */
+	public void setSpeed(double speed)
+	{
+		if (speed <= 0)
+			throw new IllegalArgumentException("The speed must be strictly positive.");
+		this.speed = speed / 3.6;
+	}
+
+	/**
+	 * Update the factor applied to the rush hours increase of the durations
+	 * @param intensity the factor, 0 for no traffic
+	 */
+	public void setTrafficIntensity(float intensity)
+	{
+		if (intensity < 0)
+			throw new IllegalArgumentException("The traffic intensity must be positive.");
+		this.trafficIntensity = intensity;
+	}
+
+	/**
+	 * Check that a ratio is between 0 and 1
+	 * @param ratio the ratio
+	 * @return the ratio
+	 */
+	protected static float checkRatio(float ratio)
+	{
+		if (ratio < 0 || ratio > 1)
+			throw new IllegalArgumentException("A ratio must be between 0 and 1.");
+		return ratio;
+	}
+}
@@ -0,0 +1,179 @@
+package dataLoader;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *  Database connection of a connection pool. The statements of the fixed requests are prepared once by
+ *  connection and kept until the connection is closed. A pooled connection is used by one thread at a time,
+ *  between its checkout from the pool and its release.
+ */
+public class PooledConnection
+{
+	/** The database connection */
+	private Connection connection;
+
+	/** Prepared statements by request */
+	private Map<String, PreparedStatement> statements = new HashMap<String, PreparedStatement>();
+
+	/** Time of the last release to the pool, in milliseconds */
+	private long lastUse = System.currentTimeMillis();
+
+	/**
+	 * Constructor
+	 * @param connection The database connection
+	 */
+	PooledConnection(Connection connection)
+	{
+		this.connection = connection;
+	}
+
+	/**
+	 * Return the prepared statement of a request, prepared at its first use on this connection.
+	 * The statement must not be closed, it is closed with the connection.
+	 * @param s The request to prepare
+	 * @return The prepared statement, without parameters
+	 * @throws SQLException If the prepare statement creation returns an error
+	 */
+	public PreparedStatement prepareStatement(String s) throws SQLException
+	{
+		PreparedStatement ps = statements.get(s);
+		if (ps == null)
+		{
+			ps = connection.prepareStatement(s);
+			statements.put(s, ps);
+		}
+		else
+		{
+			ps.clearParameters();
+			ps.clearBatch();
+		}
+		return ps;
+	}
+
+	/**
+	 * Return a prepared statement whose results are streamed row by row instead of being loaded in memory.
+	 * The statement isn't kept, it must be closed by the caller. The connection can't be used by another
+	 * request until the result set is closed.
+	 * @param s The request to prepare
+	 * @return The prepared statement
+	 * @throws SQLException If the prepare statement creation returns an error
+	 */
+	public PreparedStatement prepareStreamingStatement(String s) throws SQLException
+	{
+		PreparedStatement ps = connection.prepareStatement(s, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		// The MySQL driver streams the rows with this fetch size
+		ps.setFetchSize(Integer.MIN_VALUE);
+		return ps;
+	}
+
+	/**
+	 * Start a transaction, the next requests are only saved by commit
+	 * @throws SQLException If the database returns an error
+	 */
+	public void beginTransaction() throws SQLException
+	{
+		connection.setAutoCommit(false);
+	}
+
+	/**
+	 * Save the requests of the current transaction and go back to the auto-commit mode
+	 * @throws SQLException If the database returns an error
+	 */
+	public void commit() throws SQLException
+	{
+		connection.commit();
+		connection.setAutoCommit(true);
+	}
+
+	/**
+	 * Cancel the requests of the current transaction and go back to the auto-commit mode
+	 * @throws SQLException If the database returns an error
+	 */
+	public void rollback() throws SQLException
+	{
+		try
+		{
+			connection.rollback();
+		}
+		finally
+		{
+			connection.setAutoCommit(true);
+		}
+	}
+
+	/**
+	 * Return true if the connection still works, false else
+	 * @param timeout The maximum time to wait for the database answer, in seconds
+	 * @return true if the connection is valid, false else
+	 */
+	boolean isValid(int timeout)
+	{
+		try
+		{
+			return connection.isValid(timeout);
+		}
+		catch (SQLException e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Return true if the connection has been closed, for example after a network error
+	 * @return true if the connection is closed, false else
+	 */
+	boolean isClosed()
+	{
+		try
+		{
+			return connection.isClosed();
+		}
+		catch (SQLException e)
+		{
+			return true;
+		}
+	}
+
+	/**
+	 * Return the time of the last release to the pool
+	 * @return The time in milliseconds
+	 */
+	long getLastUse()
+	{
+		return lastUse;
+	}
+
+	/**
+	 * Save the time of the release to the pool
+	 */
+	void setLastUse()
+	{
+		lastUse = System.currentTimeMillis();
+	}
+
+	/**
+	 * Close the prepared statements then the connection, the errors are ignored
+	 */
+	void close()
+	{
+		for (PreparedStatement ps : statements.values())
+		{
+			try
+			{
+				ps.close();
+			}
+			catch (SQLException e) {}
+		}
+		statements.clear();
+		try
+		{
+			connection.close();
+		}
+		catch (SQLException e) {}
+	}
+}
@@ -0,0 +1,71 @@
+package dataLoader;
+
+/**
+ *  Rate limiter of the requests sent to a web service. The bucket holds up to a capacity of tokens and is
+ *  refilled at a constant rate, a request takes as many tokens as its cost and waits while the bucket is empty.
+ *  The bucket can be shared by several threads.
+ */
+public class TokenBucket
+{
+	/** Maximum number of tokens */
+	private final double capacity;
+
+	/** Number of tokens added by millisecond */
+	private final double ratePerMillisecond;
+
+	/** Number of tokens available at the last refill */
+	private double tokens;
+
+	/** Time of the last refill, in milliseconds */
+	private long lastRefill;
+
+	/**
+	 * Constructor, the bucket is full
+	 * @param capacity Maximum number of tokens, taken at once by a burst of requests
+	 * @param tokensNumber Number of tokens added to the bucket by period
+	 * @param period Refill period, in milliseconds
+	 */
+	public TokenBucket(int capacity, int tokensNumber, long period)
+	{
+		if (capacity < 1 || tokensNumber < 1 || period < 1)
+			throw new IllegalArgumentException("The capacity, the tokens number and the period must be strictly positive.");
+		this.capacity = capacity;
+		this.ratePerMillisecond = tokensNumber / (double) period;
+		this.tokens = capacity;
+		this.lastRefill = System.currentTimeMillis();
+	}
+
+	/**
+	 * Take tokens from the bucket, waiting for them if needed
+	 * @param cost Number of tokens to take, limited to the capacity
+	 * @return The time waited, in milliseconds
+	 * @throws InterruptedException If the thread is interrupted while waiting
+	 */
+	public synchronized long acquire(int cost) throws InterruptedException
+	{
+		double needed = Math.min(cost, capacity);
+		long waited = 0, wait;
+
+		refill();
+		while (tokens < needed)
+		{
+			wait = (long) Math.ceil((needed - tokens) / ratePerMillisecond);
+			// The other threads can take the tokens refilled while this one waits
+			wait(wait);
+			waited += wait;
+			refill();
+		}
+		tokens -= needed;
+		return waited;
+	}
+
+	/**
+	 * Add the tokens earned since the last refill
+	 */
+	private void refill()
+	{
+		long now = System.currentTimeMillis();
+		tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerMillisecond);
+		lastRefill = now;
+	}
+}
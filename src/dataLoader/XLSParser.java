@@ -26,6 +26,7 @@ import antColonyOptimization.Partition;
 import antColonyOptimization.Route;
 import application.BusScheduling;
 import application.BusSchedulingException;
+import application.Metrics;
 
 /** 
  * XLS parser used for parsing people and interest points locations saved in XLS files.
@@ -47,6 +48,21 @@ public class XLSParser
 	/** Each traffic time frame has a duration value defined by this attribute */
 	private static final int TRAFFIC_STEP = 10 * 60;
 
+	/** Lock of the input workbooks, which can be written by several schedulings run at the same time */
+	private static final Object WORKBOOKS_LOCK = new Object();
+
+	/** Metrics counting the rows read and the routes written, null if they are not counted */
+	private Metrics metrics;
+
+	/**
+	 * Set the metrics counting the rows read and the routes written
+	 * @param metrics the metrics, null to stop counting
+	 */
+	public void setMetrics(Metrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
 	/**
 	 * Parse the XLS configuration file
 	 * @param file XLS file path
@@ -280,6 +296,10 @@ public class XLSParser
 					+ "). (A compulsory field is missing)");
 		parseTrafficCoefficients(w.getSheet(1), traffic);
 		w.close();
+		if (metrics != null)
+		{
+			metrics.add(Metrics.ROWS_READ, bus.size() + TRAFFIC_ROWS);
+		}
 	}
 
 	/**
@@ -294,7 +314,8 @@ public class XLSParser
 		float coeff;
 		String tmpCoeff;
 		int trafficRow = 2, trafficStartHour = 0;
-		traffic = new TrafficInformation(TRAFFIC_COLS * TRAFFIC_ROWS);
+		// The given traffic is filled, so that the caller gets the coefficients
+		traffic.clear();
 
 		for (int i = trafficRow ; i < trafficRow + TRAFFIC_ROWS ; ++i)
 		{
@@ -515,6 +536,10 @@ public class XLSParser
 			throw new BusSchedulingException("Um campo obrigatório falta (linha " + (row + 1)
 					+ "). (A compulsory field is missing)");
 		w.close();
+		if (metrics != null)
+		{
+			metrics.add(Metrics.ROWS_READ, paths.size());
+		}
 		return paths;
 	}
 
@@ -524,49 +549,52 @@ public class XLSParser
 	 * @param bus Data
 	 * @throws Exception 
 	 */
-	public synchronized void writeConfigurationCoordinates(File file, Bus bus[]) throws Exception
+	public void writeConfigurationCoordinates(File file, Bus bus[]) throws Exception
 	{
-		WritableCellFormat format;
-		WorkbookSettings ws = new WorkbookSettings();
-		ws.setSuppressWarnings(true);
-		ws.setEncoding("ISO-8859-1");
-		Workbook modelWorkbook = Workbook.getWorkbook(file, ws);
-		WritableWorkbook workbook = Workbook.createWorkbook(file, modelWorkbook, ws);
-		try
+		synchronized (WORKBOOKS_LOCK)
 		{
-			WritableSheet sheet = workbook.getSheet(0);
-			int row = 20;
-
-			for (Bus b : bus)
+			WritableCellFormat format;
+			WorkbookSettings ws = new WorkbookSettings();
+			ws.setSuppressWarnings(true);
+			ws.setEncoding("ISO-8859-1");
+			Workbook modelWorkbook = Workbook.getWorkbook(file, ws);
+			WritableWorkbook workbook = Workbook.createWorkbook(file, modelWorkbook, ws);
+			try
 			{
-				if (!b.getOrigin().isCoordinatesFilled())
-				{
-					format = new WritableCellFormat(sheet.getCell(9, row).getCellFormat());
-					sheet.addCell(new Label(9, row, Float.toString(b.getOrigin().getLatitude()), format));
+				WritableSheet sheet = workbook.getSheet(0);
+				int row = 20;
 
-					format = new WritableCellFormat(sheet.getCell(10, row).getCellFormat());
-					sheet.addCell(new Label(10, row, Float.toString(b.getOrigin().getLongitude()), format));
-				}
-				if (!b.getDriverSwap().isCoordinatesFilled())
+				for (Bus b : bus)
 				{
-					format = new WritableCellFormat(sheet.getCell(14, row).getCellFormat());
-					sheet.addCell(new Label(14, row, Float.toString(b.getDriverSwap().getLatitude()), format));
-
-					format = new WritableCellFormat(sheet.getCell(15, row).getCellFormat());
-					sheet.addCell(new Label(15, row, Float.toString(b.getDriverSwap().getLongitude()), format));
+					if (!b.getOrigin().isCoordinatesFilled())
+					{
+						format = new WritableCellFormat(sheet.getCell(9, row).getCellFormat());
+						sheet.addCell(new Label(9, row, Float.toString(b.getOrigin().getLatitude()), format));
+
+						format = new WritableCellFormat(sheet.getCell(10, row).getCellFormat());
+						sheet.addCell(new Label(10, row, Float.toString(b.getOrigin().getLongitude()), format));
+					}
+					if (!b.getDriverSwap().isCoordinatesFilled())
+					{
+						format = new WritableCellFormat(sheet.getCell(14, row).getCellFormat());
+						sheet.addCell(new Label(14, row, Float.toString(b.getDriverSwap().getLatitude()), format));
+
+						format = new WritableCellFormat(sheet.getCell(15, row).getCellFormat());
+						sheet.addCell(new Label(15, row, Float.toString(b.getDriverSwap().getLongitude()), format));
+					}
+					++row;
 				}
-				++row;
+				workbook.write();
+				workbook.close();
+				modelWorkbook.close();
+			}
+			catch (Exception e)
+			{
+				workbook.write();
+				workbook.close();
+				modelWorkbook.close();
+				throw new Exception(e.getCause());
 			}
-			workbook.write();
-			workbook.close();
-			modelWorkbook.close();
-		}
-		catch (Exception e)
-		{
-			workbook.write();
-			workbook.close();
-			modelWorkbook.close();
-			throw new Exception(e.getCause());
 		}
 	}
 
@@ -577,63 +605,66 @@ public class XLSParser
 	 * @throws BusSchedulingException 
 	 * @throws Exception 
 	 */
-	public synchronized void writePathsCoordinates(File file, List<Path> paths)
+	public void writePathsCoordinates(File file, List<Path> paths)
 			throws BusSchedulingException, Exception
 	{
-		WritableCellFormat format;
-		WorkbookSettings ws = new WorkbookSettings();
-		ws.setSuppressWarnings(true);
-		ws.setEncoding("ISO-8859-1");
-		Workbook modelWorkbook = Workbook.getWorkbook(file, ws);
-		WritableWorkbook workbook = Workbook.createWorkbook(file, modelWorkbook, ws);
-		try
+		synchronized (WORKBOOKS_LOCK)
 		{
-			WritableSheet sheet = workbook.getSheet(0);
-			int row = 9;
-
-			for (Path p : paths)
+			WritableCellFormat format;
+			WorkbookSettings ws = new WorkbookSettings();
+			ws.setSuppressWarnings(true);
+			ws.setEncoding("ISO-8859-1");
+			Workbook modelWorkbook = Workbook.getWorkbook(file, ws);
+			WritableWorkbook workbook = Workbook.createWorkbook(file, modelWorkbook, ws);
+			try
 			{
-				if (p.getOrigin().getLatitude() == p.getDestination().getLatitude()
-						&& p.getOrigin().getLongitude() == p.getDestination().getLongitude())
-					throw new BusSchedulingException(
-							"Um trajeto entrado possui côordenadas de partida"
-									+ " e de destino idênticas (linha "
-									+ (row + 1)
-									+ "). Isto talvez causado por lugares não encontrados.\n(Same coordinates for departure and destination in a path entered. Please check locations entered)");
+				WritableSheet sheet = workbook.getSheet(0);
+				int row = 9;
 
-				if (!p.getOrigin().isCoordinatesFilled())
+				for (Path p : paths)
 				{
-					format = new WritableCellFormat(sheet.getCell(8, row).getCellFormat());
-					sheet.addCell(new Label(8, row, Float.toString(p.getOrigin().getLatitude()), format));
-
-					format = new WritableCellFormat(sheet.getCell(9, row).getCellFormat());
-					sheet.addCell(new Label(9, row, Float.toString(p.getOrigin().getLongitude()), format));
-				}
-
-				if (!p.getDestination().isCoordinatesFilled())
-				{
-					format = new WritableCellFormat(sheet.getCell(14, row).getCellFormat());
-					sheet.addCell(new Label(14, row, Float.toString(p.getDestination().getLatitude()), format));
-
-					format = new WritableCellFormat(sheet.getCell(15, row).getCellFormat());
-					sheet.addCell(new Label(15, row, Float.toString(p.getDestination().getLongitude()),
-							format));
+					if (p.getOrigin().getLatitude() == p.getDestination().getLatitude()
+							&& p.getOrigin().getLongitude() == p.getDestination().getLongitude())
+						throw new BusSchedulingException(
+								"Um trajeto entrado possui côordenadas de partida"
+										+ " e de destino idênticas (linha "
+										+ (row + 1)
+										+ "). Isto talvez causado por lugares não encontrados.\n(Same coordinates for departure and destination in a path entered. Please check locations entered)");
+
+					if (!p.getOrigin().isCoordinatesFilled())
+					{
+						format = new WritableCellFormat(sheet.getCell(8, row).getCellFormat());
+						sheet.addCell(new Label(8, row, Float.toString(p.getOrigin().getLatitude()), format));
+
+						format = new WritableCellFormat(sheet.getCell(9, row).getCellFormat());
+						sheet.addCell(new Label(9, row, Float.toString(p.getOrigin().getLongitude()), format));
+					}
+
+					if (!p.getDestination().isCoordinatesFilled())
+					{
+						format = new WritableCellFormat(sheet.getCell(14, row).getCellFormat());
+						sheet.addCell(new Label(14, row, Float.toString(p.getDestination().getLatitude()), format));
+
+						format = new WritableCellFormat(sheet.getCell(15, row).getCellFormat());
+						sheet.addCell(new Label(15, row, Float.toString(p.getDestination().getLongitude()),
+								format));
+					}
+					++row;
 				}
-				++row;
+				workbook.write();
+				workbook.close();
+				modelWorkbook.close();
+			}
+			catch (Exception e)
+			{
+				workbook.write();
+				workbook.close();
+				modelWorkbook.close();
+				if (e instanceof BusSchedulingException)
+					throw new BusSchedulingException(e.getMessage());
+				else
+					throw new Exception(e.getCause());
 			}
-			workbook.write();
-			workbook.close();
-			modelWorkbook.close();
-		}
-		catch (Exception e)
-		{
-			workbook.write();
-			workbook.close();
-			modelWorkbook.close();
-			if (e instanceof BusSchedulingException)
-				throw new BusSchedulingException(e.getMessage());
-			else
-				throw new Exception(e.getCause());
 		}
 	}
 
@@ -667,6 +698,10 @@ public class XLSParser
 			{
 				writeRouteResults(workbook.getSheet(i), bus[i], partition.getRoutes().get(i));
 			}
+			if (metrics != null)
+			{
+				metrics.add(Metrics.ROUTES_WRITTEN, bus.length);
+			}
 
 			workbook.write();
 			workbook.close();
@@ -22,19 +22,58 @@ public class DataMatrix
 	/** The list of the different locations */
 	protected List<Location> locations;
 
-	/** Map of data containing the duration and the distance */
-	protected Map<Location, Map<Location, Data>> data = new HashMap<Location, Map<Location, Data>>();
+	/** The distinct locations, ordered by their index in the matrix */
+	protected List<Location> indexedLocations;
 
-	/** Internal class that store all information about the path between 2 locations */
-	protected class Data
-	{
-		/** Distance between the 2 locations */
-		public int distance = UNKNOW_VALUE;
-		/** Duration between 2 locations */
-		public int duration = UNKNOW_VALUE;
-		/** Pheromones between two locations */
-		public double pheromones = UNKNOW_VALUE;
-	}
+	/** Map giving the index in the matrix of each location */
+	protected Map<Location, Integer> indexes = new HashMap<Location, Integer>();
+
+	/** Number of distinct locations, which is the number of lines and columns of the matrix */
+	protected int dimension;
+
+	/** Distances between the locations, stored line after line (origin index * dimension + destination index) */
+	protected int[] distances;
+
+	/** Durations between the locations, stored line after line */
+	protected int[] durations;
+
+	/** Pheromones between the locations divided by the pheromones scale, stored line after line.
+	 * The evaporation only modifies the scale, so the real pheromones value of a cell
+	 * is its stored value multiplied by the scale, bounded by the minimum pheromones. */
+	protected double[] pheromones;
+
+	/** Factor applied to all the stored pheromones, decreased by the evaporation */
+	protected double pheromonesScale = 1;
+
+	/** Minimum amount of pheromones on a trail */
+	protected double minPheromones = Double.NEGATIVE_INFINITY;
+
+	/** Maximum amount of pheromones on a trail */
+	protected double maxPheromones = Double.POSITIVE_INFINITY;
+
+	/** Cells whose pheromones were modified since the last evaporation */
+	protected int[] modifiedCells;
+
+	/** Number of cells in the modified cells array */
+	protected int modifiedCount = 0;
+
+	/** Says for each cell if it is in the modified cells array */
+	protected boolean[] modified;
+
+	/** true if all the cells were modified since the last evaporation */
+	protected boolean allModified = false;
+
+	/** Cells whose stored pheromones were modified before the last evaporation, read by the caches of the pheromones */
+	protected int[] updatedCells;
+
+	/** Number of cells in the updated cells array */
+	protected int updatedCount = 0;
+
+	/** true if all the stored pheromones were modified before the last evaporation */
+	protected boolean allUpdated = true;
+
+	/** Value under which the pheromones scale is applied to all the cells, in order to avoid underflows */
+	protected static final double MIN_PHEROMONES_SCALE = 1E-100;
 
 	/**
 	 * Constructor by array
@@ -56,24 +95,54 @@ public class DataMatrix
 		if (locations == null)
 			throw new NullPointerException("You can't give a null location list to the matrix.");
 		this.locations = new ArrayList<Location>(locations);
-		// for each origin locations
-		for (Location origin : locations)
+		this.indexedLocations = new ArrayList<Location>(locations.size());
+		// for each location we give an index if an equal location has not already one
+		for (Location location : locations)
 		{
 			// we test if the location is not null
-			if (origin == null)
+			if (location == null)
 				throw new NullPointerException("You can't give a null location to the matrix.");
-			// for each destination we create a map with a new Data
-			Map<Location, Data> tmp = new HashMap<Location, Data>();
-			for (Location destination : locations)
+			if (!indexes.containsKey(location))
 			{
-				tmp.put(destination, new Data());
+				indexes.put(location, indexedLocations.size());
+				indexedLocations.add(location);
 			}
-			// then we add it to the global map
-			data.put(origin, tmp);
 		}
-		// consequence => we build a double map where the first access is the
-		// origin, the second is the destination and finally the result is the
-		// data
+		// then we build the arrays, a cell being shared by all the equal locations
+		dimension = indexedLocations.size();
+		distances = new int[dimension * dimension];
+		durations = new int[dimension * dimension];
+		pheromones = new double[dimension * dimension];
+		modifiedCells = new int[dimension * dimension];
+		updatedCells = new int[dimension * dimension];
+		modified = new boolean[dimension * dimension];
+		Arrays.fill(distances, UNKNOW_VALUE);
+		Arrays.fill(durations, UNKNOW_VALUE);
+		Arrays.fill(pheromones, UNKNOW_VALUE);
+	}
+
+	/**
+	 * Constructor by copy. The locations, the distances and the durations are shared with the given matrix,
+	 * only the pheromones are copied. This permits to run several solvers on the same locations, each one 
+	 * with its own pheromones.
+	 * @param matrix the matrix to copy
+	 */
+	public DataMatrix(DataMatrix matrix)
+	{
+		this.locations = matrix.locations;
+		this.indexedLocations = matrix.indexedLocations;
+		this.indexes = matrix.indexes;
+		this.dimension = matrix.dimension;
+		this.distances = matrix.distances;
+		this.durations = matrix.durations;
+		this.pheromones = matrix.pheromones.clone();
+		this.pheromonesScale = matrix.pheromonesScale;
+		this.minPheromones = matrix.minPheromones;
+		this.maxPheromones = matrix.maxPheromones;
+		this.modifiedCells = new int[dimension * dimension];
+		this.updatedCells = new int[dimension * dimension];
+		this.modified = new boolean[dimension * dimension];
+		this.allModified = true;
 	}
 
 	/**
@@ -85,6 +154,30 @@ public class DataMatrix
 		return locations;
 	}
 
+	/**
+	 * Return the index of a location in the matrix. Equal locations have the same index.
+	 * @param location the location
+	 * @return the index of the location, between 0 and the matrix dimension
+	 * @throws IllegalArgumentException if the location is unknown
+	 */
+	public int getIndex(Location location) throws IllegalArgumentException
+	{
+		Integer index = indexes.get(location);
+		if (index == null)
+			throw new IllegalArgumentException("Location given in parameter is unknown.");
+		return index;
+	}
+
+	/**
+	 * Return the location having the given index in the matrix
+	 * @param index the index of the location
+	 * @return the location
+	 */
+	public Location getLocation(int index)
+	{
+		return indexedLocations.get(index);
+	}
+
 	/**
 	 * Return the distance between 2 points of the matrix
 	 * @param origin Origin point
@@ -93,7 +186,7 @@ public class DataMatrix
 	 */
 	public int getDistance(Location origin, Location destination)
 	{
-		return data.get(origin).get(destination).distance;
+		return distances[getCell(origin, destination)];
 	}
 
 	/**
@@ -104,7 +197,7 @@ public class DataMatrix
 	 */
 	public int getDuration(Location origin, Location destination)
 	{
-		return data.get(origin).get(destination).duration;
+		return durations[getCell(origin, destination)];
 	}
 
 	/**
@@ -115,7 +208,7 @@ public class DataMatrix
 	 */
 	public double getPheromones(Location origin, Location destination)
 	{
-		return data.get(origin).get(destination).pheromones;
+		return getCellPheromones(getCell(origin, destination));
 	}
 
 	/**
@@ -128,7 +221,7 @@ public class DataMatrix
 	public void setDistance(Location origin, Location destination, int distance)
 			throws IllegalArgumentException
 	{
-		data.get(origin).get(destination).distance = distance;
+		distances[getCell(origin, destination)] = distance;
 	}
 
 	/**
@@ -141,43 +234,284 @@ public class DataMatrix
 	public void setDuration(Location origin, Location destination, int duration)
 			throws IllegalArgumentException
 	{
-		data.get(origin).get(destination).duration = duration;
+		durations[getCell(origin, destination)] = duration;
 	}
 
 	/**
 	 * Setter for a pheromone between two locations.
-	 * NB: arguments values are not controlled (in order to save time). So be sure to give good values.
 	 * @param origin  the origin point
 	 * @param destination the destination point
 	 * @param pheromone pheromone between the 2 points
 	 */
 	public void setPheromones(Location origin, Location destination, double pheromone)
 	{
-		data.get(origin).get(destination).pheromones = pheromone;
+		setCellPheromones(getCell(origin, destination), pheromone);
 	}
 
 	/**
 	 * Add pheromones between two locations.
-	 * NB: arguments values are not controlled (in order to save time). So be sure to give good values.
 	 * @param origin  the origin point
 	 * @param destination the destination point
 	 * @param pheromone pheromone between the 2 points
 	 */
 	public void addPheromones(Location origin, Location destination, double pheromone)
 	{
-		data.get(origin).get(destination).pheromones += pheromone;
+		int cell = getCell(origin, destination);
+		setCellPheromones(cell, getCellPheromones(cell) + pheromone);
+	}
+
+	/**
+	 * Return the distance between 2 points of the matrix
+	 * NB: arguments values are not controlled (in order to save time). So be sure to give good values.
+	 * @param origin index of the origin point
+	 * @param destination index of the destination point
+	 * @return the distance between the two points
+	 */
+	public int getDistance(int origin, int destination)
+	{
+		return distances[origin * dimension + destination];
+	}
+
+	/**
+	 * Return the duration between 2 points of the matrix
+	 * NB: arguments values are not controlled (in order to save time). So be sure to give good values.
+	 * @param origin index of the origin point
+	 * @param destination index of the destination point
+	 * @return the duration between the two points
+	 */
+	public int getDuration(int origin, int destination)
+	{
+		return durations[origin * dimension + destination];
+	}
+
+	/**
+	 * Setter for a distance between 2 points of the matrix
+	 * NB: arguments values are not controlled (in order to save time). So be sure to give good values.
+	 * @param origin index of the origin point
+	 * @param destination index of the destination point
+	 * @param distance distance between the 2 points
+	 */
+	public void setDistance(int origin, int destination, int distance)
+	{
+		distances[origin * dimension + destination] = distance;
+	}
+
+	/**
+	 * Setter for a duration between 2 points of the matrix
+	 * NB: arguments values are not controlled (in order to save time). So be sure to give good values.
+	 * @param origin index of the origin point
+	 * @param destination index of the destination point
+	 * @param duration duration between the 2 points
+	 */
+	public void setDuration(int origin, int destination, int duration)
+	{
+		durations[origin * dimension + destination] = duration;
+	}
+
+	/**
+	 * Return the pheromone between 2 points of the matrix
+	 * NB: arguments values are not controlled (in order to save time). So be sure to give good values.
+	 * @param origin index of the origin point
+	 * @param destination index of the destination point
+	 * @return the pheromone between the two points
+	 */
+	public double getPheromones(int origin, int destination)
+	{
+		return getCellPheromones(origin * dimension + destination);
+	}
+
+	/**
+	 * Setter for a pheromone between two points of the matrix
+	 * NB: arguments values are not controlled (in order to save time). So be sure to give good values.
+	 * @param origin index of the origin point
+	 * @param destination index of the destination point
+	 * @param pheromone pheromone between the 2 points
+	 */
+	public void setPheromones(int origin, int destination, double pheromone)
+	{
+		setCellPheromones(origin * dimension + destination, pheromone);
 	}
 
 	/**
-	 * Control if given locations are in the map, and if they don't it sends an {@link IllegalArgumentException}.
+	 * Add pheromones between two points of the matrix
+	 * NB: arguments values are not controlled (in order to save time). So be sure to give good values.
+	 * @param origin index of the origin point
+	 * @param destination index of the destination point
+	 * @param pheromone pheromone to add between the 2 points
+	 */
+	public void addPheromones(int origin, int destination, double pheromone)
+	{
+		int cell = origin * dimension + destination;
+		setCellPheromones(cell, getCellPheromones(cell) + pheromone);
+	}
+
+	/**
+	 * Return the pheromones of a cell: its stored value multiplied by the pheromones scale,
+	 * bounded by the minimum pheromones
+	 * @param cell the position of the cell
+	 * @return the pheromones value
+	 */
+	protected double getCellPheromones(int cell)
+	{
+		return Math.max(pheromones[cell] * pheromonesScale, minPheromones);
+	}
+
+	/**
+	 * Set the pheromones of a cell and remember that the cell was modified, 
+	 * so it will be bounded at the next evaporation
+	 * @param cell the position of the cell
+	 * @param pheromone the pheromones value
+	 */
+	protected void setCellPheromones(int cell, double pheromone)
+	{
+		pheromones[cell] = pheromone / pheromonesScale;
+		if (!modified[cell])
+		{
+			modified[cell] = true;
+			modifiedCells[modifiedCount++] = cell;
+		}
+	}
+
+	/**
+	 * Set the minimum and maximum amounts of pheromones on the trails.
+	 * The pheromones are bounded at each evaporation.
+	 * @param min the minimum amount of pheromones
+	 * @param max the maximum amount of pheromones
+	 */
+	public void setPheromonesBounds(double min, double max)
+	{
+		this.minPheromones = min;
+		this.maxPheromones = max;
+	}
+
+	/**
+	 * Evaporate the pheromones of all the trails, then bound them between the minimum and maximum amounts.
+	 * The evaporation is applied to all the cells at the same time through the pheromones scale,
+	 * so only the cells modified since the last evaporation need to be bounded. The other ones 
+	 * can't exceed the maximum, and the minimum is applied when they are read.
+	 * @param coefficient the coefficient applied to the pheromones, between 0 and 1
+	 */
+	public void evaporatePheromones(double coefficient)
+	{
+		int[] cells;
+
+		pheromonesScale *= coefficient;
+		allUpdated = allModified;
+		if (allModified)
+		{
+			for (int cell = 0 ; cell < pheromones.length ; cell++)
+			{
+				boundPheromones(cell);
+			}
+			allModified = false;
+		}
+		else
+		{
+			for (int i = 0 ; i < modifiedCount ; i++)
+			{
+				boundPheromones(modifiedCells[i]);
+			}
+		}
+		for (int i = 0 ; i < modifiedCount ; i++)
+		{
+			modified[modifiedCells[i]] = false;
+		}
+		// The modified cells become the updated ones, given to the caches until the next evaporation
+		cells = updatedCells;
+		updatedCells = modifiedCells;
+		updatedCount = modifiedCount;
+		modifiedCells = cells;
+		modifiedCount = 0;
+
+		// Before the scale becomes too small, it is applied to all the cells
+		if (pheromonesScale < MIN_PHEROMONES_SCALE)
+		{
+			for (int cell = 0 ; cell < pheromones.length ; cell++)
+			{
+				pheromones[cell] *= pheromonesScale;
+			}
+			pheromonesScale = 1;
+			allUpdated = true;
+		}
+	}
+
+	/**
+	 * Return the stored pheromones of a cell, which are its pheromones divided by the pheromones scale,
+	 * before the minimum pheromones are applied
+	 * NB: arguments values are not controlled (in order to save time). So be sure to give good values.
+	 * @param cell the position of the cell, origin index * dimension + destination index
+	 * @return the stored pheromones value
+	 */
+	public double getStoredPheromones(int cell)
+	{
+		return pheromones[cell];
+	}
+
+	/**
+	 * Return the factor applied to all the stored pheromones
+	 * @return the pheromones scale
+	 */
+	public double getPheromonesScale()
+	{
+		return pheromonesScale;
+	}
+
+	/**
+	 * Return the minimum amount of pheromones on a trail
+	 * @return the minimum pheromones
+	 */
+	public double getMinPheromones()
+	{
+		return minPheromones;
+	}
+
+	/**
+	 * Return the number of cells whose stored pheromones were modified between the two last evaporations.
+	 * The caches of the pheromones only need to refresh these cells after an evaporation.
+	 * @return the number of updated cells, or -1 if all the stored pheromones were modified
+	 */
+	public int getUpdatedCount()
+	{
+		return allUpdated ? -1 : updatedCount;
+	}
+
+	/**
+	 * Return a cell whose stored pheromones were modified between the two last evaporations
+	 * @param i the number of the updated cell, between 0 and the updated count
+	 * @return the position of the cell
+	 */
+	public int getUpdatedCell(int i)
+	{
+		return updatedCells[i];
+	}
+
+	/**
+	 * Bound the pheromones of a cell between the minimum and maximum amounts
+	 * @param cell the position of the cell
+	 */
+	protected void boundPheromones(int cell)
+	{
+		double value = pheromones[cell] * pheromonesScale;
+		if (value > maxPheromones)
+		{
+			pheromones[cell] = maxPheromones / pheromonesScale;
+		}
+		else if (value < minPheromones)
+		{
+			pheromones[cell] = minPheromones / pheromonesScale;
+		}
+	}
+
+	/**
+	 * Return the position in the arrays of the cell between two locations
 	 * @param origin the origin location
 	 * @param destination the destination location
+	 * @return the position of the cell
 	 * @throws IllegalArgumentException if one or both locations are unknown 
 	 */
-	protected void controlLocations(Location origin, Location destination) throws IllegalArgumentException
+	protected int getCell(Location origin, Location destination) throws IllegalArgumentException
 	{
-		if (data.get(origin) == null || data.get(origin).get(destination) == null)
-			throw new IllegalArgumentException("Locations given in parameter are unknown.");
+		return getIndex(origin) * dimension + getIndex(destination);
 	}
 
 	/**
@@ -186,17 +520,14 @@ public class DataMatrix
 	 */
 	public void fillPheromones(double value)
 	{
-		for (Location origin : locations)
-		{
-			for (Location destination : locations)
-			{
-				setPheromones(origin, destination, value);
-			}
-		}
+		pheromonesScale = 1;
+		Arrays.fill(pheromones, value);
+		allModified = true;
+		allUpdated = true;
 	}
 
 	/**
-	 * Return the matrix size
+	 * Return the matrix size, which is the number of locations given to the matrix
 	 * @return the matrix size
 	 */
 	public int getMatrixSize()
@@ -204,6 +535,16 @@ public class DataMatrix
 		return locations.size();
 	}
 
+	/**
+	 * Return the number of distinct locations, which is the number of lines and columns of the matrix.
+	 * The indexes of the locations are between 0 and this number.
+	 * @return the number of distinct locations
+	 */
+	public int getDimension()
+	{
+		return dimension;
+	}
+
 	/** 
 	 * Return a human readable string describing the data matrix
 	 * @return  a human readable string describing the data matrix
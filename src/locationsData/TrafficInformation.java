@@ -12,121 +12,80 @@ import java.security.InvalidParameterException;
 import java.util.Arrays;
 
 /** 
- *  
+ *  Traffic coefficients of a day. The time frames are stored in an array with one coefficient
+ *  for each step of the resolution, so the coefficient of an hour is read without search.
+ *  A time frame begins at its beginning hour and ends just before its ending hour,
+ *  the hours which are not in a time frame have a coefficient equal to 1.
  */
 public class TrafficInformation
 {
-	// TODO Yoann : pour l instant j ai palie le probleme du sort en creant des
-	// instances bidons de traffic coefficient. Voir si on peut pas ameliorer ca
-	// d une maniere ou d un autre (utilisation de sous tableau ?, refaire un
-	// sort a la main ? )
-
 	/** The maximum value that a coefficient can have. */
 	public static final float MAX_COEFFICIENT = 10;
 
 	/** The minimum value that a coefficient can have */
 	public static final float MIN_COEFFICIENT = 1;
 
-	/**
-	 * Store information about the different traffic coefficient existing 
-	 * depending the hour
-	 */
-	class TrafficCoefficient implements Comparable<TrafficCoefficient>
-	{
-		/** Hour, in seconds, representing the beginning of the time frame 
-		 * where the traffic coefficient is applicable*/
-		int beginFrame;
-
-		/** Hour, in seconds, representing the ending of the time frame 
-		 * where the traffic coefficient is applicable*/
-		int endFrame;
-
-		/** The coefficient applicable to the traffic which represent the 
-		 * rate of increasing duration of travels during the time frame.
-		 * For example if coefficient equals 1.2 it means that the duration
-		 *  will be 20% longer than in a normal situation. */
-		float coefficient;
-
-		/**
-		 * Say if an object is equal to the current TrafficCoefficient
-		 * @param obj the object to test
-		 * @return true if both objects are equals, false if they are not.
-		 * @see java.lang.Object#equals(java.lang.Object)
-		 */
-		@Override
-		public boolean equals(Object obj)
-		{
-			if (!(obj instanceof TrafficCoefficient))
-				return false;
-			TrafficCoefficient tc = (TrafficCoefficient) obj;
-			return beginFrame == tc.beginFrame && endFrame == tc.endFrame;
-		}
+	/** Default duration, in seconds, of a step of the coefficients array */
+	public static final int DEFAULT_RESOLUTION = 10 * 60;
 
-		/** 
-		 * Full constructor
-		 * @param beginFrame hour, in seconds, representing the beginning of the time frame 
-		 * where the traffic coefficient is applicable
-		 * @param endFrame hour, in seconds, representing the ending of the time frame 
-		 * where the traffic coefficient is applicable
-		 * @param coefficient The coefficient applicable to the traffic which represent the 
-		 * rate of increasing duration of travels during the time frame.
-		 */
-		public TrafficCoefficient(int beginFrame, int endFrame, float coefficient)
-		{
-			if (endFrame < beginFrame)
-				throw new InvalidParameterException(
-						"Invalid time frame: the end must be before the beginning (i.e. " + endFrame + " > "
-								+ beginFrame + " ).");
-			if (coefficient < MIN_COEFFICIENT)
-				throw new IllegalArgumentException(
-						"Coeficiente inválido : este deve ser superior ou igual à " + MIN_COEFFICIENT + ". (Invalid coefficient)");
-			if (coefficient > MAX_COEFFICIENT)
-				throw new IllegalArgumentException(
-						"Coeficiente inválido : este deve ser inferior ou igual à " + MAX_COEFFICIENT + ". (Invalid coefficient)");
-			this.beginFrame = beginFrame;
-			this.endFrame = endFrame;
-			this.coefficient = coefficient;
-		}
+	/** Duration of a day, in seconds */
+	public static final int DAY = 24 * 3600;
 
-		/**
-		 * Compare an other TrafficInformation with the current one
-		 * @param tc the other TrafficInformation to compare to
-		 * @return 0 if both are equals, 1 if the current is lesser, -1 if the current is bigger
-		 * @see java.lang.Comparable#compareTo(java.lang.Object)
-		 */
-		@Override
-		public int compareTo(TrafficCoefficient tc)
-		{
-			return this.beginFrame - tc.beginFrame;
-		}
-	}
+	/** Duration, in seconds, of a step of the coefficients array */
+	private int resolution;
 
-	/** Say if the array is sorted or not. Private attribute use only for the class management.*/
-	private boolean sorted = false;
-	/** Number of {@link TrafficCoefficient} in the array. Private attribute use only for the class management.*/
-	private int logicSize = 0;
-	/** Array of all {@link TrafficCoefficient}. */
-	private TrafficCoefficient[] coefficients;
+	/** Traffic coefficient of each step of the day */
+	private float[] coefficients;
+
+	/** Say if each step of the day belongs to a time frame. Private attribute use only to check the time frames. */
+	private boolean[] framed;
 
 	/** 
-	 * Default constructor.
+	 * Default constructor, using the default resolution.
 	 */
 	public TrafficInformation()
 	{
-		this(20);
+		initialize(DEFAULT_RESOLUTION);
 	}
 
 	/**
-	 * Full constructor.
+	 * Full constructor, using the default resolution.
 	 * @param coefficientCount the number of coefficient that will be add to the object.
-	 * Please note that this class is not limited in traffic coefficient size. This constructor
-	 * can just guarantee you a better speed if you know in advance how much coefficient you'll have.
+	 * Please note that this class is not limited in traffic coefficient size. The coefficients are stored
+	 * for each step of the day, so this number doesn't change the memory used.
 	 */
 	public TrafficInformation(int coefficientCount)
 	{
-		coefficients = new TrafficCoefficient[coefficientCount];
-		Arrays.fill(coefficients, 0, coefficients.length, new TrafficCoefficient(23 * 3600 + 59 * 60,
-				23 * 3600 + 59 * 60, 1));
+		if (coefficientCount < 0)
+			throw new IllegalArgumentException("The coefficient count can't be negative.");
+		initialize(DEFAULT_RESOLUTION);
+	}
+
+	/**
+	 * Create a traffic information object with a given resolution.
+	 * @param resolution duration, in seconds, of a step of the coefficients array. The beginning and the ending
+	 * hours of the time frames must be multiples of this duration.
+	 * @return the traffic information, without time frame
+	 */
+	public static TrafficInformation withResolution(int resolution)
+	{
+		TrafficInformation traffic = new TrafficInformation();
+		traffic.initialize(resolution);
+		return traffic;
+	}
+
+	/**
+	 * Create the coefficients array of a resolution, without time frame
+	 * @param resolution duration, in seconds, of a step of the coefficients array
+	 */
+	private void initialize(int resolution)
+	{
+		if (resolution <= 0 || DAY % resolution != 0)
+			throw new IllegalArgumentException("Resolução inválida : esta deve dividir um dia. (Invalid resolution)");
+		this.resolution = resolution;
+		coefficients = new float[DAY / resolution];
+		framed = new boolean[coefficients.length];
+		clear();
 	}
 
 	/**
@@ -137,77 +96,63 @@ public class TrafficInformation
 	 * where the traffic coefficient is applicable
 	 * @param coefficient The coefficient applicable to the traffic which represent the 
 	 * rate of increasing duration of travels during the time frame.
+	 * For example if coefficient equals 1.2 it means that the duration
+	 * will be 20% longer than in a normal situation.
 	 */
 	public void addCoefficient(int startFrame, int endFrame, float coefficient)
 	{
-		TrafficCoefficient tc = new TrafficCoefficient(startFrame, endFrame, coefficient);
-
-		if (logicSize == coefficients.length)
-		{
-			resize();
-		}
-
-		coefficients[logicSize] = tc;
-		logicSize++;
-		sorted = false;
-	}
-
-	/** 
-	 * Automatically increase the array size. Only use for the class management. 
-	 */
-	public void resize()
-	{
-		int newSize = coefficients.length + 10;
-		TrafficCoefficient[] newTab = new TrafficCoefficient[newSize];
-
-		for (int i = 0, size = coefficients.length ; i < size ; i++)
+		if (endFrame < startFrame)
+			throw new InvalidParameterException(
+					"Invalid time frame: the end must be after the beginning (i.e. " + endFrame + " < "
+							+ startFrame + " ).");
+		if (startFrame < 0 || endFrame > DAY || startFrame % resolution != 0 || endFrame % resolution != 0)
+			throw new IllegalArgumentException(
+					"Intervalo de tempo inválido : este deve estar no dia e ser múltiplo de " + resolution
+							+ " segundos. (Invalid time frame)");
+		if (coefficient < MIN_COEFFICIENT)
+			throw new IllegalArgumentException(
+					"Coeficiente inválido : este deve ser superior ou igual à " + MIN_COEFFICIENT + ". (Invalid coefficient)");
+		if (coefficient > MAX_COEFFICIENT)
+			throw new IllegalArgumentException(
+					"Coeficiente inválido : este deve ser inferior ou igual à " + MAX_COEFFICIENT + ". (Invalid coefficient)");
+
+		for (int i = startFrame / resolution, end = endFrame / resolution ; i < end ; i++)
 		{
-			newTab[i] = coefficients[i];
+			if (framed[i])
+				throw new IllegalArgumentException("Intervalo de tempo inválido : este sobrepõe-se a um outro ("
+						+ startFrame + " - " + endFrame + "). (Overlapping time frames)");
 		}
-		Arrays.fill(newTab, coefficients.length, newSize - 1, new TrafficCoefficient(23 * 3600 + 59 * 60,
-				23 * 3600 + 59 * 60, 1));
-		coefficients = newTab;
+		Arrays.fill(coefficients, startFrame / resolution, endFrame / resolution, coefficient);
+		Arrays.fill(framed, startFrame / resolution, endFrame / resolution, true);
 	}
 
 	/** 
-	 * Sort the {@link TrafficCoefficient} array. Only use for the class management. 
+	 * Remove all the time frames, every coefficient being then equal to 1.
 	 */
-	public void sort()
+	public void clear()
 	{
-		Arrays.sort(coefficients);
-		sorted = true;
+		Arrays.fill(coefficients, 1);
+		Arrays.fill(framed, false);
 	}
 
 	/**
 	 * Return the coefficient corresponding the given hour. 
 	 * @param hour the hour from where we want to know the traffic coefficient.
-	 * @return the traffic coefficient.
+	 * @return the traffic coefficient, 1 if the hour is not in a time frame.
 	 */
 	public float getCoefficient(int hour)
 	{
-		int start = 0, end = logicSize, middle;
-
-		if (!sorted)
-		{
-			sort();
-		}
+		if (hour < 0 || hour >= DAY)
+			return 1;
+		return coefficients[hour / resolution];
+	}
 
-		while ((end - start) > 1)
-		{
-			middle = (start + end) / 2;
-
-			if (hour >= coefficients[middle].beginFrame && hour <= coefficients[middle].endFrame)
-				return coefficients[middle].coefficient;
-
-			if (coefficients[middle].beginFrame > hour)
-			{
-				end = middle;
-			}
-			else
-			{
-				start = middle;
-			}
-		}
-		return 1;
+	/**
+	 * Return the duration, in seconds, of a step of the coefficients array
+	 * @return the resolution
+	 */
+	public int getResolution()
+	{
+		return resolution;
 	}
 }
@@ -0,0 +1,156 @@
+package locationsData;
+
+/**
+ *  Travel times between the locations of a data matrix depending on the departure hour.
+ *  The day is cut in time slots, during each of them the traffic coefficient is constant and the bus goes
+ *  slower by this coefficient. A travel going through several slots is calculated slot by slot, so a bus
+ *  leaving later never arrives earlier (FIFO property), even when the coefficient changes during the travel.
+ *  The progress of a bus since the beginning of the day is calculated once for each slot, so the travel time
+ *  is obtained by an indexed lookup in most cases, and by a few more lookups when the travel crosses slots.
+ *  Out of the day, the traffic coefficient is 1.
+ */
+public class TravelTimeMatrix
+{
+	/** Default duration, in seconds, of a time slot */
+	public static final int DEFAULT_STEP = 10 * 60;
+
+	/** Duration of a day, in seconds */
+	public static final int DAY = 24 * 3600;
+
+	/** Matrix containing the durations without traffic */
+	protected DataMatrix matrix;
+
+	/** Duration, in seconds, of a time slot */
+	protected int step;
+
+	/** Traffic coefficient of each time slot */
+	protected float[] coefficients;
+
+	/** Duration without traffic which can be travelled from the beginning of the day to the beginning
+	 * of each time slot, the last value corresponding to the end of the day */
+	protected double[] progress;
+
+	/**
+	 * Constructor using the default time slot duration
+	 * @param matrix matrix containing the durations without traffic
+	 * @param traffic traffic coefficients of the day
+	 */
+	public TravelTimeMatrix(DataMatrix matrix, TrafficInformation traffic)
+	{
+		this(matrix, traffic, DEFAULT_STEP);
+	}
+
+	/**
+	 * Full constructor
+	 * @param matrix matrix containing the durations without traffic
+	 * @param traffic traffic coefficients of the day
+	 * @param step duration, in seconds, of a time slot
+	 */
+	public TravelTimeMatrix(DataMatrix matrix, TrafficInformation traffic, int step)
+	{
+		int slots;
+
+		if (step <= 0)
+			throw new IllegalArgumentException("A duração de um intervalo de tempo deve ser superior a 0.");
+		this.matrix = matrix;
+		this.step = step;
+		slots = (DAY + step - 1) / step;
+		coefficients = new float[slots];
+		progress = new double[slots + 1];
+
+		for (int s = 0 ; s < slots ; s++)
+		{
+			// The coefficient is taken at the middle of the slot, so that the ends of the frames don't matter
+			coefficients[s] = traffic.getCoefficient(s * step + step / 2);
+			progress[s + 1] = progress[s] + (double) (Math.min(DAY, (s + 1) * step) - s * step) / coefficients[s];
+		}
+	}
+
+	/**
+	 * Return the traffic coefficient at the given hour
+	 * @param hour the hour, in seconds
+	 * @return the traffic coefficient
+	 */
+	public float getCoefficient(int hour)
+	{
+		if (hour < 0 || hour >= DAY)
+			return 1;
+		return coefficients[hour / step];
+	}
+
+	/**
+	 * Return the duration of the travel between 2 points of the matrix, modified by the traffic
+	 * NB: arguments values are not controlled (in order to save time). So be sure to give good values.
+	 * @param origin index of the origin point
+	 * @param destination index of the destination point
+	 * @param departure the departure hour, in seconds
+	 * @return the duration of the travel
+	 */
+	public int getTravelTime(int origin, int destination, int departure)
+	{
+		return getArrivalTime(departure, matrix.getDuration(origin, destination)) - departure;
+	}
+
+	/**
+	 * Return the arrival hour of a travel
+	 * @param departure the departure hour, in seconds
+	 * @param duration the duration of the travel without traffic
+	 * @return the arrival hour, in seconds
+	 */
+	public int getArrivalTime(int departure, int duration)
+	{
+		double target;
+		int s;
+
+		if (duration == 0)
+			return departure;
+		target = getProgress(departure) + duration;
+		if (target <= 0)
+			return (int) Math.round(target);
+		if (target >= progress[coefficients.length])
+			return (int) Math.round(DAY + target - progress[coefficients.length]);
+
+		// The travel ends in a slot after the departure one
+		s = departure <= 0 ? 0 : departure / step;
+		while (progress[s + 1] <= target)
+		{
+			s++;
+		}
+		return (int) Math.round(s * step + (target - progress[s]) * coefficients[s]);
+	}
+
+	/**
+	 * Return the duration without traffic which can be travelled from the beginning of the day to the given hour
+	 * @param hour the hour, in seconds
+	 * @return the duration travelled, negative before the day
+	 */
+	protected double getProgress(int hour)
+	{
+		int s;
+
+		if (hour <= 0)
+			return hour;
+		if (hour >= DAY)
+			return progress[coefficients.length] + hour - DAY;
+		s = hour / step;
+		return progress[s] + (hour - s * step) / coefficients[s];
+	}
+
+	/**
+	 * Return the matrix containing the durations without traffic
+	 * @return the matrix
+	 */
+	public DataMatrix getDataMatrix()
+	{
+		return matrix;
+	}
+
+	/**
+	 * Return the duration, in seconds, of a time slot
+	 * @return the duration of a time slot
+	 */
+	public int getStep()
+	{
+		return step;
+	}
+}
@@ -22,13 +22,15 @@ import javax.swing.JScrollPane;
 import javax.swing.JTextPane;
 
 import presentation.ProgressionEvent.ProgressionType;
+import locationsData.Location;
 import application.BusScheduling;
 import application.BusSchedulingException;
+import application.LocationCorrector;
 
 /**
  * Process frame used to show process progression and output
  */
-public class ProcessFrame extends JDialog implements ProgressionListener, WindowListener
+public class ProcessFrame extends JDialog implements ProgressionListener, WindowListener, LocationCorrector
 {
 	/** Default serial version ID */
 	private static final long serialVersionUID = 1L;
@@ -85,7 +87,7 @@ public class ProcessFrame extends JDialog implements ProgressionListener, Window
 		try
 		{
 			this.busScheduling = new BusScheduling(configFile, pathsFile, sheet, resultsFile,
-				parent, subscription, this);
+				subscription, this);
 			busScheduling.addProgressionListener(this);
 		}
 		catch (SQLException e1)
@@ -143,6 +145,10 @@ public class ProcessFrame extends JDialog implements ProgressionListener, Window
 		else if (e.getType() == ProgressionType.SET)
 		{
 			progressBar.setValue(e.getValue());
+			if (e.getValue() == 100)
+			{
+				((GraphicalUserInterface)getParent()).configureOutput();
+			}
 		}
 		else if (e.getType() == ProgressionType.INTERRUPT)
 		{
@@ -150,6 +156,27 @@ public class ProcessFrame extends JDialog implements ProgressionListener, Window
 		}
 	}
 
+	/**
+	 * Ask the user the coordinates of a location found outside of Joinville
+	 * @param location the location whose coordinates are wrong
+	 * @param message the message to print
+	 * @return true if the user entered coordinates, false if the process was canceled
+	 * @see application.LocationCorrector#correctLocation(locationsData.Location, java.lang.String)
+	 */
+	@Override
+	public boolean correctLocation(Location location, String message)
+	{
+		LocationNotFoundFrame frame = new LocationNotFoundFrame(this, message);
+
+		if (frame.isCanceled())
+			return false;
+
+		location.setLatitude(frame.getLatitude());
+		location.setLongitude(frame.getLongitude());
+		location.setCoordinatesFilled(false);
+		return true;
+	}
+
 	/**
 	 * 
 	 * @param e 